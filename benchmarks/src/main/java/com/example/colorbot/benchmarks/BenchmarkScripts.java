@@ -0,0 +1,75 @@
+package com.example.colorbot.benchmarks;
+
+/**
+ * Representative scripts shared by the engine benchmarks. Every color condition targets a
+ * pixel of {@link #TARGET_RGB} on the synthetic screen so no block falls into its miss back-off.
+ */
+final class BenchmarkScripts {
+    static final int SCREEN_WIDTH = 1920;
+    static final int SCREEN_HEIGHT = 1080;
+    static final int TARGET_RGB = 0x98_02_00;
+
+    static final String AND_HEAVY = String.join("\n",
+            "If Color.At coordinate is (RGB '152', '2', '0', '960', '35') && If Color.At coordinate is (RGB '152', '2', '0', '1000', '40')"
+                    + " && If Color.At coordinate is (RGB '152', '2', '0', '40', '900') && If Color.At coordinate is (RGB '152', '2', '0', '1800', '1000')"
+                    + " && If Color.At coordinate is (RGB '152', '2', '0', '222', '82') && If Color.At coordinate is (RGB '152', '2', '0', '391', '67') begin",
+            "  PRESS F9",
+            "end");
+
+    static final String NESTED_LOOP = String.join("\n",
+            "Macro.Loop('10') begin",
+            "  Macro.Loop('10') begin",
+            "    If Color.At coordinate is (RGB '152', '2', '0', '960', '35') begin",
+            "      Keyboard.Press keys('{F9}')",
+            "    end",
+            "  end",
+            "end");
+
+    static final String COOLDOWN_SETUP = String.join("\n",
+            "SET Skill1CD = 1000",
+            "SET Skill2CD = 2000",
+            "SET Skill3CD = 3000",
+            "SET Skill4CD = 4000",
+            "SET Skill5CD = 5000",
+            "SET Skill6CD = 6000",
+            "SET LastSkill1 = 0",
+            "SET LastSkill2 = TIMER",
+            "SET LastSkill3 = 0",
+            "SET LastSkill4 = TIMER",
+            "SET LastSkill5 = 0",
+            "SET LastSkill6 = TIMER",
+            "DISABLE Skill4");
+
+    static final String COOLDOWN_ROTATION = String.join("\n",
+            "IF_COOLDOWN LastSkill1 Skill1CD THEN PRESS 3",
+            "IF_COOLDOWN LastSkill2 Skill2CD THEN PRESS 4",
+            "IF_COOLDOWN LastSkill3 Skill3CD THEN PRESS 5",
+            "IF_COOLDOWN LastSkill4 Skill4CD THEN PRESS 6",
+            "IF_COOLDOWN LastSkill5 Skill5CD THEN PRESS 7 ELSE PRESS 8",
+            "IF_COOLDOWN LastSkill6 Skill6CD THEN PRESS 8 ELSE PRESS 9");
+
+    static final String PRIORITY_ROTATION = String.join("\n",
+            "LOOP 12",
+            "  ROTATION",
+            "    SKILL Skill1 KEY 3 CD 1000 PRIORITY 6",
+            "    SKILL Skill2 KEY 4 CD 2000 PRIORITY 5",
+            "    SKILL Skill3 KEY 5 CD 3000 PRIORITY 4 WHEN COLOR 960 35 152 2 0",
+            "    SKILL Skill4 KEY 6 CD 4000 PRIORITY 3 DISABLED",
+            "    SKILL Skill5 KEY 7 CD 5000 PRIORITY 2",
+            "    SKILL Skill6 KEY 8 CD 6000 PRIORITY 1",
+            "  END_ROTATION",
+            "END_LOOP");
+
+    private BenchmarkScripts() {
+    }
+
+    static String byName(String name) {
+        return switch (name) {
+            case "AND_HEAVY" -> AND_HEAVY;
+            case "NESTED_LOOP" -> NESTED_LOOP;
+            case "COOLDOWN_ROTATION" -> COOLDOWN_ROTATION;
+            case "PRIORITY_ROTATION" -> PRIORITY_ROTATION;
+            default -> throw new IllegalArgumentException("Unknown script: " + name);
+        };
+    }
+}
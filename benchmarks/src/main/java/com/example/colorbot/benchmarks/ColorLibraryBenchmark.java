@@ -0,0 +1,67 @@
+package com.example.colorbot.benchmarks;
+
+import com.example.colorbot.ColorLibrary;
+import com.example.colorbot.ColorSample;
+import com.example.colorbot.PackedColorSample;
+import com.example.colorbot.SyntheticScreenSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pixel check cost of {@link ColorLibrary#isColorAt} and the packed-int {@link ColorLibrary#matches}
+ * API against a synthetic screen source.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ColorLibraryBenchmark {
+    private ColorLibrary library;
+    private ColorSample hit;
+    private ColorSample miss;
+    private PackedColorSample packedHit;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = new ColorLibrary(SyntheticScreenSource.solid(
+                BenchmarkScripts.SCREEN_WIDTH, BenchmarkScripts.SCREEN_HEIGHT, BenchmarkScripts.TARGET_RGB));
+        hit = new ColorSample(new Point(960, 35), new Color(BenchmarkScripts.TARGET_RGB));
+        miss = new ColorSample(new Point(960, 35), new Color(0x00FF00));
+        packedHit = PackedColorSample.of(hit);
+    }
+
+    @Benchmark
+    public boolean isColorAtHit() {
+        return library.isColorAt(hit);
+    }
+
+    @Benchmark
+    public boolean isColorAtMiss() {
+        return library.isColorAt(miss);
+    }
+
+    @Benchmark
+    public boolean matchesPacked() {
+        return library.matches(packedHit);
+    }
+
+    @Benchmark
+    public boolean matchesInts() {
+        return library.matches(960, 35, BenchmarkScripts.TARGET_RGB);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.colorbot.benchmarks;
+
+import com.example.colorbot.ColorTolerance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-pixel cost of each {@link ColorTolerance} mode over jittered pixels near the target color.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ColorToleranceBenchmark {
+    private static final int PIXELS = 1024;
+
+    @Param({"EXACT", "CHANNEL 8", "EUCLIDEAN 12", "HSV 10 40 40", "DELTA_E 3"})
+    public String spec;
+
+    private ColorTolerance tolerance;
+    private final int[] pixels = new int[PIXELS];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tolerance = ColorTolerance.parse(spec);
+        Random random = new Random(42);
+        for (int i = 0; i < PIXELS; i++) {
+            pixels[i] = BenchmarkScripts.TARGET_RGB ^ (random.nextInt(8) | random.nextInt(8) << 8 | random.nextInt(8) << 16);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIXELS)
+    public int matchPixels() {
+        int matches = 0;
+        for (int pixel : pixels) {
+            if (tolerance.matches(BenchmarkScripts.TARGET_RGB, pixel)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
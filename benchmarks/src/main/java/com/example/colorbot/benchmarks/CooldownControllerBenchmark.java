@@ -0,0 +1,44 @@
+package com.example.colorbot.benchmarks;
+
+import com.example.colorbot.ExternalCooldownController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single cooldown update as issued by every script {@code SET}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class CooldownControllerBenchmark {
+    private ExternalCooldownController controller;
+    private long value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        controller = new ExternalCooldownController(Files.createTempDirectory("colorbot-bench"), "cooldowns.properties");
+        for (int i = 1; i <= 12; i++) {
+            controller.put("LastSkill" + i, i);
+        }
+    }
+
+    @Benchmark
+    public void put() {
+        controller.put("LastSkill1", ++value);
+    }
+}
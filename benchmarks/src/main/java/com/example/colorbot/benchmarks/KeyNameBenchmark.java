@@ -0,0 +1,34 @@
+package com.example.colorbot.benchmarks;
+
+import com.example.colorbot.KeyName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key name resolution for the spellings scripts use most: function keys, Blue Eye braces and letters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class KeyNameBenchmark {
+    @Param({"F9", "{TAB}", "a", "'{F12}'"})
+    public String keyName;
+
+    @Benchmark
+    public int toKeyCode() {
+        return KeyName.toKeyCode(keyName);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.colorbot.benchmarks;
+
+import com.example.colorbot.ColorLibrary;
+import com.example.colorbot.ColorScriptEngine;
+import com.example.colorbot.CompiledScript;
+import com.example.colorbot.EventLog;
+import com.example.colorbot.ExternalCooldownController;
+import com.example.colorbot.SyntheticScreenSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compile and run cost of representative scripts against a synthetic screen.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ScriptEngineBenchmark {
+    @Param({"AND_HEAVY", "NESTED_LOOP", "COOLDOWN_ROTATION", "PRIORITY_ROTATION"})
+    public String script;
+
+    private ColorScriptEngine engine;
+    private String scriptText;
+    private CompiledScript compiled;
+    private EventLog log;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SyntheticScreenSource screen = SyntheticScreenSource.solid(
+                BenchmarkScripts.SCREEN_WIDTH, BenchmarkScripts.SCREEN_HEIGHT, BenchmarkScripts.TARGET_RGB);
+        ExternalCooldownController cooldowns = new ExternalCooldownController(
+                Files.createTempDirectory("colorbot-bench"), "cooldowns.properties");
+        engine = new ColorScriptEngine(new ColorLibrary(screen), cooldowns);
+        // muted as a long-running bot would be: INFO and DEBUG events are never written
+        log = new EventLog();
+        log.setLevel(EventLog.Level.WARN);
+        engine.run(BenchmarkScripts.COOLDOWN_SETUP, log);
+        scriptText = BenchmarkScripts.byName(script);
+        compiled = engine.compile(scriptText);
+    }
+
+    @Benchmark
+    public CompiledScript compile() throws Exception {
+        return engine.compile(scriptText);
+    }
+
+    @Benchmark
+    public List<String> run() throws Exception {
+        return engine.run(compiled, log);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.colorbot;
+
+import java.util.Locale;
+
+/**
+ * How long a color check waits after its condition was not met before the script moves on.
+ * <ul>
+ *     <li>{@code NONE} - continue immediately</li>
+ *     <li>{@code FIXED delay} - always sleep {@code delayMs}</li>
+ *     <li>{@code EXPONENTIAL delay max} - double from {@code delayMs} on each consecutive miss, capped at {@code maxMs}</li>
+ *     <li>{@code UNTIL_CHANGE timeout} - wait until one of the checked pixels changes, at most {@code delayMs}</li>
+ * </ul>
+ */
+public record BackoffPolicy(Kind kind, long delayMs, long maxMs) {
+    public enum Kind {
+        NONE,
+        FIXED,
+        EXPONENTIAL,
+        UNTIL_CHANGE
+    }
+
+    /**
+     * The engine's historical behaviour: one second after every miss.
+     */
+    public static final BackoffPolicy DEFAULT = fixed(1000);
+
+    public BackoffPolicy {
+        if (kind == null) {
+            throw new IllegalArgumentException("kind cannot be null");
+        }
+        if (delayMs < 0 || maxMs < 0) {
+            throw new IllegalArgumentException("Back-off delays cannot be negative");
+        }
+        if (kind == Kind.EXPONENTIAL && maxMs < delayMs) {
+            throw new IllegalArgumentException("Exponential back-off cap must be at least the initial delay");
+        }
+    }
+
+    public static BackoffPolicy none() {
+        return new BackoffPolicy(Kind.NONE, 0, 0);
+    }
+
+    public static BackoffPolicy fixed(long delayMs) {
+        return new BackoffPolicy(Kind.FIXED, delayMs, delayMs);
+    }
+
+    public static BackoffPolicy exponential(long initialMs, long maxMs) {
+        return new BackoffPolicy(Kind.EXPONENTIAL, initialMs, maxMs);
+    }
+
+    public static BackoffPolicy untilChange(long timeoutMs) {
+        return new BackoffPolicy(Kind.UNTIL_CHANGE, timeoutMs, timeoutMs);
+    }
+
+    /**
+     * Parses the script form, e.g. {@code NONE}, {@code FIXED 250}, {@code EXPONENTIAL 50 2000}
+     * or {@code UNTIL_CHANGE 3000}.
+     */
+    public static BackoffPolicy parse(String spec) {
+        String[] parts = spec.trim().split("\\s+");
+        Kind kind;
+        try {
+            kind = Kind.valueOf(parts[0].toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown back-off policy: " + parts[0]);
+        }
+        int expected = switch (kind) {
+            case NONE -> 1;
+            case FIXED, UNTIL_CHANGE -> 2;
+            case EXPONENTIAL -> 3;
+        };
+        if (parts.length != expected) {
+            throw new IllegalArgumentException("BACKOFF " + kind + " expects " + (expected - 1) + " value(s)");
+        }
+        return switch (kind) {
+            case NONE -> none();
+            case FIXED -> fixed(Long.parseLong(parts[1]));
+            case UNTIL_CHANGE -> untilChange(Long.parseLong(parts[1]));
+            case EXPONENTIAL -> exponential(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        };
+    }
+
+    /**
+     * Sleep for the given number of consecutive misses (1 for the first miss). For
+     * {@code UNTIL_CHANGE} this is the timeout.
+     */
+    public long delayForMiss(int consecutiveMisses) {
+        return switch (kind) {
+            case NONE -> 0;
+            case FIXED, UNTIL_CHANGE -> delayMs;
+            case EXPONENTIAL -> {
+                int shift = Math.min(Math.max(consecutiveMisses - 1, 0), 62);
+                long delay = delayMs << shift;
+                yield delay < 0 || delay > maxMs || (delay >> shift) != delayMs ? maxMs : delay;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case NONE -> "NONE";
+            case FIXED, UNTIL_CHANGE -> kind + " " + delayMs;
+            case EXPONENTIAL -> kind + " " + delayMs + " " + maxMs;
+        };
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.colorbot;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ScreenSource} decorator that captures at most once per frame budget. Reads that fall
+ * inside a capture younger than the budget are served from it, so the monitor
+ * and a running script share one grab instead of each going through {@link java.awt.Robot}.
+ * <p>
+ * Up to {@link #MAX_FRAMES} recent captures are kept so readers watching different spots do not
+ * evict each other. A miss captures the requested area, widened to also cover a recent capture
+ * close by (which it replaces), so nearby readers converge on one capture per frame. Captured
+ * images are shared between readers and must not be modified.
+ */
+public class CachingScreenSource implements ScreenSource {
+    /**
+     * One 60 Hz frame.
+     */
+    public static final long DEFAULT_FRAME_BUDGET_MS = 16;
+    /**
+     * Captures kept at once; lookups scan them linearly.
+     */
+    static final int MAX_FRAMES = 8;
+    /**
+     * Captures older than this many budgets are dropped and no longer merged into new ones.
+     */
+    private static final int MERGE_WINDOW_BUDGETS = 4;
+    private static final Frame[] NO_FRAMES = new Frame[0];
+
+    private final ScreenSource delegate;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Object captureLock = new Object();
+    private volatile long frameBudgetNanos;
+    /**
+     * Newest first; replaced wholesale under {@code captureLock}, read without locking.
+     */
+    private volatile Frame[] frames = NO_FRAMES;
+
+    private record Frame(ScreenSnapshot snapshot, Rectangle bounds, long capturedAt) {
+    }
+
+    /**
+     * Hit and miss totals since creation or the last {@link #resetStats()}.
+     */
+    public record Stats(long hits, long misses) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    public CachingScreenSource(ScreenSource delegate) {
+        this(delegate, DEFAULT_FRAME_BUDGET_MS);
+    }
+
+    public CachingScreenSource(ScreenSource delegate, long frameBudgetMs) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        setFrameBudgetMs(frameBudgetMs);
+    }
+
+    public ScreenSource getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * How long a capture may be reused; {@code 0} passes every read straight through.
+     */
+    public void setFrameBudgetMs(long frameBudgetMs) {
+        if (frameBudgetMs < 0) {
+            throw new IllegalArgumentException("Frame budget cannot be negative");
+        }
+        this.frameBudgetNanos = frameBudgetMs * 1_000_000L;
+        invalidate();
+    }
+
+    public long getFrameBudgetMs() {
+        return frameBudgetNanos / 1_000_000L;
+    }
+
+    /**
+     * Forgets the cached capture, e.g. after switching frames of a {@link SyntheticScreenSource}.
+     */
+    public void invalidate() {
+        frames = NO_FRAMES;
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum());
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public int pixel(int x, int y) {
+        if (frameBudgetNanos == 0) {
+            return delegate.pixel(x, y);
+        }
+        long now = System.nanoTime();
+        for (Frame frame : frames) {
+            if (now - frame.capturedAt() < frameBudgetNanos && frame.bounds().contains(x, y)) {
+                hits.increment();
+                return frame.snapshot().rgbAt(x, y);
+            }
+        }
+        return snapshot(new Rectangle(x, y, 1, 1)).rgbAt(x, y);
+    }
+
+    @Override
+    public BufferedImage region(Rectangle region) {
+        if (frameBudgetNanos == 0) {
+            return delegate.region(region);
+        }
+        // a copy, so callers drawing on it cannot corrupt the frame other readers share
+        return snapshot(region).copy(region);
+    }
+
+    @Override
+    public BufferedImage frame() {
+        // full-screen grabs are rare (screenshot picker) and would swallow the small shared captures
+        return delegate.frame();
+    }
+
+    /**
+     * The cached capture when it is fresh and covers {@code region}, otherwise a new capture;
+     * the result may be larger than {@code region}.
+     */
+    @Override
+    public ScreenSnapshot snapshot(Rectangle region) {
+        long budget = frameBudgetNanos;
+        if (budget == 0) {
+            return ScreenSource.super.snapshot(region);
+        }
+        ScreenSnapshot cached = lookup(frames, region, budget, System.nanoTime());
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        synchronized (captureLock) {
+            // another reader may have captured this area while we waited for the lock
+            Frame[] current = frames;
+            cached = lookup(current, region, budget, System.nanoTime());
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            misses.increment();
+            long now = System.nanoTime();
+            Frame merged = mergeCandidate(current, region, budget, now);
+            Rectangle target = merged != null ? merged.bounds().union(region) : new Rectangle(region);
+            ScreenSnapshot snapshot = new ScreenSnapshot(target, delegate.region(target));
+            Frame[] next = new Frame[Math.min(MAX_FRAMES, current.length + 1)];
+            next[0] = new Frame(snapshot, target, System.nanoTime());
+            int count = 1;
+            for (int i = 0; i < current.length && count < next.length; i++) {
+                Frame frame = current[i];
+                if (frame != merged && now - frame.capturedAt() < budget * MERGE_WINDOW_BUDGETS) {
+                    next[count++] = frame;
+                }
+            }
+            frames = count == next.length ? next : Arrays.copyOf(next, count);
+            return snapshot;
+        }
+    }
+
+    private static ScreenSnapshot lookup(Frame[] frames, Rectangle region, long budget, long now) {
+        for (Frame frame : frames) {
+            if (now - frame.capturedAt() < budget && frame.bounds().contains(region)) {
+                return frame.snapshot();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The recent capture whose union with {@code region} costs at most twice the two areas captured
+     * separately, preferring the smallest union; {@code null} when none qualifies.
+     */
+    private static Frame mergeCandidate(Frame[] frames, Rectangle region, long budget, long now) {
+        Frame best = null;
+        long bestArea = Long.MAX_VALUE;
+        for (Frame frame : frames) {
+            if (now - frame.capturedAt() >= budget * MERGE_WINDOW_BUDGETS) {
+                continue;
+            }
+            long union = area(frame.bounds().union(region));
+            if (union <= 2 * (area(frame.bounds()) + area(region)) && union < bestArea) {
+                best = frame;
+                bestArea = union;
+            }
+        }
+        return best;
+    }
+
+    private static long area(Rectangle rectangle) {
+        return (long) rectangle.width * rectangle.height;
+    }
+}
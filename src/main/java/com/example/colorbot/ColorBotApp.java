@@ -1,77 +1,51 @@
 package com.example.colorbot;
 
-
 import javax.swing.ActionMap;
 import javax.swing.BorderFactory;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
 import javax.swing.ImageIcon;
-
-
-import javax.swing.ActionMap;
-import javax.swing.BorderFactory;
-import javax.swing.ImageIcon;
-
-
-import javax.swing.ActionMap;
-import javax.swing.BorderFactory;
-
-
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
-import javax.swing.JList;
-
-
-import javax.swing.BorderFactory;
-import javax.swing.JButton;
-import javax.swing.JCheckBox;
-import javax.swing.JFrame;
-
-
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
-import javax.swing.JSplitPane;
-
-
-import javax.swing.JTextArea;
-import javax.swing.KeyStroke;
-import javax.swing.ListSelectionModel;
-import javax.swing.SwingUtilities;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.DefaultCaret;
-import javax.swing.text.Document;
-import javax.swing.text.Utilities;
-
-
 import javax.swing.JSpinner;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
 import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
-
-
+import javax.swing.table.DefaultTableModel;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultCaret;
+import javax.swing.text.Document;
+import javax.swing.text.Utilities;
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
-
 import java.awt.Image;
-
-
-import java.awt.Image;
-
-
 import java.awt.Insets;
 import java.awt.MouseInfo;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -87,9 +61,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -109,25 +85,77 @@ public class ColorBotApp extends JFrame {
     private static final String CURRENT_VERSION = loadCurrentVersion();
     private static final String DEFAULT_UPDATE_URL = "https://example.com/colorbot/latest-version.txt";
     private static final String DEFAULT_DOWNLOAD_URL = "https://github.com/KSPOG/color/raw/refs/heads/main/live%20build/Prime%20Bot.jar";
+    private final JTextField coordinateField = new JTextField();
+    private final JTextField colorField = new JTextField();
+    private final JTextField captureHotkeyField = new JTextField(DEFAULT_CAPTURE_HOTKEY);
+    private final JTextField visibleKeyField = new JTextField(DEFAULT_VISIBLE_KEY);
+    private final JTextField missingKeyField = new JTextField(DEFAULT_MISSING_KEY);
+    private final JSpinner intervalSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_INTERVAL_MS, 50, 5_000, 50));
+    private final JTextField toleranceField = new JTextField(ColorTolerance.EXACT.toString());
+    private final JLabel monitorTargetsLabel = new JLabel();
+    private final List<MonitorRule> monitorRules = new ArrayList<>();
     private final JCheckBox failSafeCheckbox = new JCheckBox("Fail-safe: stop when missing", true);
-    private final JTextArea logArea = new JTextArea();
+    private final JCheckBox snapshotCheckbox = new JCheckBox("Single-frame AND color checks", true);
+    private final JComboBox<BackoffPolicy.Kind> backoffKindBox = new JComboBox<>(BackoffPolicy.Kind.values());
+    private final JSpinner backoffDelaySpinner = new JSpinner(new SpinnerNumberModel(1000, 0, 60_000, 50));
+    private final JSpinner backoffMaxSpinner = new JSpinner(new SpinnerNumberModel(8000, 0, 600_000, 500));
+    private String lastBackoffError;
+    private final JSpinner frameBudgetSpinner = new JSpinner(new SpinnerNumberModel(
+            (int) CachingScreenSource.DEFAULT_FRAME_BUDGET_MS, 0, 1_000, 1));
+    private final JLabel frameCacheLabel = new JLabel();
+    private final JSpinner inputDelaySpinner = new JSpinner(new SpinnerNumberModel(0, 0, ColorLibrary.MAX_INPUT_DELAY_MS, 1));
+    private final JCheckBox syncEachInputCheckbox = new JCheckBox("Wait for idle after every input event", false);
+    private final JSpinner metricsPortSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_METRICS_PORT, 0, 65_535, 1));
+    private final JCheckBox metricsServeCheckbox = new JCheckBox("Serve /metrics on localhost", false);
+    private final JCheckBox metricsDumpCheckbox = new JCheckBox("Dump metrics JSON every " + METRICS_DUMP_INTERVAL_MS / 1_000 + " s", false);
+    private final EventLog eventLog = new EventLog();
+    private final LogView logView = new LogView(eventLog, MAX_LOG_LINES);
+    private final JComboBox<EventLog.Level> logLevelBox = new JComboBox<>(EventLog.Level.values());
+    private final JCheckBox logListCheckbox = new JCheckBox("Full history", false);
+    private final DefaultTableModel hotLinesModel = new DefaultTableModel(
+            new Object[]{"Line", "Count", "Total ms", "Max ms", "Pixel ms", "Sleep ms", "Input ms", "Source"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 || column == 1 ? Long.class : column == 7 ? String.class : Double.class;
+        }
+    };
+    private final Timer hotLinesTimer = new Timer(HOT_LINES_REFRESH_MS, e -> refreshHotLines());
     private final JTextArea scriptArea = new JTextArea();
     private final JList<String> savedScriptsList = new JList<>();
     private final Map<String, String> savedScripts = new LinkedHashMap<>();
     private final JButton runButton = new JButton("Run script");
+    private final JButton captureButton = new JButton();
+    private final JButton screenshotButton = new JButton("Spy glass (F12)");
     private final ColorLibrary library = new ColorLibrary();
-    private final ExternalCooldownController externalCooldowns = new ExternalCooldownController();
+    private final ExternalCooldownController externalCooldowns = new ExternalCooldownController(this::appendLog);
     private final ColorMonitor monitor = new ColorMonitor(library);
-    private final ColorScriptEngine scriptEngine = new ColorScriptEngine(library, externalCooldowns);
+    private final TemplateStore templateStore = new TemplateStore();
+    private final ColorScriptEngine scriptEngine = new ColorScriptEngine(library, externalCooldowns, templateStore);
+    private final MetricsExporter metricsExporter = new MetricsExporter(library.getMetrics());
     private final ExecutorService scriptExecutor = Executors.newSingleThreadExecutor();
     private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
     private KeyStroke captureKeyStroke;
     private final KeyStroke screenshotKeyStroke = KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_F12, 0, false);
     private boolean updatingScriptAutoFill = false;
     private static final int MAX_LOG_LINES = 500;
+    private static final int MAX_RUN_LOG_HITS = 10_000;
+    private static final int HOT_LINES_REFRESH_MS = 500;
+    private static final int MAX_HOT_LINES = 50;
+    private static final int DEFAULT_METRICS_PORT = 9464;
+    private static final long METRICS_DUMP_INTERVAL_MS = 10_000;
+    /**
+     * Smaller drags in the screenshot picker count as a pixel pick rather than a template cut.
+     */
+    private static final int MIN_TEMPLATE_SIZE = 4;
     private final Path scriptsDirectory = Paths.get("scripts");
+    private final Path runLogDirectory = Paths.get("logs");
     private final Path legacySavedScriptsFile = Paths.get(System.getProperty("user.home"), ".colorbot-scripts.properties");
-    private java.util.concurrent.Future<?> runningScriptFuture;
+    private Future<?> runningScriptFuture;
 
     private static String loadCurrentVersion() {
         try (InputStream in = ColorBotApp.class.getResourceAsStream(VERSION_RESOURCE)) {
@@ -143,78 +171,12 @@ public class ColorBotApp extends JFrame {
         return DEFAULT_VERSION;
     }
 
-
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.Document;
-import javax.swing.text.Utilities;
-
-import javax.swing.JSpinner;
-import javax.swing.JTextArea;
-import javax.swing.JTextField;
-import javax.swing.SpinnerNumberModel;
-import javax.swing.SwingUtilities;
-import java.awt.BorderLayout;
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.GridBagConstraints;
-import java.awt.GridBagLayout;
-import java.awt.Insets;
-
-import java.awt.MouseInfo;
-import java.awt.Point;
-import java.awt.event.ActionEvent;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.awt.KeyboardFocusManager;
-import java.awt.Point;
-import java.awt.event.KeyEvent;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-
-public class ColorBotApp extends JFrame {
-    private final JTextField coordinateField = new JTextField();
-    private final JTextField colorField = new JTextField();
-    private final JTextField captureHotkeyField = new JTextField("F8");
-    private final JTextField visibleKeyField = new JTextField("F9");
-    private final JTextField missingKeyField = new JTextField("F10");
-    private final JSpinner intervalSpinner = new JSpinner(new SpinnerNumberModel(250, 50, 5_000, 50));
-    private final JCheckBox failSafeCheckbox = new JCheckBox("Fail-safe: stop when missing", true);
-    private final JTextArea logArea = new JTextArea();
-    private final JTextArea scriptArea = new JTextArea();
-
-    private final JList<String> savedScriptsList = new JList<>();
-    private final Map<String, String> savedScripts = new LinkedHashMap<>();
-    private final JButton captureButton = new JButton();
-    private final JButton screenshotButton = new JButton("Spy glass (F12)");
-
-
-    private final JList<String> savedScriptsList = new JList<>();
-    private final Map<String, String> savedScripts = new LinkedHashMap<>();
-    private final JButton captureButton = new JButton();
-    private final ColorLibrary library = new ColorLibrary();
-    private final ColorMonitor monitor = new ColorMonitor(library);
-    private final ColorScriptEngine scriptEngine = new ColorScriptEngine(library);
-    private final ExecutorService scriptExecutor = Executors.newSingleThreadExecutor();
-
-    private KeyStroke captureKeyStroke;
-    private final KeyStroke screenshotKeyStroke = KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_F12, 0, false);
-    private boolean updatingScriptAutoFill = false;
-
-
-    private KeyStroke captureKeyStroke;
-
-
-
-
     public ColorBotApp() {
         super("Color Bot");
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setWindowIcon();
+        // EXIT_ON_CLOSE ends the VM; write cooldown updates still held by the write-behind store
+        Runtime.getRuntime().addShutdownHook(new Thread(externalCooldowns::close, "cooldown-flush"));
 
         buildUi();
         pack();
@@ -262,8 +224,6 @@ public class ColorBotApp extends JFrame {
     }
 
     private void buildUi() {
-        logArea.setEditable(false);
-        logArea.setLineWrap(true);
         scriptArea.setText(defaultScript());
         scriptArea.setLineWrap(false);
         scriptArea.setRows(24);
@@ -272,23 +232,6 @@ public class ColorBotApp extends JFrame {
         ((DefaultCaret) scriptArea.getCaret()).setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
         attachScriptAutofill();
 
-
-
-        registerScreenshotHotkey();
-
-    }
-
-    private void buildUi() {
-        coordinateField.setEditable(false);
-        colorField.setEditable(false);
-        logArea.setEditable(false);
-        logArea.setLineWrap(true);
-        scriptArea.setText(defaultScript());
-        scriptArea.setLineWrap(true);
-        scriptArea.setPreferredSize(new Dimension(480, 200));
-
-
-
         savedScriptsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         savedScriptsList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
@@ -300,26 +243,19 @@ public class ColorBotApp extends JFrame {
         });
         loadSavedScripts();
 
-
-        seedSavedScripts();
-
-
         JPanel main = new JPanel(new BorderLayout(8, 8));
         main.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
         main.add(buildConfigPanel(), BorderLayout.NORTH);
 
-
-        JSplitPane centerSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT, buildScriptPanel(), buildLogPanel());
+        JSplitPane bottomSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, buildLogPanel(), buildHotLinesPanel());
+        bottomSplit.setResizeWeight(0.5);
+        JSplitPane centerSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT, buildScriptPanel(), bottomSplit);
         centerSplit.setResizeWeight(0.7);
         centerSplit.setOneTouchExpandable(true);
         main.add(centerSplit, BorderLayout.CENTER);
 
-
-        main.add(buildScriptPanel(), BorderLayout.CENTER);
-        main.add(new JScrollPane(logArea), BorderLayout.SOUTH);
-
-
         add(main);
+        logView.start();
     }
 
     private JPanel buildConfigPanel() {
@@ -332,8 +268,6 @@ public class ColorBotApp extends JFrame {
         int row = 0;
         gbc.gridy = row++;
         gbc.gridx = 0;
-
-
         panel.add(new JLabel("Coordinates"), gbc);
         gbc.gridx = 1;
         panel.add(coordinateField, gbc);
@@ -343,11 +277,6 @@ public class ColorBotApp extends JFrame {
         panel.add(colorField, gbc);
 
         captureButton.setText("Capture coords & color (" + captureHotkeyField.getText() + ")");
-
-
-        captureButton.setText("Capture coords & color (" + captureHotkeyField.getText() + ")");
-        JButton captureButton = new JButton("Capture coords & color (" + captureHotkeyField.getText() + ")");
-
         captureButton.addActionListener(e -> captureTarget());
         gbc.gridy = row++;
         gbc.gridx = 0;
@@ -355,7 +284,6 @@ public class ColorBotApp extends JFrame {
         panel.add(captureButton, gbc);
         gbc.gridwidth = 1;
 
-
         screenshotButton.addActionListener(e -> captureFromScreenshot());
         gbc.gridy = row++;
         gbc.gridx = 0;
@@ -363,7 +291,6 @@ public class ColorBotApp extends JFrame {
         panel.add(screenshotButton, gbc);
         gbc.gridwidth = 1;
 
-
         gbc.gridy = row++;
         gbc.gridx = 0;
         panel.add(new JLabel("Capture hotkey"), gbc);
@@ -384,14 +311,102 @@ public class ColorBotApp extends JFrame {
         gbc.gridx = 3;
         panel.add(intervalSpinner, gbc);
 
+        JButton addTargetButton = new JButton("Add monitor target");
+        JButton clearTargetsButton = new JButton("Clear targets");
+        addTargetButton.setToolTipText("Watch the captured pixel with the current keys and tolerance alongside other targets");
+        toleranceField.setToolTipText("EXACT, CHANNEL <d>, EUCLIDEAN <d>, HSV <hue> <sat> <val> or DELTA_E <d>");
+        addTargetButton.addActionListener(e -> addMonitorTarget());
+        clearTargetsButton.addActionListener(e -> clearMonitorTargets());
+        updateMonitorTargetsLabel();
         gbc.gridy = row++;
         gbc.gridx = 0;
+        panel.add(new JLabel("Tolerance"), gbc);
+        gbc.gridx = 1;
+        panel.add(toleranceField, gbc);
+        gbc.gridx = 2;
+        panel.add(addTargetButton, gbc);
+        gbc.gridx = 3;
+        panel.add(clearTargetsButton, gbc);
 
-
+        gbc.gridy = row++;
+        gbc.gridx = 0;
         gbc.gridwidth = 4;
+        panel.add(monitorTargetsLabel, gbc);
+        gbc.gridwidth = 1;
+
+        gbc.gridy = row++;
+        gbc.gridx = 0;
+        gbc.gridwidth = 2;
         panel.add(failSafeCheckbox, gbc);
+        snapshotCheckbox.addActionListener(e -> scriptEngine.setSnapshotMode(snapshotCheckbox.isSelected()));
+        gbc.gridx = 2;
+        panel.add(snapshotCheckbox, gbc);
+        gbc.gridwidth = 1;
+
+        backoffKindBox.setSelectedItem(BackoffPolicy.DEFAULT.kind());
+        backoffKindBox.setToolTipText("What a color check does after a miss (script BACKOFF lines override this)");
+        backoffDelaySpinner.setToolTipText("Fixed delay, exponential start delay, or until-change timeout (ms)");
+        backoffMaxSpinner.setToolTipText("Exponential back-off cap (ms)");
+        backoffKindBox.addActionListener(e -> applyBackoffSettings());
+        backoffDelaySpinner.addChangeListener(e -> applyBackoffSettings());
+        backoffMaxSpinner.addChangeListener(e -> applyBackoffSettings());
+        gbc.gridy = row++;
+        gbc.gridx = 0;
+        panel.add(new JLabel("Miss back-off"), gbc);
+        gbc.gridx = 1;
+        panel.add(backoffKindBox, gbc);
+        gbc.gridx = 2;
+        panel.add(backoffDelaySpinner, gbc);
+        gbc.gridx = 3;
+        panel.add(backoffMaxSpinner, gbc);
+
+        frameBudgetSpinner.setToolTipText("Screen captures younger than this are shared by the monitor and scripts (0 = off)");
+        frameBudgetSpinner.addChangeListener(e -> library.getFrameCache()
+                .ifPresent(cache -> cache.setFrameBudgetMs(((Integer) frameBudgetSpinner.getValue()).longValue())));
+        JButton cacheStatsButton = new JButton("Cache stats");
+        cacheStatsButton.addActionListener(e -> updateFrameCacheLabel());
+        updateFrameCacheLabel();
+        gbc.gridy = row++;
+        gbc.gridx = 0;
+        panel.add(new JLabel("Frame budget (ms)"), gbc);
+        gbc.gridx = 1;
+        panel.add(frameBudgetSpinner, gbc);
+        gbc.gridx = 2;
+        panel.add(frameCacheLabel, gbc);
+        gbc.gridx = 3;
+        panel.add(cacheStatsButton, gbc);
+
+        inputDelaySpinner.setToolTipText("Pause between keys of one TYPE string, key combo or click");
+        inputDelaySpinner.addChangeListener(e -> library.setInputDelayMs((Integer) inputDelaySpinner.getValue()));
+        syncEachInputCheckbox.setToolTipText("Slow legacy mode; by default input waits for the event queue once per batch");
+        syncEachInputCheckbox.addActionListener(e -> library.setInputSync(syncEachInputCheckbox.isSelected()
+                ? ColorLibrary.InputSync.EACH_EVENT
+                : ColorLibrary.InputSync.BATCH));
+        gbc.gridy = row++;
+        gbc.gridx = 0;
+        panel.add(new JLabel("Input delay (ms)"), gbc);
+        gbc.gridx = 1;
+        panel.add(inputDelaySpinner, gbc);
+        gbc.gridx = 2;
+        gbc.gridwidth = 2;
+        panel.add(syncEachInputCheckbox, gbc);
         gbc.gridwidth = 1;
 
+        metricsPortSpinner.setToolTipText("Use a different port per bot instance (0 = any free port)");
+        metricsServeCheckbox.setToolTipText("Prometheus text at http://127.0.0.1:<port>/metrics, JSON at /metrics.json");
+        metricsServeCheckbox.addActionListener(e -> applyMetricsServer());
+        metricsDumpCheckbox.setToolTipText("Writes " + metricsDumpFile() + " with capture, input and monitor latencies");
+        metricsDumpCheckbox.addActionListener(e -> applyMetricsDump());
+        gbc.gridy = row++;
+        gbc.gridx = 0;
+        panel.add(new JLabel("Metrics port"), gbc);
+        gbc.gridx = 1;
+        panel.add(metricsPortSpinner, gbc);
+        gbc.gridx = 2;
+        panel.add(metricsServeCheckbox, gbc);
+        gbc.gridx = 3;
+        panel.add(metricsDumpCheckbox, gbc);
+
         JButton startButton = new JButton("Start monitoring");
         JButton verifyButton = new JButton("Verify color now");
 
@@ -400,11 +415,6 @@ public class ColorBotApp extends JFrame {
         verifyButton.addActionListener(e -> verifyColor());
         updateButton.addActionListener(e -> checkForUpdatesAsync());
 
-
-        startButton.addActionListener(e -> toggleMonitor(startButton));
-        verifyButton.addActionListener(e -> verifyColor());
-
-
         gbc.gridy = row++;
         gbc.gridx = 0;
         panel.add(startButton, gbc);
@@ -417,23 +427,223 @@ public class ColorBotApp extends JFrame {
         return panel;
     }
 
+    private void applyMetricsServer() {
+        if (!metricsServeCheckbox.isSelected()) {
+            metricsExporter.stopHttp();
+            appendLog("Metrics endpoint stopped");
+            return;
+        }
+        try {
+            int port = metricsExporter.startHttp((Integer) metricsPortSpinner.getValue());
+            appendLog("Serving metrics at http://127.0.0.1:" + port + "/metrics");
+        } catch (IOException ex) {
+            metricsServeCheckbox.setSelected(false);
+            appendLog("Failed to start metrics endpoint: " + ex.getMessage());
+        }
+    }
+
+    private void applyMetricsDump() {
+        if (metricsDumpCheckbox.isSelected()) {
+            metricsExporter.startJsonDump(metricsDumpFile(), METRICS_DUMP_INTERVAL_MS, this::appendLog);
+            appendLog("Dumping metrics to " + metricsDumpFile());
+        } else {
+            metricsExporter.stopJsonDump();
+        }
+    }
+
+    private static Path metricsDumpFile() {
+        // one file per process so several bots in the same directory do not overwrite each other
+        return Paths.get("metrics", "colorbot-" + ProcessHandle.current().pid() + ".json");
+    }
+
+    private void applyBackoffSettings() {
+        BackoffPolicy.Kind kind = (BackoffPolicy.Kind) backoffKindBox.getSelectedItem();
+        long delay = ((Integer) backoffDelaySpinner.getValue()).longValue();
+        long max = ((Integer) backoffMaxSpinner.getValue()).longValue();
+        try {
+            BackoffPolicy policy = switch (kind) {
+                case NONE -> BackoffPolicy.none();
+                case FIXED -> BackoffPolicy.fixed(delay);
+                case EXPONENTIAL -> BackoffPolicy.exponential(delay, max);
+                case UNTIL_CHANGE -> BackoffPolicy.untilChange(delay);
+            };
+            // logged when a run starts, not on every spinner tick
+            scriptEngine.setDefaultBackoff(policy);
+            lastBackoffError = null;
+        } catch (IllegalArgumentException ex) {
+            if (!ex.getMessage().equals(lastBackoffError)) {
+                lastBackoffError = ex.getMessage();
+                appendLog("Invalid back-off settings: " + ex.getMessage());
+            }
+        }
+    }
+
     private JPanel buildLogPanel() {
         JPanel panel = new JPanel(new BorderLayout(4, 4));
         panel.setBorder(BorderFactory.createTitledBorder("Log"));
-        logArea.setRows(8);
-
         JButton clearButton = new JButton("Clear log");
-        clearButton.addActionListener(e -> clearLog());
+        clearButton.addActionListener(e -> logView.clear());
+        JButton runLogsButton = new JButton("Run logs...");
+        runLogsButton.setToolTipText("Search the log files of past script runs in '" + runLogDirectory + "'");
+        runLogsButton.addActionListener(e -> showRunLogs());
+        logListCheckbox.setToolTipText("Scrollable list of the last " + LogView.DEFAULT_HISTORY
+                + " lines instead of the last " + MAX_LOG_LINES + " as text");
+        logListCheckbox.addActionListener(e -> logView.setVirtualized(logListCheckbox.isSelected()));
+        logLevelBox.setSelectedItem(eventLog.getLevel());
+        logLevelBox.setToolTipText("DEBUG adds every color and cooldown check; lower levels are not recorded at all");
+        logLevelBox.addActionListener(e -> eventLog.setLevel((EventLog.Level) logLevelBox.getSelectedItem()));
+
+        JPanel levelPanel = new JPanel(new BorderLayout(4, 4));
+        levelPanel.add(new JLabel("Level"), BorderLayout.WEST);
+        levelPanel.add(logLevelBox, BorderLayout.CENTER);
 
         JPanel controls = new JPanel(new BorderLayout());
-        controls.add(clearButton, BorderLayout.EAST);
+        controls.add(levelPanel, BorderLayout.WEST);
+        controls.add(logListCheckbox, BorderLayout.CENTER);
+        JPanel logButtons = new JPanel(new BorderLayout(4, 4));
+        logButtons.add(runLogsButton, BorderLayout.WEST);
+        logButtons.add(clearButton, BorderLayout.EAST);
+        controls.add(logButtons, BorderLayout.EAST);
 
         panel.add(controls, BorderLayout.NORTH);
-        panel.add(new JScrollPane(logArea), BorderLayout.CENTER);
+        panel.add(logView, BorderLayout.CENTER);
 
         return panel;
     }
 
+    private void showRunLogs() {
+        JDialog dialog = new JDialog(this, "Run logs", false);
+        DefaultListModel<Path> filesModel = new DefaultListModel<>();
+        JList<Path> filesList = new JList<>(filesModel);
+        filesList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, ((Path) value).getFileName().toString(), index,
+                        isSelected, cellHasFocus);
+            }
+        });
+        try {
+            RunLogSearch.segments(runLogDirectory).forEach(filesModel::addElement);
+        } catch (IOException ex) {
+            appendLog("Failed to list run logs: " + ex.getMessage());
+        }
+        if (!filesModel.isEmpty()) {
+            filesList.setSelectedIndex(0);
+        }
+
+        LogView.LineModel hitsModel = new LogView.LineModel(MAX_RUN_LOG_HITS);
+        JList<String> hitsList = new JList<>(hitsModel);
+        hitsList.setPrototypeCellValue("run-20260101-000000.0.log:100000: 2026-01-01 00:00:00.000 INFO  Pressed A");
+        hitsList.setFixedCellHeight(hitsList.getFontMetrics(hitsList.getFont()).getHeight() + 2);
+
+        JTextField queryField = new JTextField();
+        JCheckBox ignoreCaseCheckbox = new JCheckBox("Ignore case", true);
+        JButton searchButton = new JButton("Search");
+        JLabel statusLabel = new JLabel("Select segments (none = all) and enter text; empty text lists every line");
+        Runnable search = () -> {
+            List<Path> files = filesList.getSelectedValuesList().isEmpty()
+                    ? java.util.Collections.list(filesModel.elements())
+                    : filesList.getSelectedValuesList();
+            RunLogSearch runLogSearch = new RunLogSearch(queryField.getText(), ignoreCaseCheckbox.isSelected());
+            searchButton.setEnabled(false);
+            statusLabel.setText("Searching " + files.size() + " file(s)...");
+            long start = System.nanoTime();
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return runLogSearch.search(files, MAX_RUN_LOG_HITS);
+                } catch (IOException ex) {
+                    throw new java.io.UncheckedIOException(ex);
+                }
+            }, backgroundExecutor).whenComplete((hits, error) -> SwingUtilities.invokeLater(() -> {
+                searchButton.setEnabled(true);
+                hitsModel.clear();
+                if (error != null) {
+                    statusLabel.setText("Search failed: " + error.getCause().getMessage());
+                    return;
+                }
+                List<String> lines = new ArrayList<>(hits.size());
+                for (RunLogSearch.Hit hit : hits) {
+                    lines.add(hit.file().getFileName() + ":" + hit.lineNumber() + ": " + hit.line());
+                }
+                hitsModel.append(lines);
+                statusLabel.setText(hits.size() + (hits.size() >= MAX_RUN_LOG_HITS ? "+" : "") + " matching lines in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }));
+        };
+        searchButton.addActionListener(e -> search.run());
+        queryField.addActionListener(e -> search.run());
+
+        JPanel queryPanel = new JPanel(new BorderLayout(4, 4));
+        queryPanel.add(queryField, BorderLayout.CENTER);
+        JPanel queryButtons = new JPanel(new BorderLayout(4, 4));
+        queryButtons.add(ignoreCaseCheckbox, BorderLayout.WEST);
+        queryButtons.add(searchButton, BorderLayout.EAST);
+        queryPanel.add(queryButtons, BorderLayout.EAST);
+        queryPanel.add(statusLabel, BorderLayout.SOUTH);
+
+        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, new JScrollPane(filesList), new JScrollPane(hitsList));
+        split.setResizeWeight(0.2);
+        JPanel content = new JPanel(new BorderLayout(4, 4));
+        content.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        content.add(queryPanel, BorderLayout.NORTH);
+        content.add(split, BorderLayout.CENTER);
+        dialog.setContentPane(content);
+        dialog.setSize(1000, 600);
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    private JPanel buildHotLinesPanel() {
+        JPanel panel = new JPanel(new BorderLayout(4, 4));
+        panel.setBorder(BorderFactory.createTitledBorder("Hot lines"));
+
+        JTable table = new JTable(hotLinesModel);
+        table.setAutoCreateRowSorter(true);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(7).setPreferredWidth(200);
+
+        JButton exportButton = new JButton("Export CSV...");
+        exportButton.addActionListener(e -> exportProfile());
+
+        JPanel controls = new JPanel(new BorderLayout());
+        controls.add(new JLabel("Time per script line, hottest first"), BorderLayout.CENTER);
+        controls.add(exportButton, BorderLayout.EAST);
+
+        panel.add(controls, BorderLayout.NORTH);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        return panel;
+    }
+
+    private void refreshHotLines() {
+        List<ScriptProfiler.LineStats> stats = scriptEngine.getProfiler().map(ScriptProfiler::snapshot).orElse(List.of());
+        hotLinesModel.setRowCount(0);
+        for (ScriptProfiler.LineStats line : stats.subList(0, Math.min(stats.size(), MAX_HOT_LINES))) {
+            hotLinesModel.addRow(new Object[]{(long) line.line(), line.count(), line.totalMs(), line.maxNanos() / 1e6,
+                    line.pixelNanos() / 1e6, line.sleepNanos() / 1e6, line.inputNanos() / 1e6, line.source()});
+        }
+    }
+
+    private void exportProfile() {
+        ScriptProfiler profiler = scriptEngine.getProfiler().orElse(null);
+        if (profiler == null) {
+            appendLog("Run a script first to collect a profile");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(Paths.get("script-profile.csv").toFile());
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        try {
+            Files.writeString(file, profiler.toCsv(), StandardCharsets.UTF_8);
+            appendLog("Profile exported to " + file);
+        } catch (IOException ex) {
+            appendLog("Failed to export profile: " + ex.getMessage());
+        }
+    }
+
     private JPanel buildScriptPanel() {
         JPanel panel = new JPanel(new BorderLayout(4, 4));
 
@@ -468,7 +678,6 @@ public class ColorBotApp extends JFrame {
         JPanel editorPanel = new JPanel(new BorderLayout(4, 4));
         editorPanel.setBorder(BorderFactory.createTitledBorder("Editor"));
 
-
         JPanel editorHeader = new JPanel(new BorderLayout());
         editorHeader.add(new JLabel("Supported: WAIT, PRESS, HOLD, RELEASE, TYPE, MOVE, CLICK, CAPTURE_TARGET, IF_COLOR, LOOPS"), BorderLayout.CENTER);
         JButton guideButton = new JButton("Script guide");
@@ -482,12 +691,6 @@ public class ColorBotApp extends JFrame {
         editorPanel.add(scriptScroll, BorderLayout.CENTER);
         runButton.addActionListener(e -> toggleScriptRun());
 
-
-        editorPanel.add(new JLabel("Supported: WAIT, PRESS, HOLD, RELEASE, TYPE, MOVE, CLICK, CAPTURE_TARGET, IF_COLOR, LOOPS"), BorderLayout.NORTH);
-        editorPanel.add(new JScrollPane(scriptArea), BorderLayout.CENTER);
-        JButton runButton = new JButton("Run script");
-        runButton.addActionListener(e -> runScript());
-
         editorPanel.add(runButton, BorderLayout.SOUTH);
 
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, savedPanel, editorPanel);
@@ -496,7 +699,6 @@ public class ColorBotApp extends JFrame {
         return panel;
     }
 
-
     private void showScriptGuide() {
         String message = String.join("\n",
                 "Color Bot scripting quick guide:",
@@ -506,14 +708,30 @@ public class ColorBotApp extends JFrame {
                 "  PRESS <KEY>                 - Tap a key (e.g., PRESS F9)",
                 "  HOLD <KEY> / RELEASE <KEY>  - Hold or release a key (Keyboard.Hold/Release keys('{X}'))",
                 "  TYPE <text>                 - Type text literally",
-                "  MOVE x y / CLICK            - Move mouse to x y, CLICK uses current position",
+                "  MOVE x y / CLICK            - Move mouse to x y (numbers or variables), CLICK uses current position",
                 "  CAPTURE_TARGET              - Grab current mouse pixel for coords & color",
+                "  FLUSH_INPUT                 - Wait until queued keys/mouse input has been sent",
+                "  • Input is sent in the background; WAIT and the end of the script flush it automatically",
                 "",
                 "Color checks:",
-                "  IF_COLOR r g b x y          - Run next lines only when pixel matches RGB",
+                "  IF_COLOR x y r g b THEN <action> [ELSE <action>] - Act on a single pixel check",
                 "  If Color.At coordinate is not (RGB 'r', 'g', 'b', 'x', 'y') begin ... end",
                 "  If Color.At ... && If Color.At ... begin ... end (AND multiple color checks)",
-                "  • Missing colors log a message and wait 1000 ms before retrying",
+                "  • AND checks read one screen capture of all their pixels (toggle: Single-frame AND color checks)",
+                "  • After a miss the check backs off (default: wait 1000 ms; see Miss back-off)",
+                "  BACKOFF NONE | FIXED <ms> | EXPONENTIAL <start> <max> | UNTIL_CHANGE <timeout> | DEFAULT",
+                "  • Applies to every color check below it; the run log reports time spent backing off",
+                "  TOLERANCE EXACT | CHANNEL <d> | EUCLIDEAN <d> | HSV <hue> <sat> <val> | DELTA_E <d>",
+                "  • Applies to every color check below it (default EXACT); use it instead of extra pixels/retries",
+                "  FIND_COLOR x1 y1 x2 y2 r g b INTO vx vy [STEP n] [THEN <action>] [ELSE <action>]",
+                "  • Searches the rectangle for the first matching pixel; vx/vy are -1 when it is not found",
+                "  • Example: FIND_COLOR 0 0 1919 1079 #FF0000 INTO tx ty THEN MOVE tx ty",
+                "  FIND_IMAGE name x1 y1 x2 y2 INTO vx vy [NCC [threshold]] [THEN <action>] [ELSE <action>]",
+                "  • Searches for templates/<name>.png; vx/vy get the match center, -1 when not found",
+                "  • Exact unless a TOLERANCE is active; NCC matches brightness-shifted images (default 0.9)",
+                "  • Cut templates by dragging a rectangle in the F12 screenshot picker",
+                "  WAIT_UNTIL [NOT] COLOR x y r g b [TIMEOUT <ms>] - Block until the pixel (stops) matching",
+                "  • Reacts within about a millisecond of the change; without TIMEOUT waits until Stop script",
                 "",
                 "Loops:",
                 "  LOOP <count|FOREVER> ... END_LOOP",
@@ -525,12 +743,21 @@ public class ColorBotApp extends JFrame {
                 "  • Values sync to 'cooldowns/cooldowns.properties' so external tools can share state",
                 "  IF_COOLDOWN <last> <cd> THEN <action> [ELSE <action>]",
                 "  Example: SET FireBoltCD = 5000 / SET LastFireBolt = TIMER",
+                "  WAIT_COOLDOWN [MAX <ms>]    - Sleep until the next IF_COOLDOWN with an enabled action is ready",
+                "  NEXT_COOLDOWN INTO <var>    - Store ms until the next cooldown is ready (0 = now, -1 = none)",
+                "  • Cooldowns run on a monotonic clock; changing the system time does not affect them",
+                "  ROTATION [WAIT] ... END_ROTATION - Fire the best ready skill each time the block runs",
+                "  SKILL <name> KEY <key> CD <ms> [PRIORITY <n>] [DISABLED] [WHEN [NOT] COLOR x y r g b]",
+                "  • Higher PRIORITY fires first; WAIT sleeps until the next skill is ready when none is",
+                "  • WAIT applies the miss back-off instead while ready skills are held back by WHEN",
+                "  • ENABLE/DISABLE <name> toggle skills; casts, uptime and wasted cooldown are logged at the end",
                 "",
                 "Hotkeys:",
-                "  F8 captures live pixel; F12 opens the screenshot picker (Spy glass)",
+                "  F8 captures live pixel; F12 opens the screenshot picker (Spy glass; drag to save a template)",
                 "  • Hold CTRL + scroll to zoom the screenshot picker",
                 "",
                 "Tips:",
+                "  • The whole script is checked before it runs; every syntax error is logged with its line",
                 "  • Saved scripts live in the 'scripts' folder as .ini files",
                 "  • Caret inside the (RGB ...) line autofills with the last captured pixel");
 
@@ -643,12 +870,6 @@ public class ColorBotApp extends JFrame {
         savedScripts.put("Looped press", "# Looping example\nLOOP 3\n  PRESS " + DEFAULT_VISIBLE_KEY + "\n  WAIT 250\nEND_LOOP\nLOG Loop finished");
         persistSavedScripts();
 
-    private void seedSavedScripts() {
-        savedScripts.clear();
-        savedScripts.put("Blue Eye example", defaultScript());
-        savedScripts.put("Looped press", "# Looping example\nLOOP 3\n  PRESS " + visibleKeyField.getText() + "\n  WAIT 250\nEND_LOOP\nLOG Loop finished");
-
-
         refreshSavedScriptsList();
         savedScriptsList.setSelectedIndex(0);
     }
@@ -744,7 +965,6 @@ public class ColorBotApp extends JFrame {
         }
     }
 
-
     private void refreshSavedScriptsList() {
         javax.swing.DefaultListModel<String> model = new javax.swing.DefaultListModel<>();
         savedScripts.keySet().forEach(model::addElement);
@@ -785,7 +1005,7 @@ public class ColorBotApp extends JFrame {
             savedScripts.remove(name);
             refreshSavedScriptsList();
             appendLog("Deleted script: " + name);
-
+            persistSavedScripts();
         }
     }
 
@@ -804,21 +1024,6 @@ public class ColorBotApp extends JFrame {
                 "end";
     }
 
-
-
-                "  Macro.Pause('250')\n" +
-                "  Keyboard.Hold keys('{" + visibleKeyField.getText() + "}')\n" +
-                "  Macro.Pause('50')\n" +
-                "  Keyboard.Release keys('{" + visibleKeyField.getText() + "}')\n" +
-                "end\n" +
-                "Macro.Loop('3') begin\n" +
-                "  WAIT 100\n" +
-                "  PRESS " + visibleKeyField.getText() + "\n" +
-                "end";
-    }
-
-
-
     private void attachScriptAutofill() {
         scriptArea.addCaretListener(e -> maybeAutofillColorLine());
     }
@@ -857,11 +1062,9 @@ public class ColorBotApp extends JFrame {
                 ColorSample fresh = library.captureCurrentPixel();
                 library.setTargetSample(fresh);
 
-
                 coordinateField.setText(fresh.location().x + ", " + fresh.location().y);
                 colorField.setText(fresh.toHex());
 
-
                 appendLog("Captured target at " + fresh.location() + " = " + fresh.toHex());
                 return fresh;
             });
@@ -904,8 +1107,7 @@ public class ColorBotApp extends JFrame {
             }
         });
 
-      
-      captureHotkeyField.getDocument().addDocumentListener(new DocumentListener() {
+        captureHotkeyField.getDocument().addDocumentListener(new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent e) {
                 updateCaptureHotkeyBinding();
@@ -946,7 +1148,6 @@ public class ColorBotApp extends JFrame {
             captureKeyStroke = null;
         }
 
-
     }
 
     private void registerScreenshotHotkey() {
@@ -960,65 +1161,17 @@ public class ColorBotApp extends JFrame {
                 captureFromScreenshot();
             }
 
-
-      
-        panel.setBorder(BorderFactory.createTitledBorder("Script playground"));
-        panel.add(new JScrollPane(scriptArea), BorderLayout.CENTER);
-        panel.add(new JLabel("Supported: WAIT, PRESS, TYPE, MOVE, CLICK, CAPTURE_TARGET, IF_TARGET_VISIBLE, IF_COLOR, LOG"), BorderLayout.NORTH);
-        JButton runButton = new JButton("Run script");
-        runButton.addActionListener(e -> runScript());
-        panel.add(runButton, BorderLayout.SOUTH);
-        return panel;
-    }
-
-    private String defaultScript() {
-        return "# Example macro inspired by Blue Eye Macro\n" +
-                "CAPTURE_TARGET\n" +
-                "WAIT 500\n" +
-                "IF_TARGET_VISIBLE THEN PRESS " + visibleKeyField.getText() + " ELSE PRESS " + missingKeyField.getText() + "\n" +
-                "LOG Done";
-    }
-
-    private void registerCaptureHotkey() {
-        KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(event -> {
-            if (event.getID() != KeyEvent.KEY_PRESSED) {
-                return false;
-            }
-            try {
-                int expectedCode = KeyName.toKeyCode(captureHotkeyField.getText());
-                if (event.getKeyCode() == expectedCode) {
-                    captureTarget();
-                    return true;
-                }
-            } catch (Exception ignored) {
-                // ignore invalid keys
-            }
-            return false;
-
-
         });
     }
 
     private void captureTarget() {
         ColorSample sample = library.captureCurrentPixel();
         library.setTargetSample(sample);
-        appendLog("Captured target at " + sample.location() + " = " + sample.toHex());
-    }
-
-
-
-        appendLog("Captured target at " + sample.location() + " = " + sample.toHex());
-    }
-
-
         coordinateField.setText(sample.location().x + ", " + sample.location().y);
         colorField.setText(sample.toHex());
         appendLog("Captured target at " + sample.location() + " = " + sample.toHex());
     }
 
-
-
-
     private void captureFromScreenshot() {
         appendLog("Capturing screenshot for pixel pick...");
         BufferedImage screenshot = library.captureScreenshot();
@@ -1029,29 +1182,62 @@ public class ColorBotApp extends JFrame {
 
         final double[] zoom = {1.0};
 
-
-
-        final double[] zoom = {1.0};
-
-
-
-        javax.swing.JDialog dialog = new javax.swing.JDialog(this, "Pick pixel from screenshot", true);
-        javax.swing.JLabel label = new javax.swing.JLabel(new javax.swing.ImageIcon(copy));
-        label.addMouseListener(new MouseAdapter() {
+        javax.swing.JDialog dialog = new javax.swing.JDialog(this,
+                "Pick pixel from screenshot (drag to cut a FIND_IMAGE template)", true);
+        // drag selection in screenshot pixels; drawn scaled by the current zoom
+        final Rectangle[] selection = {null};
+        final Point[] dragStart = {null};
+        javax.swing.JLabel label = new javax.swing.JLabel(new javax.swing.ImageIcon(copy)) {
             @Override
-            public void mouseClicked(MouseEvent e) {
-
-                int x = (int) Math.round(e.getX() / zoom[0]);
-                int y = (int) Math.round(e.getY() / zoom[0]);
+            protected void paintComponent(java.awt.Graphics graphics) {
+                super.paintComponent(graphics);
+                Rectangle area = selection[0];
+                if (area != null) {
+                    graphics.setColor(Color.MAGENTA);
+                    graphics.drawRect((int) Math.round(area.x * zoom[0]), (int) Math.round(area.y * zoom[0]),
+                            (int) Math.round(area.width * zoom[0]) - 1, (int) Math.round(area.height * zoom[0]) - 1);
+                }
+            }
+        };
+        label.setHorizontalAlignment(javax.swing.SwingConstants.LEFT);
+        label.setVerticalAlignment(javax.swing.SwingConstants.TOP);
+        MouseAdapter picker = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStart[0] = toImagePoint(e, zoom[0]);
+                selection[0] = null;
+            }
 
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragStart[0] == null) {
+                    return;
+                }
+                Point end = toImagePoint(e, zoom[0]);
+                Rectangle area = new Rectangle(dragStart[0]);
+                area.add(end);
+                area.width++;
+                area.height++;
+                selection[0] = area.intersection(new Rectangle(copy.getWidth(), copy.getHeight()));
+                label.repaint();
+            }
 
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                Rectangle area = selection[0];
+                if (area != null && area.width >= MIN_TEMPLATE_SIZE && area.height >= MIN_TEMPLATE_SIZE) {
+                    if (saveTemplate(dialog, screenshot, area)) {
+                        dialog.dispose();
+                    } else {
+                        selection[0] = null;
+                        label.repaint();
+                    }
+                    return;
+                }
+                selection[0] = null;
                 int x = (int) Math.round(e.getX() / zoom[0]);
                 int y = (int) Math.round(e.getY() / zoom[0]);
 
-                int x = e.getX();
-                int y = e.getY();
-
-
                 if (x < 0 || y < 0 || x >= copy.getWidth() || y >= copy.getHeight()) {
                     return;
                 }
@@ -1059,17 +1245,15 @@ public class ColorBotApp extends JFrame {
                 ColorSample sample = new ColorSample(new Point(x, y), color);
                 library.setTargetSample(sample);
 
-
                 coordinateField.setText(sample.location().x + ", " + sample.location().y);
                 colorField.setText(sample.toHex());
 
-
                 appendLog("Captured screenshot target at (" + x + ", " + y + ") = " + sample.toHex());
                 dialog.dispose();
             }
-        });
-
-
+        };
+        label.addMouseListener(picker);
+        label.addMouseMotionListener(picker);
 
         label.addMouseWheelListener(event -> {
             if (!event.isControlDown()) {
@@ -1082,7 +1266,6 @@ public class ColorBotApp extends JFrame {
             label.revalidate();
         });
 
-
         javax.swing.JScrollPane scrollPane = new javax.swing.JScrollPane(label);
         dialog.add(scrollPane);
         dialog.setSize(new Dimension(Math.min(1000, copy.getWidth() + 50), Math.min(800, copy.getHeight() + 50)));
@@ -1090,6 +1273,42 @@ public class ColorBotApp extends JFrame {
         dialog.setVisible(true);
     }
 
+    private static Point toImagePoint(MouseEvent e, double zoom) {
+        return new Point((int) Math.floor(e.getX() / zoom), (int) Math.floor(e.getY() / zoom));
+    }
+
+    /**
+     * Asks for a name and writes {@code area} of the screenshot to the template store; false when cancelled or failed.
+     */
+    private boolean saveTemplate(java.awt.Component parent, BufferedImage screenshot, Rectangle area) {
+        String name = JOptionPane.showInputDialog(parent,
+                "Template name for the " + area.width + "x" + area.height + " selection (letters, digits, _ or -):",
+                "Save template", JOptionPane.QUESTION_MESSAGE);
+        if (name == null) {
+            return false;
+        }
+        name = name.trim();
+        if (!TemplateStore.isValidName(name)) {
+            JOptionPane.showMessageDialog(parent, "Template names may only use letters, digits, '_' and '-'.",
+                    "Save template", JOptionPane.WARNING_MESSAGE);
+            return false;
+        }
+        BufferedImage cut = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = cut.createGraphics();
+        g.drawImage(screenshot, -area.x, -area.y, null);
+        g.dispose();
+        try {
+            Path file = templateStore.save(name, cut);
+            appendLog("Saved template " + name + " (" + area.width + "x" + area.height + " from " + area.x + ","
+                    + area.y + ") to " + file + "; use FIND_IMAGE " + name + " x1 y1 x2 y2 INTO x y");
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            JOptionPane.showMessageDialog(parent, "Could not save template: " + ex.getMessage(),
+                    "Save template", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+    }
+
     private BufferedImage scaleImage(BufferedImage source, double zoom) {
         int width = Math.max(1, (int) Math.round(source.getWidth() * zoom));
         int height = Math.max(1, (int) Math.round(source.getHeight() * zoom));
@@ -1100,7 +1319,6 @@ public class ColorBotApp extends JFrame {
         return scaled;
     }
 
-
     private void toggleMonitor(JButton startButton) {
         if (startButton.getText().startsWith("Stop")) {
             monitor.stop();
@@ -1108,28 +1326,61 @@ public class ColorBotApp extends JFrame {
             appendLog("Monitoring stopped");
             return;
         }
+        int interval = (Integer) intervalSpinner.getValue();
+        boolean failSafe = failSafeCheckbox.isSelected();
+        List<MonitorRule> rules;
+        try {
+            rules = monitorRules.isEmpty() ? List.of(currentMonitorRule()) : List.copyOf(monitorRules);
+            monitor.start(rules, failSafe, interval, this::appendLog);
+        } catch (IllegalArgumentException ex) {
+            appendLog("Cannot start monitoring: " + ex.getMessage());
+            return;
+        }
+
+        startButton.setText("Stop monitoring");
+        if (rules.size() == 1) {
+            ColorSample sample = rules.get(0).sample();
+            appendLog("Monitoring started at " + sample.location() + " for color " + sample.toHex());
+        } else {
+            appendLog("Monitoring started for " + rules.size() + " targets");
+        }
+    }
+
+    private MonitorRule currentMonitorRule() {
         ColorSample sample = library.getTargetSample()
                 .orElseGet(() -> {
                     ColorSample captured = library.captureCurrentPixel();
                     library.setTargetSample(captured);
                     return captured;
                 });
+        return new MonitorRule(sample, ColorTolerance.parse(toleranceField.getText()),
+                visibleKeyField.getText(), missingKeyField.getText(), 0);
+    }
 
-        int interval = DEFAULT_INTERVAL_MS;
-        boolean failSafe = failSafeCheckbox.isSelected();
-        monitor.start(sample, DEFAULT_VISIBLE_KEY, DEFAULT_MISSING_KEY, failSafe, interval, this::appendLog);
-
-
-        int interval = DEFAULT_INTERVAL_MS;
-        boolean failSafe = failSafeCheckbox.isSelected();
-        monitor.start(sample, DEFAULT_VISIBLE_KEY, DEFAULT_MISSING_KEY, failSafe, interval, this::appendLog);
+    private void addMonitorTarget() {
+        MonitorRule rule;
+        try {
+            rule = currentMonitorRule();
+        } catch (IllegalArgumentException ex) {
+            appendLog("Invalid tolerance: " + ex.getMessage());
+            return;
+        }
+        monitorRules.add(rule);
+        updateMonitorTargetsLabel();
+        appendLog("Added monitor target " + rule.sample().location().x + "," + rule.sample().location().y
+                + " " + rule.sample().toHex() + " (" + rule.tolerance() + ")");
+    }
 
-        int interval = (Integer) intervalSpinner.getValue();
-        boolean failSafe = failSafeCheckbox.isSelected();
-        monitor.start(sample, visibleKeyField.getText(), missingKeyField.getText(), failSafe, interval, this::appendLog);
+    private void clearMonitorTargets() {
+        monitorRules.clear();
+        updateMonitorTargetsLabel();
+        appendLog("Cleared monitor targets");
+    }
 
-        startButton.setText("Stop monitoring");
-        appendLog("Monitoring started at " + sample.location() + " for color " + sample.toHex());
+    private void updateMonitorTargetsLabel() {
+        monitorTargetsLabel.setText(monitorRules.isEmpty()
+                ? "Monitor targets: captured pixel only"
+                : "Monitor targets: " + monitorRules.size() + " (one capture per tick)");
     }
 
     private void verifyColor() {
@@ -1145,6 +1396,16 @@ public class ColorBotApp extends JFrame {
         return runningScriptFuture != null && !runningScriptFuture.isDone();
     }
 
+    private void updateFrameCacheLabel() {
+        frameCacheLabel.setText(library.getFrameCache()
+                .map(cache -> describe(cache.stats()))
+                .orElse("Frame cache off"));
+    }
+
+    private static String describe(CachingScreenSource.Stats stats) {
+        return String.format("%d hits / %d captures (%.0f%% reused)", stats.hits(), stats.misses(), stats.hitRate() * 100);
+    }
+
     private void toggleScriptRun() {
         synchronized (this) {
             if (isScriptRunning()) {
@@ -1156,10 +1417,12 @@ public class ColorBotApp extends JFrame {
             }
             String scriptText = scriptArea.getText();
             runButton.setText("Stop script");
-            appendLog("Running script...");
+            RunLogWriter runLog = openRunLog();
+            appendLog("Running script... (miss back-off: " + scriptEngine.getDefaultBackoff() + ")");
+            hotLinesTimer.start();
             runningScriptFuture = scriptExecutor.submit(() -> {
                 try {
-                    scriptEngine.run(scriptText, this::appendLog);
+                    scriptEngine.run(scriptText, eventLog);
                     appendLog("Script finished");
                 } catch (InterruptedException ex) {
                     Thread.currentThread().interrupt();
@@ -1170,49 +1433,44 @@ public class ColorBotApp extends JFrame {
                     synchronized (ColorBotApp.this) {
                         runningScriptFuture = null;
                     }
-                    SwingUtilities.invokeLater(() -> runButton.setText("Run script"));
+                    library.getFrameCache().ifPresent(cache -> appendLog("Frame cache: " + describe(cache.stats())));
+                    library.getInputStats().ifPresent(stats -> appendLog("Input: " + stats.delivered() + " events, "
+                            + stats.meanLatencyMicros() + " us mean / " + stats.maxLatencyMicros() + " us max queue latency"
+                            + (stats.fullWaits() > 0 ? ", " + stats.fullWaits() + " waits on a full queue" : "")
+                            + (stats.failed() > 0 ? ", " + stats.failed() + " failed" : "")));
+                    if (runLog != null) {
+                        runLog.close();
+                    }
+                    SwingUtilities.invokeLater(() -> {
+                        runButton.setText("Run script");
+                        updateFrameCacheLabel();
+                        hotLinesTimer.stop();
+                        refreshHotLines();
+                    });
                 }
             });
         }
 
-
-    private void runScript() {
-        String scriptText = scriptArea.getText();
-        scriptExecutor.submit(() -> scriptEngine.run(scriptText, this::appendLog));
-
-    }
-
-    private void appendLog(String text) {
-        SwingUtilities.invokeLater(() -> {
-            logArea.append(text + "\n");
-            logArea.setCaretPosition(logArea.getDocument().getLength());
-
-            trimLog();
-        });
     }
 
-    private void trimLog() {
+    /**
+     * Starts the on-disk log of one script run; null (after logging why) when it cannot be created.
+     */
+    private RunLogWriter openRunLog() {
         try {
-            while (logArea.getLineCount() > MAX_LOG_LINES) {
-                int end = logArea.getLineEndOffset(0);
-                logArea.getDocument().remove(0, end);
-            }
-        } catch (BadLocationException ignored) {
-            // ignore
+            RunLogWriter runLog = new RunLogWriter(runLogDirectory, eventLog, this::appendLog);
+            appendLog("Run log: " + runLog.currentFile());
+            return runLog;
+        } catch (IOException ex) {
+            appendLog("Run log disabled: " + ex.getMessage());
+            return null;
         }
     }
 
-    private void clearLog() {
-        logArea.setText("");
-    }
-
-
-
-        });
+    private void appendLog(String text) {
+        eventLog.info(text);
     }
 
-
-
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             ColorBotApp app = new ColorBotApp();
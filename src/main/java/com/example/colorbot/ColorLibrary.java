@@ -4,47 +4,124 @@ import java.awt.AWTException;
 import java.awt.Color;
 import java.awt.MouseInfo;
 import java.awt.Point;
-
 import java.awt.Rectangle;
 import java.awt.Robot;
-import java.awt.Toolkit;
 import java.awt.event.InputEvent;
 import java.awt.image.BufferedImage;
-
+import java.util.List;
 import java.util.Objects;
-
-
-import java.util.Objects;
-
-import java.awt.Robot;
-import java.awt.event.InputEvent;
-
-
 import java.util.Optional;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Core automation library backing the Color Bot UI and scripting system.
+ * Pixels are read through a {@link ScreenSource}; keyboard and mouse output goes through
+ * {@link Robot} and is silently dropped when the library was built without one (headless use).
  */
 public class ColorLibrary {
+
+    /**
+     * When keyboard and mouse output waits for the AWT event queue to drain.
+     */
+    public enum InputSync {
+        EACH_EVENT,
+        BATCH
+    }
+
+    /**
+     * Upper bound for {@link #setInputDelayMs(int)}; {@link Robot#delay(int)} accepts up to a minute.
+     */
+    public static final int MAX_INPUT_DELAY_MS = 1_000;
+
     private final Robot robot;
+    private final ScreenSource screen;
+    /**
+     * Delivers all keyboard and mouse output off the calling thread; null without a robot.
+     */
+    private final InputDispatcher input;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final LatencyHistogram pixelReads = metrics.histogram("colorbot_pixel_read",
+            "Latency of single pixel reads made through the library");
+    private final LatencyHistogram regionCaptures = metrics.histogram("colorbot_region_capture",
+            "Latency of region captures (color and image search, monitor ticks, snapshot checks)");
     private volatile ColorSample targetSample;
+    private volatile InputSync inputSync = InputSync.BATCH;
+    private volatile int inputDelayMs;
 
-
+    /**
+     * Live desktop library; screen reads share one capture per
+     * {@link CachingScreenSource#DEFAULT_FRAME_BUDGET_MS frame budget}.
+     */
     public ColorLibrary(Robot robot) {
-        this.robot = Objects.requireNonNull(robot, "robot");
-        this.robot.setAutoWaitForIdle(true);
+        this(new CachingScreenSource(new RobotScreenSource(robot)), robot);
     }
 
-
     public ColorLibrary() {
+        this(createRobot());
+    }
+
+    /**
+     * Headless library: pixels come from {@code screen} and input is discarded.
+     */
+    public ColorLibrary(ScreenSource screen) {
+        this(screen, null);
+    }
+
+    public ColorLibrary(ScreenSource screen, Robot robot) {
+        this.screen = Objects.requireNonNull(screen, "screen");
+        this.robot = robot;
+        if (robot != null) {
+            // input calls sync once per batch instead of after every event; see setInputSync
+            robot.setAutoWaitForIdle(false);
+            this.input = new InputDispatcher(InputDispatcher.Sink.of(robot));
+            metrics.register("colorbot_input_dispatch", "Time from submitting an input event to its delivery",
+                    input.latency());
+            metrics.counter("colorbot_input_failures", "Input events the system rejected", () -> input.stats().failed());
+        } else {
+            this.input = null;
+        }
+        if (screen instanceof CachingScreenSource cache) {
+            metrics.counter("colorbot_frame_cache_hits", "Screen reads served from a shared capture",
+                    () -> cache.stats().hits());
+            metrics.counter("colorbot_frame_cache_misses", "Screen reads that needed a new capture",
+                    () -> cache.stats().misses());
+        }
+    }
+
+    private static Robot createRobot() {
         try {
-            this.robot = new Robot();
-            this.robot.setAutoWaitForIdle(true);
+            return new Robot();
         } catch (AWTException e) {
             throw new IllegalStateException("Unable to create Robot", e);
         }
     }
 
+    public ScreenSource getScreenSource() {
+        return screen;
+    }
+
+    /**
+     * The shared capture cache when the screen source is one, for tuning its budget and reading hit rates.
+     */
+    public Optional<CachingScreenSource> getFrameCache() {
+        return screen instanceof CachingScreenSource cache ? Optional.of(cache) : Optional.empty();
+    }
+
+    /**
+     * Latencies of this library's screen reads and input, plus whatever the monitor and script
+     * engine built on it register.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    private int readPixel(int x, int y) {
+        long start = System.nanoTime();
+        int rgb = screen.pixel(x, y);
+        pixelReads.recordSince(start);
+        return rgb;
+    }
+
     public synchronized void setTargetSample(ColorSample sample) {
         this.targetSample = sample;
     }
@@ -55,8 +132,7 @@ public class ColorLibrary {
 
     public ColorSample captureCurrentPixel() {
         Point pointer = MouseInfo.getPointerInfo().getLocation();
-        Color color = robot.getPixelColor(pointer.x, pointer.y);
-        return new ColorSample(pointer, color);
+        return new ColorSample(pointer, new Color(readPixel(pointer.x, pointer.y)));
     }
 
     public boolean isTargetVisible() {
@@ -66,50 +142,208 @@ public class ColorLibrary {
     }
 
     public boolean isColorAt(ColorSample sample) {
-        Color current = robot.getPixelColor(sample.location().x, sample.location().y);
-        return colorsMatch(sample.color(), current);
+        return isColorAt(sample.location(), sample.color(), sample.tolerance());
     }
 
     public boolean isColorAt(Point location, Color color) {
-        Color current = robot.getPixelColor(location.x, location.y);
-        return colorsMatch(color, current);
+        return isColorAt(location, color, ColorTolerance.EXACT);
+    }
+
+    public boolean isColorAt(Point location, Color color, ColorTolerance tolerance) {
+        return tolerance.matches(color.getRGB(), readPixel(location.x, location.y));
+    }
+
+    /**
+     * Current pixel at screen coordinates as packed {@code 0xRRGGBB}.
+     */
+    public int rgbAt(int x, int y) {
+        return readPixel(x, y);
+    }
+
+    public boolean matches(int x, int y, int packedRgb) {
+        return (readPixel(x, y) & 0xFFFFFF) == (packedRgb & 0xFFFFFF);
+    }
+
+    public boolean matches(int x, int y, int packedRgb, ColorTolerance tolerance) {
+        return tolerance.matches(packedRgb, readPixel(x, y));
+    }
+
+    public boolean matches(PackedColorSample sample) {
+        return sample.matches(readPixel(sample.x(), sample.y()));
     }
 
     public void pressKey(String keyName) {
-        int keyCode = KeyName.toKeyCode(keyName);
-        robot.keyPress(keyCode);
-        robot.keyRelease(keyCode);
+        pressKey(KeyName.toKeyCode(keyName));
     }
 
+    public void pressKey(int keyCode) {
+        if (robot == null) {
+            return;
+        }
+        InputDispatcher.Batch batch = batch();
+        batch.keyPress(keyCode);
+        batch.keyRelease(keyCode);
+        batch.submit();
+    }
+
+    /**
+     * Presses {@code keyCodes} in order and releases them in reverse, e.g. CTRL, SHIFT, ESC.
+     */
+    public void pressCombo(int... keyCodes) {
+        if (robot == null || keyCodes.length == 0) {
+            return;
+        }
+        InputDispatcher.Batch batch = batch();
+        for (int keyCode : keyCodes) {
+            batch.keyPress(keyCode);
+        }
+        for (int i = keyCodes.length - 1; i >= 0; i--) {
+            batch.keyRelease(keyCodes[i]);
+        }
+        batch.submit();
+    }
 
     public void holdKey(String keyName) {
-        int keyCode = KeyName.toKeyCode(keyName);
-        robot.keyPress(keyCode);
+        holdKey(KeyName.toKeyCode(keyName));
+    }
+
+    public void holdKey(int keyCode) {
+        if (robot == null) {
+            return;
+        }
+        InputDispatcher.Batch batch = batch();
+        batch.keyPress(keyCode);
+        batch.submit();
     }
 
     public void releaseKey(String keyName) {
-        int keyCode = KeyName.toKeyCode(keyName);
-        robot.keyRelease(keyCode);
+        releaseKey(KeyName.toKeyCode(keyName));
+    }
+
+    public void releaseKey(int keyCode) {
+        if (robot == null) {
+            return;
+        }
+        InputDispatcher.Batch batch = batch();
+        batch.keyRelease(keyCode);
+        batch.submit();
     }
 
+    /**
+     * Types the whole string as one batch: one sync with the event queue at the end, not per key.
+     */
     public void typeText(String text) {
-        if (text == null) {
+        if (text == null || robot == null) {
             return;
         }
-        for (char c : text.toCharArray()) {
-            int keycode = KeyEventMapper.mapChar(c);
-            robot.keyPress(keycode);
-            robot.keyRelease(keycode);
+        InputDispatcher.Batch batch = batch();
+        for (int i = 0; i < text.length(); i++) {
+            int keycode = KeyEventMapper.mapChar(text.charAt(i));
+            batch.keyPress(keycode);
+            batch.keyRelease(keycode);
         }
+        batch.submit();
     }
 
     public void moveMouse(int x, int y) {
-        robot.mouseMove(x, y);
+        if (robot == null) {
+            return;
+        }
+        InputDispatcher.Batch batch = batch();
+        batch.mouseMove(x, y);
+        batch.submit();
     }
 
     public void leftClick() {
-        robot.mousePress(InputEvent.BUTTON1_DOWN_MASK);
-        robot.mouseRelease(InputEvent.BUTTON1_DOWN_MASK);
+        if (robot == null) {
+            return;
+        }
+        InputDispatcher.Batch batch = batch();
+        batch.mousePress(InputEvent.BUTTON1_DOWN_MASK);
+        batch.mouseRelease(InputEvent.BUTTON1_DOWN_MASK);
+        batch.submit();
+    }
+
+    /**
+     * {@link InputSync#BATCH} (the default) sends each call's events back to back and waits for the
+     * AWT event queue once at the end; {@link InputSync#EACH_EVENT} waits after every event, as
+     * {@link Robot#setAutoWaitForIdle(boolean)} does.
+     */
+    public void setInputSync(InputSync inputSync) {
+        this.inputSync = Objects.requireNonNull(inputSync, "inputSync");
+        if (robot != null) {
+            robot.setAutoWaitForIdle(inputSync == InputSync.EACH_EVENT);
+            input.setSyncBatches(inputSync == InputSync.BATCH);
+        }
+    }
+
+    public InputSync getInputSync() {
+        return inputSync;
+    }
+
+    /**
+     * Pause between consecutive events of one batch, for targets that drop keys sent too fast.
+     */
+    public void setInputDelayMs(int inputDelayMs) {
+        if (inputDelayMs < 0 || inputDelayMs > MAX_INPUT_DELAY_MS) {
+            throw new IllegalArgumentException("Input delay must be between 0 and " + MAX_INPUT_DELAY_MS + " ms");
+        }
+        this.inputDelayMs = inputDelayMs;
+    }
+
+    public int getInputDelayMs() {
+        return inputDelayMs;
+    }
+
+    /**
+     * Blocks until all keyboard and mouse output requested so far has been delivered; a no-op
+     * without a {@link Robot}. Returns false when interrupted first.
+     */
+    public boolean flushInput() {
+        return input == null || input.flush();
+    }
+
+    public Optional<InputDispatcher.Stats> getInputStats() {
+        return input == null ? Optional.empty() : Optional.of(input.stats());
+    }
+
+    private InputDispatcher.Batch batch() {
+        return input.batch(inputDelayMs);
+    }
+
+    /**
+     * Blocks until any of {@code points} shows a different color than when the call started, or
+     * {@code timeoutMs} elapses. Returns whether a change was seen.
+     */
+    public boolean waitForChange(Point[] points, long timeoutMs) {
+        return RegionChangeDetector.forPoints(screen, points).awaitChange(timeoutMs);
+    }
+
+    /**
+     * Blocks until any pixel inside {@code region} changes, or {@code timeoutMs} elapses
+     * (negative waits until interrupted). Returns whether a change was seen.
+     */
+    public boolean waitForRegionChange(Rectangle region, long timeoutMs) {
+        return RegionChangeDetector.forRegion(screen, region).awaitChange(timeoutMs);
+    }
+
+    public boolean waitUntilColor(Point location, Color color, boolean present, long timeoutMs) {
+        return waitUntilColor(location, color, ColorTolerance.EXACT, present, timeoutMs);
+    }
+
+    /**
+     * Blocks until the pixel at {@code location} matches {@code color} ({@code present == true}) or
+     * stops matching it ({@code present == false}). A negative timeout waits until interrupted.
+     * Returns whether the condition was reached.
+     */
+    public boolean waitUntilColor(Point location, Color color, ColorTolerance tolerance, boolean present,
+                                  long timeoutMs) {
+        return waitUntilColor(new PackedColorSample(location.x, location.y, color.getRGB(), tolerance), present, timeoutMs);
+    }
+
+    public boolean waitUntilColor(PackedColorSample sample, boolean present, long timeoutMs) {
+        return RegionChangeDetector.forPoints(screen, new Point(sample.x(), sample.y()))
+                .awaitCondition(() -> matches(sample) == present, timeoutMs);
     }
 
     public void sleepMs(long ms) {
@@ -120,6 +354,17 @@ public class ColorLibrary {
         }
     }
 
+    /**
+     * Parks until {@link System#nanoTime()} reaches {@code deadlineNanos}; returns early, with the
+     * interrupt flag set, when interrupted.
+     */
+    public void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
     public static Color parseColor(String hex) {
         String trimmed = hex.trim();
         if (trimmed.startsWith("#")) {
@@ -138,13 +383,45 @@ public class ColorLibrary {
         return String.format("#%02X%02X%02X", color.getRed(), color.getGreen(), color.getBlue());
     }
 
-
     public BufferedImage captureScreenshot() {
-        Rectangle screen = new Rectangle(Toolkit.getDefaultToolkit().getScreenSize());
-        return robot.createScreenCapture(screen);
+        return screen.frame();
+    }
+
+    /**
+     * Grabs {@code region} with a single capture so several pixels can be checked against one frame.
+     * The snapshot may cover more than {@code region} when it comes from a shared frame cache.
+     */
+    public ScreenSnapshot captureRegion(Rectangle region) {
+        long start = System.nanoTime();
+        ScreenSnapshot snapshot = screen.snapshot(region);
+        regionCaptures.recordSince(start);
+        return snapshot;
+    }
+
+    public Optional<Point> findColor(Rectangle region, Color color, ColorTolerance tolerance) {
+        return findColor(region, color.getRGB(), tolerance, 1);
+    }
+
+    /**
+     * Captures {@code region} once and returns the first pixel (row-major) matching {@code rgb},
+     * checking every {@code step}-th pixel in both directions.
+     */
+    public Optional<Point> findColor(Rectangle region, int rgb, ColorTolerance tolerance, int step) {
+        return Optional.ofNullable(ColorSearch.findFirst(captureRegion(region), region, rgb, tolerance, step));
+    }
+
+    public List<Point> findAll(Rectangle region, Color color, ColorTolerance tolerance) {
+        return findAll(region, color.getRGB(), tolerance, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Captures {@code region} once and returns up to {@code limit} matching pixels in row-major order.
+     */
+    public List<Point> findAll(Rectangle region, int rgb, ColorTolerance tolerance, int step, int limit) {
+        return ColorSearch.findAll(captureRegion(region), region, rgb, tolerance, step, limit);
     }
 
-    private boolean colorsMatch(Color expected, Color actual) {
-        return expected.equals(actual);
+    public Optional<TemplateMatcher.Match> findImage(TemplateMatcher matcher, Rectangle region) {
+        return matcher.find(captureRegion(region), region);
     }
 }
@@ -1,39 +1,37 @@
 package com.example.colorbot;
 
-
+import java.awt.Rectangle;
 import java.awt.Robot;
-
-
-
-
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
-
-
 import java.util.concurrent.TimeUnit;
-
->
 import java.util.function.Consumer;
 
 /**
- * Background task that continuously checks for the target color and triggers key presses.
+ * Background task that continuously checks one or more target colors and triggers key presses.
  */
 public class ColorMonitor implements AutoCloseable {
+    private static final int NO_KEY = Integer.MIN_VALUE;
+
     private final ColorLibrary library;
     private final ScheduledExecutorService executor;
+    private final LatencyHistogram tickJitter;
     private ScheduledFuture<?> currentTask;
 
-
     public ColorMonitor(Robot robot) {
         this(new ColorLibrary(robot));
     }
 
-
     public ColorMonitor(ColorLibrary library) {
         this.library = Objects.requireNonNull(library, "library");
+        this.tickJitter = library.getMetrics().histogram("colorbot_monitor_tick_jitter",
+                "How late monitor ticks start compared to their fixed-rate schedule");
         this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
             @Override
             public Thread newThread(Runnable r) {
@@ -46,39 +44,79 @@ public class ColorMonitor implements AutoCloseable {
 
     public synchronized void start(ColorSample sample, String visibleKey, String missingKey,
                                    boolean failSafe, int intervalMs, Consumer<String> statusConsumer) {
+        start(List.of(new MonitorRule(sample, visibleKey, missingKey)), failSafe, intervalMs, statusConsumer);
+    }
+
+    /**
+     * Watches every rule from one capture of their union bounding box per tick. Rules are
+     * evaluated in descending priority; with {@code failSafe} the first missing rule stops monitoring.
+     */
+    public synchronized void start(List<MonitorRule> rules, boolean failSafe, int intervalMs,
+                                   Consumer<String> statusConsumer) {
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("At least one monitor rule is required");
+        }
         stop();
+        MonitorRule[] ordered = rules.toArray(new MonitorRule[0]);
+        Arrays.sort(ordered, Comparator.comparingInt(MonitorRule::priority).reversed());
+        // everything a tick needs is resolved here so the tick itself only reads ints
+        PackedColorSample[] samples = new PackedColorSample[ordered.length];
+        int[] visibleCodes = new int[ordered.length];
+        int[] missingCodes = new int[ordered.length];
+        String[] visibleMessages = new String[ordered.length];
+        String[] missingMessages = new String[ordered.length];
+        Rectangle bounds = null;
+        for (int i = 0; i < ordered.length; i++) {
+            MonitorRule rule = ordered[i];
+            samples[i] = PackedColorSample.of(rule.sample().withTolerance(rule.tolerance()));
+            visibleCodes[i] = keyCodeOrNone(rule.visibleKey());
+            missingCodes[i] = keyCodeOrNone(rule.missingKey());
+            String prefix = ordered.length == 1 ? "" : " " + samples[i].x() + "," + samples[i].y();
+            visibleMessages[i] = "Visible" + prefix
+                    + (visibleCodes[i] != NO_KEY ? ": pressed " + rule.visibleKey() : "");
+            missingMessages[i] = "Missing" + prefix
+                    + (missingCodes[i] != NO_KEY ? ": pressed " + rule.missingKey() : "")
+                    + (failSafe ? " (fail-safe)" : "");
+            Rectangle pixel = new Rectangle(samples[i].x(), samples[i].y(), 1, 1);
+            bounds = bounds == null ? pixel : bounds.union(pixel);
+        }
+        Rectangle captureBounds = bounds;
         Runnable runnable = () -> {
-            boolean visible = library.isColorAt(sample);
-            if (visible) {
-                library.pressKey(visibleKey);
-                statusConsumer.accept("Visible: pressed " + visibleKey);
-            } else {
-                library.pressKey(missingKey);
-                String message = "Missing: pressed " + missingKey;
-                if (failSafe) {
-                    message += " (fail-safe)";
-                }
-                statusConsumer.accept(message);
-                if (failSafe) {
-                    throw new IllegalStateException("Target color not found at " + sample.location());
+            ScreenSnapshot snapshot = library.captureRegion(captureBounds);
+            for (int i = 0; i < samples.length; i++) {
+                if (snapshot.matches(samples[i])) {
+                    if (visibleCodes[i] != NO_KEY) {
+                        library.pressKey(visibleCodes[i]);
+                    }
+                    // reported every tick like a missing target, key or not
+                    statusConsumer.accept(visibleMessages[i]);
+                } else {
+                    if (missingCodes[i] != NO_KEY) {
+                        library.pressKey(missingCodes[i]);
+                    }
+                    statusConsumer.accept(missingMessages[i]);
+                    if (failSafe) {
+                        throw new IllegalStateException("Target color not found at " + ordered[i].sample().location());
+                    }
                 }
             }
         };
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        long[] scheduledAt = {System.nanoTime()};
         currentTask = executor.scheduleAtFixedRate(() -> {
+            tickJitter.recordSince(scheduledAt[0]);
+            scheduledAt[0] += intervalNanos;
             try {
                 runnable.run();
             } catch (Exception e) {
                 statusConsumer.accept("Monitoring stopped: " + e.getMessage());
                 stop();
             }
-
-        }, 0, intervalMs, java.util.concurrent.TimeUnit.MILLISECONDS);
-
-
-        }, 0, intervalMs, java.util.concurrent.TimeUnit.MILLISECONDS);
-
         }, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
 
+    private static int keyCodeOrNone(String key) {
+        return key == null || key.isBlank() ? NO_KEY : KeyName.toKeyCode(key);
     }
 
     public synchronized void stop() {
@@ -4,9 +4,14 @@ import java.awt.Color;
 import java.awt.Point;
 
 /**
- * Immutable container for a single screen coordinate and its expected color.
+ * Immutable container for a single screen coordinate, its expected color and how closely a
+ * captured pixel has to match it.
  */
-public record ColorSample(Point location, Color color) {
+public record ColorSample(Point location, Color color, ColorTolerance tolerance) {
+    public ColorSample(Point location, Color color) {
+        this(location, color, ColorTolerance.EXACT);
+    }
+
     public ColorSample {
         if (location == null) {
             throw new IllegalArgumentException("location cannot be null");
@@ -14,6 +19,17 @@ public record ColorSample(Point location, Color color) {
         if (color == null) {
             throw new IllegalArgumentException("color cannot be null");
         }
+        if (tolerance == null) {
+            throw new IllegalArgumentException("tolerance cannot be null");
+        }
+    }
+
+    public ColorSample withTolerance(ColorTolerance tolerance) {
+        return new ColorSample(location, color, tolerance);
+    }
+
+    public boolean matches(int actualRgb) {
+        return tolerance.matches(color.getRGB(), actualRgb);
     }
 
     public String toHex() {
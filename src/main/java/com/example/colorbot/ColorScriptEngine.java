@@ -1,719 +1,994 @@
 package com.example.colorbot;
 
-import java.awt.Color;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.util.ArrayList;
-
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
-
-import java.util.List;
-import java.util.Locale;
-
-
-import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Tiny domain-specific scripting engine inspired by Blue Eye Macro style commands.
+ * Scripts are compiled once by {@link ScriptCompiler} and the resulting instruction tree is
+ * interpreted here.
  */
 public class ColorScriptEngine {
-    private static final Pattern WAIT_PATTERN = Pattern.compile("WAIT\\s+(\\d+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern PRESS_PATTERN = Pattern.compile("PRESS\\s+([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
-
-    private static final Pattern HOLD_PATTERN = Pattern.compile("HOLD\\s+(.+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern RELEASE_PATTERN = Pattern.compile("RELEASE\\s+(.+)", Pattern.CASE_INSENSITIVE);
-
-
-    private static final Pattern HOLD_PATTERN = Pattern.compile("HOLD\\s+(.+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern RELEASE_PATTERN = Pattern.compile("RELEASE\\s+(.+)", Pattern.CASE_INSENSITIVE);
-
-
-    private static final Pattern HOLD_PATTERN = Pattern.compile("HOLD\\s+(.+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern RELEASE_PATTERN = Pattern.compile("RELEASE\\s+(.+)", Pattern.CASE_INSENSITIVE);
-
-
-    private static final Pattern HOLD_PATTERN = Pattern.compile("HOLD\\s+(.+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern RELEASE_PATTERN = Pattern.compile("RELEASE\\s+(.+)", Pattern.CASE_INSENSITIVE);
-
-
-    private static final Pattern TYPE_PATTERN = Pattern.compile("TYPE\\s+\"?(.*?)\"?$", Pattern.CASE_INSENSITIVE);
-    private static final Pattern MOVE_PATTERN = Pattern.compile("MOVE\\s+(-?\\d+)\\s+(-?\\d+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern IF_TARGET_PATTERN = Pattern.compile(
-            "IF_TARGET_VISIBLE\\s+THEN\\s+(.+?)\\s+(?:ELSE\\s+(.+))?",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern IF_COLOR_PATTERN = Pattern.compile(
-
-            "IF_COLOR\\s+(-?\\d+)\\s+(-?\\d+)\\s+(\\d{1,3})\\s+(\\d{1,3})\\s+(\\d{1,3})\\s+THEN\\s+(.+?)\\s+(?:ELSE\\s+(.+))?",
-
-
-            "IF_COLOR\\s+(-?\\d+)\\s+(-?\\d+)\\s+(\\d{1,3})\\s+(\\d{1,3})\\s+(\\d{1,3})\\s+THEN\\s+(.+?)\\s+(?:ELSE\\s+(.+))?",
-
-
-            "IF_COLOR\\s+(-?\\d+)\\s+(-?\\d+)\\s+(\\d{1,3})\\s+(\\d{1,3})\\s+(\\d{1,3})\\s+THEN\\s+(.+?)\\s+(?:ELSE\\s+(.+))?",
-
-            "IF_COLOR\\s+(-?\\d+)\\s+(-?\\d+)\\s+([#A-Fa-f0-9]{6,7})\\s+THEN\\s+(.+?)\\s+(?:ELSE\\s+(.+))?",
-
-
-
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern CAPTURE_PATTERN = Pattern.compile("CAPTURE_TARGET", Pattern.CASE_INSENSITIVE);
-    private static final Pattern LOG_PATTERN = Pattern.compile("LOG\\s+(.+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern CLICK_PATTERN = Pattern.compile("CLICK", Pattern.CASE_INSENSITIVE);
-
-    private static final Pattern LOOP_PATTERN = Pattern.compile("LOOP\\s+(\\d+|FOREVER)", Pattern.CASE_INSENSITIVE);
-
-
-    private static final Pattern LOOP_PATTERN = Pattern.compile("LOOP\\s+(\\d+|FOREVER)", Pattern.CASE_INSENSITIVE);
-
-
-    private static final Pattern LOOP_PATTERN = Pattern.compile("LOOP\\s+(\\d+)", Pattern.CASE_INSENSITIVE);
-
-
-    private static final Pattern END_LOOP_PATTERN = Pattern.compile("END_LOOP", Pattern.CASE_INSENSITIVE);
-    private static final Pattern BLUE_EYE_PAUSE_PATTERN = Pattern.compile("MACRO\\.PAUSE\\('?(\\d+)'?\\)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern BLUE_EYE_PRESS_PATTERN = Pattern.compile("KEYBOARD\\.PRESS\\s+KEYS?\\('?(.*?)'?\\)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern BLUE_EYE_HOLD_PATTERN = Pattern.compile("KEYBOARD\\.HOLD\\s+KEYS?\\('?(.*?)'?\\)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern BLUE_EYE_RELEASE_PATTERN = Pattern.compile("KEYBOARD\\.RELEASE\\s+KEYS?\\('?(.*?)'?\\)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern BLUE_EYE_IF_COLOR_PATTERN = Pattern.compile(
-
-            "IF\\s+COLOR\\.AT\\s+COORDINATE\\s+IS\\s+(NOT\\s+)?\\(RGB\\s+'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\)\\s*BEGIN",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern BLUE_EYE_IF_COLOR_CONDITION_PATTERN = Pattern.compile(
-            "IF\\s+COLOR\\.AT\\s+COORDINATE\\s+IS\\s+(NOT\\s+)?\\(RGB\\s+'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\)",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern BLUE_EYE_LOOP_PATTERN = Pattern.compile("MACRO\\.LOOP\\('?(\\d+|FOREVER)'?\\)\\s*BEGIN", Pattern.CASE_INSENSITIVE);
-    private static final Pattern END_PATTERN = Pattern.compile("END", Pattern.CASE_INSENSITIVE);
-    private static final Pattern SET_PATTERN = Pattern.compile("SET\\s+([A-Z0-9_]+)\\s*=\\s*([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern IF_COOLDOWN_PATTERN = Pattern.compile(
-            "IF_COOLDOWN\\s+([A-Z0-9_]+)\\s+([A-Z0-9_]+)\\s+THEN\\s+(.+?)\\s*(?:ELSE\\s+(.+))?",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern ENABLE_PATTERN = Pattern.compile("ENABLE\\s+([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern DISABLE_PATTERN = Pattern.compile("DISABLE\\s+([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
+    /**
+     * Cap on the executed-lines list returned by {@code run}; forever loops would otherwise grow it without bound.
+     */
+    public static final int MAX_EXECUTED_LINES = 10_000;
+
+    private static final EventLog.Message SYNTAX_ERROR = EventLog.Message.of("Syntax error: {}");
+    private static final EventLog.Message BACKOFF_REPORT = EventLog.Message.of("Back-off at line {}: {} ms over {} misses");
+    private static final EventLog.Message COLOR_VISIBLE = EventLog.Message.of("Color check at {},{} was visible");
+    private static final EventLog.Message COLOR_MISSING = EventLog.Message.of("Color check at {},{} was missing");
+    private static final EventLog.Message WAITED = EventLog.Message.of("Waited {} ms");
+    private static final EventLog.Message COLOR_APPEARED = EventLog.Message.of("Color at {},{} appeared after {} ms");
+    private static final EventLog.Message COLOR_DISAPPEARED = EventLog.Message.of("Color at {},{} disappeared after {} ms");
+    private static final EventLog.Message COLOR_WAIT_TIMED_OUT = EventLog.Message.of("Color at {},{} timed out after {} ms");
+    private static final EventLog.Message PRESSED = EventLog.Message.of("Pressed {}");
+    private static final EventLog.Message HELD = EventLog.Message.of("Held {}");
+    private static final EventLog.Message RELEASED = EventLog.Message.of("Released {}");
+    private static final EventLog.Message SET = EventLog.Message.of("Set {} = {}");
+    private static final EventLog.Message ENABLED = EventLog.Message.of("Enabled {}");
+    private static final EventLog.Message DISABLED = EventLog.Message.of("Disabled {}");
+    private static final EventLog.Message TYPED = EventLog.Message.of("Typed '{}'");
+    private static final EventLog.Message MOVED = EventLog.Message.of("Moved mouse to {},{}");
+    private static final EventLog.Message FOUND_COLOR = EventLog.Message.of("Found color at {},{}");
+    private static final EventLog.Message COLOR_NOT_FOUND = EventLog.Message.of("Color not found in {},{} {}x{}");
+    private static final EventLog.Message FOUND_IMAGE = EventLog.Message.of("Found image {} at {},{}");
+    private static final EventLog.Message FOUND_IMAGE_SCORED = EventLog.Message.of("Found image {} at {},{} (score {})");
+    private static final EventLog.Message IMAGE_NOT_FOUND = EventLog.Message.of("Image {} not found in {},{} {}x{}");
+    private static final EventLog.Message CLICKED = EventLog.Message.of("Clicked mouse");
+    private static final EventLog.Message FLUSHED = EventLog.Message.of("Flushed input");
+    private static final EventLog.Message CAPTURED_TARGET = EventLog.Message.of("Captured target at {} with color {}");
+    private static final EventLog.Message TARGET_VISIBLE = EventLog.Message.of("Target was visible");
+    private static final EventLog.Message TARGET_MISSING = EventLog.Message.of("Target was missing");
+    private static final EventLog.Message COOLDOWN_AHEAD = EventLog.Message.of("Cooldown {} was ahead of current time; resetting to now");
+    private static final EventLog.Message COOLDOWN_SKIPPED = EventLog.Message.of("Cooldown {}/{} skipped: actions disabled");
+    private static final EventLog.Message PRESS_SKIPPED = EventLog.Message.of("Skipped PRESS {} because target skill is disabled");
+    private static final EventLog.Message COOLDOWN_READY = EventLog.Message.of("Cooldown {}/{} was ready (last={}, cd={}, now={})");
+    private static final EventLog.Message COOLDOWN_WAITING = EventLog.Message.of("Cooldown {}/{} was waiting (last={}, cd={}, now={})");
+    private static final EventLog.Message WAITED_COOLDOWN = EventLog.Message.of("Waited {} ms for cooldown {}/{}");
+    private static final EventLog.Message NO_COOLDOWN_PENDING = EventLog.Message.of("No cooldown pending");
+    private static final EventLog.Message NEXT_COOLDOWN = EventLog.Message.of("Next cooldown {}/{} in {} ms");
+    private static final EventLog.Message CAST = EventLog.Message.of("Cast {} ({})");
+    private static final EventLog.Message ROTATION_IDLE = EventLog.Message.of("Rotation at line {} had no skill ready");
+    private static final EventLog.Message ROTATION_WAITED = EventLog.Message.of("Rotation at line {} waited {} ms");
+    private static final EventLog.Message ROTATION_REPORT = EventLog.Message.of("Skill {} (line {}): {} casts, {}% uptime, {} ms wasted");
 
     private final ColorLibrary library;
     private final ExternalCooldownController externalCooldowns;
+    private final TemplateStore templates;
+    private final MetricsRegistry.RateMeter iterations;
+    private final MonotonicClock clock = MonotonicClock.SYSTEM;
+    /**
+     * Variable values and skill flags carried from one run to the next; runs work on an indexed
+     * frame loaded from these at start and saved back at the end.
+     */
     private final Map<String, Long> variables = new HashMap<>();
     private final Map<String, Boolean> skillEnabled = new HashMap<>();
+    /**
+     * Store value of each name as last read or written by a run, to tell at the next run whether
+     * someone else changed it in between.
+     */
+    private final Map<String, Long> storeSeen = new HashMap<>();
+    private volatile boolean snapshotMode = true;
+    private volatile BackoffPolicy defaultBackoff = BackoffPolicy.DEFAULT;
+    private volatile List<BackoffStat> lastBackoffReport = List.of();
+    private volatile List<RotationScheduler.SkillStats> lastRotationReport = List.of();
+    private volatile boolean profiling = true;
+    private volatile ScriptProfiler profiler;
 
     public ColorScriptEngine(ColorLibrary library) {
         this(library, new ExternalCooldownController());
     }
 
     public ColorScriptEngine(ColorLibrary library, ExternalCooldownController externalCooldowns) {
+        this(library, externalCooldowns, new TemplateStore());
+    }
+
+    public ColorScriptEngine(ColorLibrary library, ExternalCooldownController externalCooldowns, TemplateStore templates) {
         this.library = library;
         this.externalCooldowns = externalCooldowns;
+        this.templates = templates;
+        this.iterations = library.getMetrics().meter("colorbot_script_iterations", "Script loop iterations");
     }
 
     public static class ScriptExecutionException extends Exception {
         public ScriptExecutionException(String message, Throwable cause) {
             super(message, cause);
         }
-    }
-
-    public List<String> run(String scriptText, Consumer<String> logger) throws InterruptedException, ScriptExecutionException {
-        List<String> executed = new ArrayList<>();
-        String[] lines = scriptText.split("\\R");
-
-
-
-            "IF\\s+COLOR\\.AT\\s+COORDINATE\\s+IS\\s+(NOT\\s+)?\\(RGB\\s+'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\)\\s*BEGIN",
 
-            "IF\\s+COLOR\\.AT\\s+COORDINATE\\s+IS\\s+(NOT\\s+)?\(RGB\\s+'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\)\\s*BEGIN",
+        protected ScriptExecutionException(String message) {
+            super(message);
+        }
+    }
 
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern BLUE_EYE_LOOP_PATTERN = Pattern.compile("MACRO\\.LOOP\\('?(\\d+)'?\\)\\s*BEGIN", Pattern.CASE_INSENSITIVE);
-    private static final Pattern END_PATTERN = Pattern.compile("END", Pattern.CASE_INSENSITIVE);
+    /**
+     * Raised before execution when the script text contains syntax errors; lists every error found.
+     */
+    public static class ScriptCompileException extends ScriptExecutionException {
+        private static final long serialVersionUID = 1L;
 
+        private final List<String> errors;
 
-    private final ColorLibrary library;
+        public ScriptCompileException(List<String> errors) {
+            super(errors.size() == 1
+                    ? errors.get(0)
+                    : errors.size() + " syntax errors, first: " + errors.get(0));
+            this.errors = List.copyOf(errors);
+        }
 
-    public ColorScriptEngine(ColorLibrary library) {
-        this.library = library;
+        public List<String> getErrors() {
+            return errors;
+        }
     }
 
-    public List<String> run(String scriptText, Consumer<String> logger) {
-        List<String> executed = new ArrayList<>();
-        String[] lines = scriptText.split("\\R");
-
-
+    /**
+     * When enabled (the default), blocks with several AND-ed color conditions capture the bounding
+     * rectangle of all their pixels once and evaluate every condition against that single frame.
+     */
+    public void setSnapshotMode(boolean snapshotMode) {
+        this.snapshotMode = snapshotMode;
+    }
 
-        runLines(lines, 0, lines.length, logger, executed);
-        return executed;
+    public boolean isSnapshotMode() {
+        return snapshotMode;
     }
 
+    /**
+     * Time one color check spent backing off after misses during the last run.
+     */
+    public record BackoffStat(int line, long misses, long totalMs) {
+    }
 
-    private void runLines(String[] lines, int start, int end, Consumer<String> logger, List<String> executed) throws InterruptedException, ScriptExecutionException {
-        for (int i = start; i < end; i++) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new InterruptedException("Script stopped");
+    /**
+     * Per-run mutable state; counters are indexed by {@link ScriptInstruction.IfColor#backoffSite()}
+     * and {@link ScriptInstruction.ColorBlock#backoffSite()}, the variable frame by the script's
+     * variable indexes and {@code disabledSkills} by its skill indexes. Variables flagged in
+     * {@code monotonic} hold {@link MonotonicClock} nano times instead of script values.
+     */
+    private static final class RunState {
+        final EventLog log;
+        final CompiledScript script;
+        final List<String> variableNames;
+        final long[] values;
+        final BitSet defined;
+        final BitSet monotonic;
+        /**
+         * Shared cooldown table slot per variable, or -1, and the slot value this run last read
+         * or wrote; a slot holding anything else was changed by another tool or instance.
+         */
+        final int[] slots;
+        final long[] storeValues;
+        /**
+         * Store names version when variables without a slot were last looked up.
+         */
+        long namesVersion;
+        final List<String> skillNames;
+        final BitSet disabledSkills;
+        final List<ScriptInstruction.IfCooldown> cooldowns;
+        /**
+         * Per ROTATION block, created when the block first runs.
+         */
+        final RotationScheduler[] rotations;
+        /**
+         * Ready time found by the last {@code nextCooldown} call.
+         */
+        long nextReadyAt;
+        final List<String> executed = new ArrayList<>();
+        final int[] consecutiveMisses;
+        final long[] missCounts;
+        final long[] backoffNanos;
+        final int[] siteLines;
+        /**
+         * Per-site pixels watched by UNTIL_CHANGE, built on first use so steady-state iterations
+         * allocate nothing.
+         */
+        final Point[][] watched;
+        /**
+         * Per FIND_IMAGE, built on first use so each template is loaded, and checked for changes
+         * on disk, once per run.
+         */
+        final TemplateMatcher[] matchers;
+        /**
+         * Null when profiling is off; {@link #clock()} and {@link #spent} are then free.
+         */
+        final ScriptProfiler profiler;
+
+        RunState(CompiledScript script, EventLog log, ScriptProfiler profiler) {
+            this.log = log;
+            this.script = script;
+            this.profiler = profiler;
+            this.variableNames = script.variables();
+            this.values = new long[variableNames.size()];
+            this.defined = new BitSet(variableNames.size());
+            this.monotonic = new BitSet(variableNames.size());
+            this.slots = new int[variableNames.size()];
+            this.storeValues = new long[variableNames.size()];
+            this.skillNames = script.skills();
+            this.disabledSkills = new BitSet(skillNames.size());
+            this.cooldowns = script.cooldowns();
+            this.rotations = new RotationScheduler[script.rotations().size()];
+            int sites = script.backoffSites();
+            this.consecutiveMisses = new int[sites];
+            this.missCounts = new long[sites];
+            this.backoffNanos = new long[sites];
+            this.siteLines = new int[sites];
+            this.watched = new Point[sites][];
+            this.matchers = new TemplateMatcher[script.imageSites()];
+        }
+
+        Point[] watched(int site, List<ScriptInstruction.ColorCondition> conditions) {
+            Point[] points = watched[site];
+            if (points == null) {
+                points = new Point[conditions.size()];
+                for (int i = 0; i < points.length; i++) {
+                    points[i] = new Point(conditions.get(i).sample().x(), conditions.get(i).sample().y());
+                }
+                watched[site] = points;
             }
+            return points;
+        }
 
+        long clock() {
+            return profiler != null ? System.nanoTime() : 0L;
+        }
 
-    private void runLines(String[] lines, int start, int end, Consumer<String> logger, List<String> executed) {
-        for (int i = start; i < end; i++) {
-
-        for (int i = 0; i < lines.length; i++) {
-
-
-            String line = lines[i].trim();
-            if (line.isEmpty() || line.startsWith("#") || line.startsWith("//")) {
-                continue;
+        /**
+         * Charges the time since {@code start} to one category of {@code line}.
+         */
+        void spent(int line, ScriptProfiler.Category category, long start) {
+            if (profiler != null) {
+                profiler.add(line, category, System.nanoTime() - start);
             }
-            int lineNumber = i + 1;
-            try {
-
-                Matcher setMatcher = SET_PATTERN.matcher(line);
-                if (setMatcher.matches()) {
-                    String name = normalizeVar(setMatcher.group(1));
-                    String rawValue = setMatcher.group(2);
-                    long value = resolveValue(rawValue);
-                    variables.put(name, value);
-                    externalCooldowns.put(name, value);
-                    logger.accept("Set " + name + " = " + value);
-                    continue;
-                }
-                Matcher blueEyeLoop = BLUE_EYE_LOOP_PATTERN.matcher(line);
-                if (blueEyeLoop.matches()) {
-                    String countToken = blueEyeLoop.group(1);
-                    boolean infinite = countToken.equalsIgnoreCase("forever");
-                    int count = infinite ? -1 : Integer.parseInt(countToken);
-
-
-
-
-                Matcher blueEyeLoop = BLUE_EYE_LOOP_PATTERN.matcher(line);
-                if (blueEyeLoop.matches()) {
-                    int count = Integer.parseInt(blueEyeLoop.group(1));
-
-                    int blockEnd = findBlockEnd(lines, i + 1, end);
-                    if (blockEnd == -1) {
-                        throw new IllegalArgumentException("MACRO.LOOP missing END after line " + lineNumber);
-                    }
-
-                    if (infinite) {
-                        while (true) {
-                            runLines(lines, i + 1, blockEnd, logger, executed);
-                        }
-                    } else {
-                        for (int iteration = 0; iteration < count; iteration++) {
-                            runLines(lines, i + 1, blockEnd, logger, executed);
-                        }
-
-
-                    for (int iteration = 0; iteration < count; iteration++) {
-                        runLines(lines, i + 1, blockEnd, logger, executed);
-
-
-                    }
-                    i = blockEnd;
-                    continue;
-                }
-                Matcher blueEyeIf = BLUE_EYE_IF_COLOR_PATTERN.matcher(line);
-                if (blueEyeIf.matches()) {
-                    boolean negate = blueEyeIf.group(1) != null && !blueEyeIf.group(1).isBlank();
-                    int r = Integer.parseInt(blueEyeIf.group(2));
-                    int g = Integer.parseInt(blueEyeIf.group(3));
-                    int b = Integer.parseInt(blueEyeIf.group(4));
-                    int x = Integer.parseInt(blueEyeIf.group(5));
-                    int y = Integer.parseInt(blueEyeIf.group(6));
-                    int blockEnd = findBlockEnd(lines, i + 1, end);
-                    if (blockEnd == -1) {
-                        throw new IllegalArgumentException("IF COLOR block missing END after line " + lineNumber);
-                    }
-
-                    boolean rawMatches = library.isColorAt(new Point(x, y), new Color(r, g, b));
-                    boolean conditionMatches = negate ? !rawMatches : rawMatches;
-                    if (conditionMatches) {
-                        runLines(lines, i + 1, blockEnd, logger, executed);
-                    }
-                    i = blockEnd;
-                    logger.accept("Color check at " + x + "," + y + " was " + (rawMatches ? "visible" : "missing"));
-                    if (!conditionMatches) {
-                        library.sleepMs(1000);
-                    }
-                    continue;
-                }
-                Matcher enableMatcher = ENABLE_PATTERN.matcher(line);
-                if (enableMatcher.matches()) {
-                    String name = normalizeVar(enableMatcher.group(1));
-                    enableSkill(name);
-                    logger.accept("Enabled " + name);
-                    continue;
-                }
-                Matcher disableMatcher = DISABLE_PATTERN.matcher(line);
-                if (disableMatcher.matches()) {
-                    String name = normalizeVar(disableMatcher.group(1));
-                    disableSkill(name);
-                    logger.accept("Disabled " + name);
-                    continue;
-                }
-                if (line.contains("&&")) {
-                    StringBuilder combined = new StringBuilder(line.trim());
-                    int beginLineIndex = i;
-                    while (beginLineIndex + 1 < end
-                            && !combined.toString().toLowerCase(Locale.ROOT).endsWith("begin")) {
-                        String next = lines[beginLineIndex + 1].trim();
-                        if (next.isEmpty() || next.startsWith("#") || next.startsWith("//")) {
-                            break;
-                        }
-                        combined.append(" ").append(next);
-                        beginLineIndex++;
-                    }
-                    String combinedText = combined.toString();
-                    if (!combinedText.toLowerCase(Locale.ROOT).endsWith("begin")) {
-                        throw new IllegalArgumentException("AND conditions must end with BEGIN on line " + lineNumber);
-                    }
-                    String withoutBegin = combinedText.substring(0, combinedText.length() - "begin".length()).trim();
-                    String[] parts = withoutBegin.split("\\s*&&\\s*");
-                    boolean allMatched = true;
-                    boolean anyMissing = false;
-                    for (String part : parts) {
-                        Matcher conditionMatcher = BLUE_EYE_IF_COLOR_CONDITION_PATTERN.matcher(part.trim());
-                        if (!conditionMatcher.matches()) {
-                            throw new IllegalArgumentException("Invalid AND color condition at line " + lineNumber);
-                        }
-                        boolean negate = conditionMatcher.group(1) != null && !conditionMatcher.group(1).isBlank();
-                        int r = Integer.parseInt(conditionMatcher.group(2));
-                        int g = Integer.parseInt(conditionMatcher.group(3));
-                        int b = Integer.parseInt(conditionMatcher.group(4));
-                        int x = Integer.parseInt(conditionMatcher.group(5));
-                        int y = Integer.parseInt(conditionMatcher.group(6));
-                        boolean rawMatches = library.isColorAt(new Point(x, y), new Color(r, g, b));
-                        boolean conditionMatches = negate ? !rawMatches : rawMatches;
-                        logger.accept("Color check at " + x + "," + y + " was " + (rawMatches ? "visible" : "missing"));
-                        if (!conditionMatches) {
-                            allMatched = false;
-                            anyMissing = true;
-                        }
-                    }
-                    int blockEnd = findBlockEnd(lines, beginLineIndex + 1, end);
-                    if (blockEnd == -1) {
-                        throw new IllegalArgumentException("AND IF COLOR block missing END after line " + lineNumber);
-                    }
-                    if (allMatched) {
-                        runLines(lines, beginLineIndex + 1, blockEnd, logger, executed);
-                    }
-                    i = blockEnd;
-                    if (anyMissing) {
-                        library.sleepMs(1000);
-                    }
+        }
 
+        void set(int index, long value) {
+            values[index] = value;
+            defined.set(index);
+            monotonic.clear(index);
+        }
 
-                    boolean matches = library.isColorAt(new Point(x, y), new Color(r, g, b));
-                    if (negate) {
-                        matches = !matches;
-                    }
-                    if (matches) {
-                        runLines(lines, i + 1, blockEnd, logger, executed);
-                    }
-                    i = blockEnd;
-                    logger.accept("Color check at " + x + "," + y + " was " + (matches ? "visible" : "missing"));
+        void setTime(int index, long nanoTime) {
+            values[index] = nanoTime;
+            defined.set(index);
+            monotonic.set(index);
+        }
 
-                    continue;
-                }
-                Matcher loopMatcher = LOOP_PATTERN.matcher(line);
-                if (loopMatcher.matches()) {
+        void logCheck(PackedColorSample sample, boolean visible) {
+            log.log(EventLog.Level.DEBUG, visible ? COLOR_VISIBLE : COLOR_MISSING, sample.x(), sample.y());
+        }
+    }
 
-                    String countToken = loopMatcher.group(1);
-                    boolean infinite = countToken.equalsIgnoreCase("forever");
-                    int count = infinite ? -1 : Integer.parseInt(countToken);
+    /**
+     * Back-off applied by color checks that have no BACKOFF directive in the script.
+     */
+    public void setDefaultBackoff(BackoffPolicy backoff) {
+        this.defaultBackoff = backoff == null ? BackoffPolicy.DEFAULT : backoff;
+    }
 
+    public BackoffPolicy getDefaultBackoff() {
+        return defaultBackoff;
+    }
 
-                    String countToken = loopMatcher.group(1);
-                    boolean infinite = countToken.equalsIgnoreCase("forever");
-                    int count = infinite ? -1 : Integer.parseInt(countToken);
+    /**
+     * Back-off totals per color check from the most recent run, in source line order.
+     */
+    public List<BackoffStat> getBackoffReport() {
+        return lastBackoffReport;
+    }
 
-                    int count = Integer.parseInt(loopMatcher.group(1));
+    /**
+     * Per-skill casts, uptime and wasted cooldown of every ROTATION that ran in the most recent run.
+     */
+    public List<RotationScheduler.SkillStats> getRotationReport() {
+        return lastRotationReport;
+    }
 
+    /**
+     * When enabled (the default), each run records per-line timings in a {@link ScriptProfiler}.
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
 
-                    int loopEnd = findLoopEnd(lines, i + 1, end);
-                    if (loopEnd == -1) {
-                        throw new IllegalArgumentException("LOOP at line " + lineNumber + " missing END_LOOP");
-                    }
+    public boolean isProfiling() {
+        return profiling;
+    }
 
-                    if (infinite) {
-                        while (true) {
-                            runLines(lines, i + 1, loopEnd, logger, executed);
-                        }
-                    } else {
-                        for (int iteration = 0; iteration < count; iteration++) {
-                            runLines(lines, i + 1, loopEnd, logger, executed);
-                        }
+    /**
+     * Profiler of the running or most recent run; empty before the first profiled run.
+     */
+    public Optional<ScriptProfiler> getProfiler() {
+        return Optional.ofNullable(profiler);
+    }
 
+    public CompiledScript compile(String scriptText) throws ScriptCompileException {
+        return ScriptCompiler.compile(scriptText);
+    }
 
-                    for (int iteration = 0; iteration < count; iteration++) {
-                        runLines(lines, i + 1, loopEnd, logger, executed);
+    public List<String> run(String scriptText, EventLog log) throws InterruptedException, ScriptExecutionException {
+        CompiledScript script;
+        try {
+            script = compile(scriptText);
+        } catch (ScriptCompileException e) {
+            e.getErrors().forEach(error -> log.log(EventLog.Level.ERROR, SYNTAX_ERROR, error));
+            throw e;
+        }
+        return run(script, log);
+    }
 
+    /**
+     * Runs {@code script} on the calling thread, logging each step to {@code log}: actions at INFO,
+     * per-iteration color and cooldown checks at DEBUG.
+     */
+    public List<String> run(CompiledScript script, EventLog log) throws InterruptedException, ScriptExecutionException {
+        ScriptProfiler runProfiler = profiling ? new ScriptProfiler(script) : null;
+        if (runProfiler != null) {
+            profiler = runProfiler;
+        }
+        RunState state = new RunState(script, log, runProfiler);
+        loadFrame(state);
+        try {
+            runBlock(script.instructions(), state);
+            // keys pressed by the last lines must be out before run() reports the script as done
+            flushInput(0, state);
+        } finally {
+            saveFrame(state);
+            reportBackoff(state);
+            reportRotations(state);
+        }
+        return state.executed;
+    }
 
-                    }
-                    i = loopEnd; // skip to the END_LOOP marker
-                    continue;
-                }
-                if (END_LOOP_PATTERN.matcher(line).matches()) {
-                    throw new IllegalArgumentException("END_LOOP without matching LOOP at line " + lineNumber);
+    private void loadFrame(RunState state) {
+        state.namesVersion = externalCooldowns.namesVersion();
+        for (int i = 0; i < state.values.length; i++) {
+            String name = state.variableNames.get(i);
+            Long value = variables.get(name);
+            if (value != null) {
+                state.values[i] = value;
+                state.defined.set(i);
+            }
+            int slot = externalCooldowns.slot(name);
+            state.slots[i] = slot;
+            if (slot >= 0) {
+                long stored = externalCooldowns.valueAt(slot);
+                state.storeValues[i] = stored;
+                // the store wins unless it still holds what the last run saw there
+                Long seen = storeSeen.get(name);
+                if (value == null || seen == null || seen != stored) {
+                    state.set(i, stored);
                 }
-                if (END_PATTERN.matcher(line).matches()) {
-                    throw new IllegalArgumentException("END without matching BEGIN at line " + lineNumber);
+            } else if (value == null) {
+                int index = i;
+                // a name the shared table could not take
+                externalCooldowns.get(name).ifPresent(stored -> state.set(index, stored));
+            }
+        }
+        for (int i = 0; i < state.skillNames.size(); i++) {
+            if (!skillEnabled.getOrDefault(state.skillNames.get(i), true)) {
+                state.disabledSkills.set(i);
+            }
+        }
+        // DISABLED in a SKILL declaration is only the default; ENABLE/DISABLE of earlier runs win
+        for (ScriptInstruction.Rotation rotation : state.script.rotations()) {
+            for (ScriptInstruction.RotationSkill skill : rotation.skills()) {
+                if (!skill.enabled() && !skillEnabled.containsKey(skill.name())) {
+                    state.disabledSkills.set(skill.skillIndex());
                 }
-
-                executeLine(line, logger);
-                executed.add("Line " + lineNumber + ": " + line);
-
-            } catch (InterruptedException e) {
-                throw e;
-            } catch (Exception e) {
-                String message = "Line " + lineNumber + " failed: " + e.getMessage();
-                logger.accept(message);
-                throw new ScriptExecutionException(message, e);
             }
         }
+    }
 
-
-            } catch (Exception e) {
-                String message = "Line " + lineNumber + " failed: " + e.getMessage();
-                logger.accept(message);
-                break;
+    private void saveFrame(RunState state) {
+        for (int i = state.defined.nextSetBit(0); i >= 0; i = state.defined.nextSetBit(i + 1)) {
+            variables.put(state.variableNames.get(i), valueOf(i, state));
+        }
+        for (int i = 0; i < state.slots.length; i++) {
+            if (state.slots[i] >= 0) {
+                storeSeen.put(state.variableNames.get(i), state.storeValues[i]);
             }
         }
+        for (int i = 0; i < state.skillNames.size(); i++) {
+            skillEnabled.put(state.skillNames.get(i), !state.disabledSkills.get(i));
+        }
+    }
 
-
-
+    private void reportBackoff(RunState state) {
+        List<BackoffStat> report = new ArrayList<>();
+        for (int site = 0; site < state.missCounts.length; site++) {
+            if (state.missCounts[site] > 0) {
+                report.add(new BackoffStat(state.siteLines[site], state.missCounts[site], state.backoffNanos[site] / 1_000_000));
+            }
+        }
+        report.sort((a, b) -> Integer.compare(a.line(), b.line()));
+        lastBackoffReport = List.copyOf(report);
+        for (BackoffStat stat : report) {
+            state.log.log(EventLog.Level.INFO, BACKOFF_REPORT, stat.line(), stat.totalMs(), stat.misses());
+        }
     }
 
-    private int findLoopEnd(String[] lines, int start, int end) {
-        for (int i = start; i < end; i++) {
-            if (END_LOOP_PATTERN.matcher(lines[i].trim()).matches()) {
-                return i;
+    private void reportRotations(RunState state) {
+        long now = clock.nanoTime();
+        List<RotationScheduler.SkillStats> report = new ArrayList<>();
+        for (RotationScheduler scheduler : state.rotations) {
+            if (scheduler != null) {
+                report.addAll(scheduler.stats(now));
             }
         }
-        return -1;
+        lastRotationReport = List.copyOf(report);
+        for (RotationScheduler.SkillStats stat : report) {
+            state.log.log(EventLog.Level.INFO, ROTATION_REPORT, stat.skill(), stat.line(), stat.casts(),
+                    Math.round(stat.uptime() * 100), stat.wastedMs());
+        }
     }
 
-    private int findBlockEnd(String[] lines, int start, int end) {
-        int depth = 0;
-        for (int i = start; i < end; i++) {
-            String trimmed = lines[i].trim();
-            if (BLUE_EYE_IF_COLOR_PATTERN.matcher(trimmed).matches() || BLUE_EYE_LOOP_PATTERN.matcher(trimmed).matches()) {
-                depth++;
+    private void runBlock(List<ScriptInstruction> block, RunState state)
+            throws InterruptedException, ScriptExecutionException {
+        for (int i = 0, size = block.size(); i < size; i++) {
+            ScriptInstruction instruction = block.get(i);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Script stopped");
             }
-            if (END_PATTERN.matcher(trimmed).matches()) {
-                if (depth == 0) {
-                    return i;
+            try {
+                if (instruction instanceof ScriptInstruction.Loop loop) {
+                    runLoop(loop, state);
+                } else if (instruction instanceof ScriptInstruction.ColorBlock colorBlock) {
+                    runColorBlock(colorBlock, state);
+                } else {
+                    long start = state.clock();
+                    execute(instruction, state);
+                    if (state.profiler != null) {
+                        state.profiler.record(instruction.line(), System.nanoTime() - start);
+                    }
+                    if (state.executed.size() < MAX_EXECUTED_LINES) {
+                        state.executed.add(instruction.label());
+                    }
                 }
-                depth--;
+            } catch (InterruptedException | ScriptExecutionException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                String message = "Line " + instruction.line() + " failed: " + e.getMessage();
+                state.log.error(message);
+                throw new ScriptExecutionException(message, e);
             }
         }
-        return -1;
-
     }
 
-    private void executeLine(String line, Consumer<String> logger) throws InterruptedException {
-        if (Thread.currentThread().isInterrupted()) {
+    private void runLoop(ScriptInstruction.Loop loop, RunState state)
+            throws InterruptedException, ScriptExecutionException {
+        if (loop.infinite()) {
+            while (!Thread.currentThread().isInterrupted()) {
+                countIteration(loop, state);
+                runBlock(loop.body(), state);
+            }
             throw new InterruptedException("Script stopped");
         }
-        Matcher inlineSet = SET_PATTERN.matcher(line);
-        if (inlineSet.matches()) {
-            String name = normalizeVar(inlineSet.group(1));
-            String rawValue = inlineSet.group(2);
-            long value = resolveValue(rawValue);
-            variables.put(name, value);
-            externalCooldowns.put(name, value);
-            logger.accept("Set " + name + " = " + value);
-            return;
+        for (int iteration = 0; iteration < loop.count(); iteration++) {
+            countIteration(loop, state);
+            runBlock(loop.body(), state);
         }
-
-
-
-        return executed;
-
     }
 
-    private void executeLine(String line, Consumer<String> logger) {
-
-        Matcher waitMatcher = WAIT_PATTERN.matcher(line);
-        if (waitMatcher.matches()) {
-            long delay = Long.parseLong(waitMatcher.group(1));
-            library.sleepMs(delay);
-            logger.accept("Waited " + delay + " ms");
-            return;
-        }
-        Matcher pressMatcher = PRESS_PATTERN.matcher(line);
-        if (pressMatcher.matches()) {
-            String key = pressMatcher.group(1);
-            library.pressKey(key);
-            logger.accept("Pressed " + key);
-            return;
+    private void countIteration(ScriptInstruction.Loop loop, RunState state) {
+        iterations.mark();
+        if (state.profiler != null) {
+            state.profiler.count(loop.line());
         }
+    }
 
-        Matcher holdMatcher = HOLD_PATTERN.matcher(line);
-        if (holdMatcher.matches()) {
-            String key = holdMatcher.group(1).trim();
-            library.holdKey(key);
-            logger.accept("Held " + key);
-            return;
+    private void runColorBlock(ScriptInstruction.ColorBlock block, RunState state)
+            throws InterruptedException, ScriptExecutionException {
+        long start = state.clock();
+        boolean allMatched = true;
+        List<ScriptInstruction.ColorCondition> conditions = block.conditions();
+        ScreenSnapshot snapshot = snapshotMode && conditions.size() > 1
+                ? library.captureRegion(block.bounds())
+                : null;
+        for (int i = 0, size = conditions.size(); i < size; i++) {
+            ScriptInstruction.ColorCondition condition = conditions.get(i);
+            PackedColorSample sample = condition.sample();
+            boolean rawMatches = snapshot != null ? snapshot.matches(sample) : library.matches(sample);
+            state.logCheck(sample, rawMatches);
+            if (rawMatches == condition.negate()) {
+                allMatched = false;
+            }
         }
-        Matcher releaseMatcher = RELEASE_PATTERN.matcher(line);
-        if (releaseMatcher.matches()) {
-            String key = releaseMatcher.group(1).trim();
-            library.releaseKey(key);
-            logger.accept("Released " + key);
-            return;
+        state.spent(block.line(), ScriptProfiler.Category.PIXEL, start);
+        if (allMatched) {
+            state.consecutiveMisses[block.backoffSite()] = 0;
+        } else {
+            backOff(block.backoff(), block.backoffSite(), block.line(), state.watched(block.backoffSite(), conditions), state);
         }
-        Matcher typeMatcher = TYPE_PATTERN.matcher(line);
-        if (typeMatcher.matches()) {
-            String text = typeMatcher.group(1);
-            library.typeText(text);
-            logger.accept("Typed '" + text + "'");
-            return;
+        if (state.profiler != null) {
+            // the body's lines are timed on their own
+            state.profiler.record(block.line(), System.nanoTime() - start);
         }
-        Matcher moveMatcher = MOVE_PATTERN.matcher(line);
-        if (moveMatcher.matches()) {
-            int x = Integer.parseInt(moveMatcher.group(1));
-            int y = Integer.parseInt(moveMatcher.group(2));
-            library.moveMouse(x, y);
-            logger.accept("Moved mouse to " + x + "," + y);
-            return;
+        if (allMatched) {
+            runBlock(block.body(), state);
         }
-        if (CAPTURE_PATTERN.matcher(line).matches()) {
-            ColorSample sample = library.captureCurrentPixel();
-            library.setTargetSample(sample);
-            logger.accept("Captured target at " + sample.location() + " with color " + sample.toHex());
+    }
+
+    private void backOff(BackoffPolicy blockPolicy, int site, int line, Point[] watched, RunState state) {
+        backOff(blockPolicy, site, line, watched, Long.MAX_VALUE, state);
+    }
+
+    /**
+     * Like a missed color check's back-off, but never waiting longer than {@code maxMs}.
+     */
+    private void backOff(BackoffPolicy blockPolicy, int site, int line, Point[] watched, long maxMs, RunState state) {
+        BackoffPolicy policy = blockPolicy != null ? blockPolicy : defaultBackoff;
+        int misses = ++state.consecutiveMisses[site];
+        state.missCounts[site]++;
+        state.siteLines[site] = line;
+        long delayMs = Math.min(policy.delayForMiss(misses), maxMs);
+        if (delayMs <= 0) {
             return;
         }
-        Matcher targetMatcher = IF_TARGET_PATTERN.matcher(line);
-        if (targetMatcher.matches()) {
-            boolean visible = library.isTargetVisible();
-            String action = visible ? targetMatcher.group(1) : targetMatcher.group(2);
-            if (action != null) {
-                executeLine(action.trim(), logger);
-            }
-            logger.accept("Target was " + (visible ? "visible" : "missing"));
-            return;
+        long start = System.nanoTime();
+        if (policy.kind() == BackoffPolicy.Kind.UNTIL_CHANGE && watched.length > 0) {
+            library.waitForChange(watched, delayMs);
+        } else {
+            library.sleepMs(delayMs);
         }
-        Matcher colorMatcher = IF_COLOR_PATTERN.matcher(line);
-        if (colorMatcher.matches()) {
-            int x = Integer.parseInt(colorMatcher.group(1));
-            int y = Integer.parseInt(colorMatcher.group(2));
-
-            int r = Integer.parseInt(colorMatcher.group(3));
-            int g = Integer.parseInt(colorMatcher.group(4));
-            int b = Integer.parseInt(colorMatcher.group(5));
-            Color color = new Color(r, g, b);
-            boolean matches = library.isColorAt(new Point(x, y), color);
-            String action = matches ? colorMatcher.group(6) : colorMatcher.group(7);
-
-
-
-            Color color = ColorLibrary.parseColor(colorMatcher.group(3));
-            boolean matches = library.isColorAt(new Point(x, y), color);
-            String action = matches ? colorMatcher.group(4) : colorMatcher.group(5);
-
-
+        state.backoffNanos[site] += System.nanoTime() - start;
+        if (state.profiler != null) {
+            state.profiler.add(line, ScriptProfiler.Category.SLEEP, System.nanoTime() - start);
+        }
+    }
 
+    private void execute(ScriptInstruction instruction, RunState state) throws InterruptedException {
+        EventLog log = state.log;
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("Script stopped");
+        }
+        int line = instruction.line();
+        if (instruction instanceof ScriptInstruction.Wait wait) {
+            // a WAIT after PRESS/TYPE is timed from when the input actually went out
+            flushInput(line, state);
+            long start = state.clock();
+            library.sleepMs(wait.delayMs());
+            state.spent(line, ScriptProfiler.Category.SLEEP, start);
+            log.log(EventLog.Level.DEBUG, WAITED, wait.delayMs());
+        } else if (instruction instanceof ScriptInstruction.WaitUntilColor waitUntil) {
+            long start = System.nanoTime();
+            boolean reached = library.waitUntilColor(waitUntil.sample(), waitUntil.present(), waitUntil.timeoutMs());
+            // parked between polls nearly all the time, so it counts as sleeping
+            state.spent(line, ScriptProfiler.Category.SLEEP, start);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Script stopped");
+            }
+            long waitedMs = (System.nanoTime() - start) / 1_000_000L;
+            EventLog.Message outcome = !reached ? COLOR_WAIT_TIMED_OUT : waitUntil.present() ? COLOR_APPEARED : COLOR_DISAPPEARED;
+            log.log(EventLog.Level.INFO, outcome, waitUntil.sample().x(), waitUntil.sample().y(), waitedMs);
+        } else if (instruction instanceof ScriptInstruction.Press press) {
+            long start = state.clock();
+            library.pressKey(press.keyCode());
+            state.spent(line, ScriptProfiler.Category.INPUT, start);
+            log.log(EventLog.Level.INFO, PRESSED, press.key());
+        } else if (instruction instanceof ScriptInstruction.Hold hold) {
+            long start = state.clock();
+            library.holdKey(hold.keyCode());
+            state.spent(line, ScriptProfiler.Category.INPUT, start);
+            log.log(EventLog.Level.INFO, HELD, hold.key());
+        } else if (instruction instanceof ScriptInstruction.Release release) {
+            long start = state.clock();
+            library.releaseKey(release.keyCode());
+            state.spent(line, ScriptProfiler.Category.INPUT, start);
+            log.log(EventLog.Level.INFO, RELEASED, release.key());
+        } else if (instruction instanceof ScriptInstruction.IfCooldown cooldown) {
+            executeCooldown(cooldown, state);
+        } else if (instruction instanceof ScriptInstruction.IfColor ifColor) {
+            PackedColorSample sample = ifColor.sample();
+            long start = state.clock();
+            boolean matches = library.matches(sample);
+            state.spent(line, ScriptProfiler.Category.PIXEL, start);
+            ScriptInstruction action = matches ? ifColor.thenAction() : ifColor.elseAction();
             if (action != null) {
-                executeLine(action.trim(), logger);
+                execute(action, state);
             }
-            logger.accept("Color check at " + x + "," + y + " was " + (matches ? "visible" : "missing"));
-
-            if (!matches) {
-                library.sleepMs(1000);
+            state.logCheck(sample, matches);
+            if (matches) {
+                state.consecutiveMisses[ifColor.backoffSite()] = 0;
+            } else {
+                Point[] watched = state.watched[ifColor.backoffSite()];
+                if (watched == null) {
+                    watched = new Point[] {new Point(sample.x(), sample.y())};
+                    state.watched[ifColor.backoffSite()] = watched;
+                }
+                backOff(ifColor.backoff(), ifColor.backoffSite(), ifColor.line(), watched, state);
             }
-            return;
-        }
-        Matcher cooldownMatcher = IF_COOLDOWN_PATTERN.matcher(line);
-        if (cooldownMatcher.matches()) {
-            String lastVar = normalizeVar(cooldownMatcher.group(1));
-            String cooldownVar = normalizeVar(cooldownMatcher.group(2));
-
-            String thenAction = cooldownMatcher.group(3);
-            String elseAction = cooldownMatcher.group(4);
-
-            long lastValue = requireVariable(lastVar);
-            long cooldown = requireVariable(cooldownVar);
-            long now = System.currentTimeMillis();
-            if (lastValue > now) {
-                logger.accept("Cooldown " + lastVar + " was ahead of current time; resetting to now");
-                lastValue = now;
-                variables.put(lastVar, lastValue);
-                externalCooldowns.put(lastVar, lastValue);
+        } else if (instruction instanceof ScriptInstruction.SetVariable set) {
+            assign(set, state);
+            long value = valueOf(set.index(), state);
+            publish(set.index(), value, state);
+            log.log(EventLog.Level.INFO, SET, set.name(), value);
+        } else if (instruction instanceof ScriptInstruction.WaitCooldown wait) {
+            flushInput(line, state);
+            ScriptInstruction.IfCooldown next = nextCooldown(state);
+            if (next == null) {
+                log.log(EventLog.Level.DEBUG, NO_COOLDOWN_PENDING);
+            } else {
+                long now = clock.nanoTime();
+                long until = state.nextReadyAt;
+                if (wait.maxMs() >= 0 && until - now > MonotonicClock.millisToNanos(wait.maxMs())) {
+                    until = now + MonotonicClock.millisToNanos(wait.maxMs());
+                }
+                library.sleepUntil(until);
+                state.spent(line, ScriptProfiler.Category.SLEEP, now);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Script stopped");
+                }
+                log.log(EventLog.Level.DEBUG, WAITED_COOLDOWN, Math.max(0, until - now) / 1_000_000L,
+                        next.lastVar(), next.cooldownVar());
             }
-            boolean ready = now - lastValue >= cooldown;
-
-
-            boolean thenDisabled = isActionDisabled(thenAction);
-            boolean elseDisabled = isActionDisabled(elseAction);
-            if (thenDisabled && (elseAction == null || elseDisabled)) {
-                logger.accept("Cooldown " + lastVar + "/" + cooldownVar + " skipped: actions disabled");
-                return;
+        } else if (instruction instanceof ScriptInstruction.NextCooldown nextCooldown) {
+            ScriptInstruction.IfCooldown next = nextCooldown(state);
+            long remainingMs = next == null ? -1 : Math.max(0, state.nextReadyAt - clock.nanoTime() + 999_999) / 1_000_000L;
+            state.set(nextCooldown.index(), remainingMs);
+            if (next != null) {
+                log.log(EventLog.Level.DEBUG, NEXT_COOLDOWN, next.lastVar(), next.cooldownVar(), remainingMs);
+            } else {
+                log.log(EventLog.Level.DEBUG, NO_COOLDOWN_PENDING);
             }
-
-            String action = ready ? thenAction : elseAction;
-
-            String action = ready ? cooldownMatcher.group(3) : cooldownMatcher.group(4);
-
-            if (action != null) {
-                String trimmedAction = action.trim();
-                if (isActionDisabled(trimmedAction)) {
-                    logger.accept("Skipped " + trimmedAction + " because target skill is disabled");
-
-                } else {
-                    executeLine(trimmedAction, logger);
+        } else if (instruction instanceof ScriptInstruction.Rotation rotation) {
+            executeRotation(rotation, state);
+        } else if (instruction instanceof ScriptInstruction.SkillToggle toggle) {
+            state.disabledSkills.set(toggle.index(), !toggle.enabled());
+            for (RotationScheduler scheduler : state.rotations) {
+                if (scheduler != null) {
+                    scheduler.setEnabled(toggle.index(), toggle.enabled(), clock.nanoTime());
                 }
             }
-            logger.accept("Cooldown " + lastVar + "/" + cooldownVar + " was " + (ready ? "ready" : "waiting") +
-                    " (last=" + lastValue + ", cd=" + cooldown + ", now=" + now + ")");
-
-                    logger.accept("Cooldown " + lastVar + "/" + cooldownVar + " was " + (ready ? "ready" : "waiting") +
-                            " (last=" + lastValue + ", cd=" + cooldown + ", now=" + now + ")");
-                    return;
-                }
-                executeLine(trimmedAction, logger);
+            log.log(EventLog.Level.INFO, toggle.enabled() ? ENABLED : DISABLED, toggle.skill());
+        } else if (instruction instanceof ScriptInstruction.Type type) {
+            long start = state.clock();
+            library.typeText(type.text());
+            state.spent(line, ScriptProfiler.Category.INPUT, start);
+            log.log(EventLog.Level.INFO, TYPED, type.text());
+        } else if (instruction instanceof ScriptInstruction.Move move) {
+            int x = move.xIndex() >= 0 ? (int) requireVariable(move.xIndex(), state) : move.x();
+            int y = move.yIndex() >= 0 ? (int) requireVariable(move.yIndex(), state) : move.y();
+            long start = state.clock();
+            library.moveMouse(x, y);
+            state.spent(line, ScriptProfiler.Category.INPUT, start);
+            log.log(EventLog.Level.INFO, MOVED, x, y);
+        } else if (instruction instanceof ScriptInstruction.FindColor find) {
+            long start = state.clock();
+            Point hit = library.findColor(find.region(), find.rgb(), find.tolerance(), find.step()).orElse(null);
+            state.spent(line, ScriptProfiler.Category.PIXEL, start);
+            // coordinates are run-local; they are not synced to the shared cooldown file like SET values
+            state.set(find.xIndex(), hit != null ? hit.x : -1L);
+            state.set(find.yIndex(), hit != null ? hit.y : -1L);
+            if (hit != null) {
+                log.log(EventLog.Level.DEBUG, FOUND_COLOR, hit.x, hit.y);
+            } else {
+                Rectangle region = find.region();
+                log.log(EventLog.Level.DEBUG, COLOR_NOT_FOUND, region.x, region.y, region.width, region.height);
             }
-            logger.accept("Cooldown " + lastVar + "/" + cooldownVar + " was " + (ready ? "ready" : "waiting") +
-                    " (last=" + lastValue + ", cd=" + cooldown + ", now=" + now + ")");
-
-
-            return;
+            ScriptInstruction action = hit != null ? find.thenAction() : find.elseAction();
+            if (action != null) {
+                execute(action, state);
+            }
+        } else if (instruction instanceof ScriptInstruction.FindImage find) {
+            TemplateMatcher matcher = state.matchers[find.imageSite()];
+            if (matcher == null) {
+                ImageTemplate template = templates.get(find.template());
+                matcher = switch (find.mode()) {
+                    case EXACT -> TemplateMatcher.exact(template);
+                    case TOLERANCE -> TemplateMatcher.tolerance(template, find.tolerance());
+                    case NCC -> TemplateMatcher.ncc(template, find.threshold());
+                };
+                state.matchers[find.imageSite()] = matcher;
+            }
+            long start = state.clock();
+            TemplateMatcher.Match hit = library.findImage(matcher, find.region()).orElse(null);
+            state.spent(line, ScriptProfiler.Category.PIXEL, start);
+            state.set(find.xIndex(), hit != null ? hit.centerX() : -1L);
+            state.set(find.yIndex(), hit != null ? hit.centerY() : -1L);
+            if (hit == null) {
+                Rectangle region = find.region();
+                log.log(EventLog.Level.DEBUG, IMAGE_NOT_FOUND, find.template(), region.x, region.y, region.width, region.height);
+            } else if (find.mode() != TemplateMatcher.Mode.NCC) {
+                log.log(EventLog.Level.DEBUG, FOUND_IMAGE, find.template(), hit.centerX(), hit.centerY());
+            } else if (log.isEnabled(EventLog.Level.DEBUG)) {
+                log.log(EventLog.Level.DEBUG, FOUND_IMAGE_SCORED, find.template(), hit.centerX(), hit.centerY(),
+                        String.format(Locale.ROOT, "%.3f", hit.score()));
+            }
+            ScriptInstruction action = hit != null ? find.thenAction() : find.elseAction();
+            if (action != null) {
+                execute(action, state);
+            }
+        } else if (instruction instanceof ScriptInstruction.Click) {
+            long start = state.clock();
+            library.leftClick();
+            state.spent(line, ScriptProfiler.Category.INPUT, start);
+            log.log(EventLog.Level.INFO, CLICKED);
+        } else if (instruction instanceof ScriptInstruction.FlushInput) {
+            flushInput(line, state);
+            log.log(EventLog.Level.DEBUG, FLUSHED);
+        } else if (instruction instanceof ScriptInstruction.CaptureTarget) {
+            flushInput(line, state);
+            long start = state.clock();
+            ColorSample sample = library.captureCurrentPixel();
+            state.spent(line, ScriptProfiler.Category.PIXEL, start);
+            library.setTargetSample(sample);
+            log.log(EventLog.Level.INFO, CAPTURED_TARGET, sample.location(), sample.toHex());
+        } else if (instruction instanceof ScriptInstruction.IfTarget ifTarget) {
+            long start = state.clock();
+            boolean visible = library.isTargetVisible();
+            state.spent(line, ScriptProfiler.Category.PIXEL, start);
+            ScriptInstruction action = visible ? ifTarget.thenAction() : ifTarget.elseAction();
+            if (action != null) {
+                execute(action, state);
+            }
+            log.log(EventLog.Level.DEBUG, visible ? TARGET_VISIBLE : TARGET_MISSING);
+        } else if (instruction instanceof ScriptInstruction.Log logLine) {
+            log.info(logLine.message());
+        } else {
+            throw new IllegalArgumentException("Unsupported instruction: " + instruction.label());
         }
-        Matcher logMatcher = LOG_PATTERN.matcher(line);
-        if (logMatcher.matches()) {
-            logger.accept(logMatcher.group(1));
-            return;
+    }
+
+    private void flushInput(int line, RunState state) throws InterruptedException {
+        long start = state.clock();
+        boolean flushed = library.flushInput();
+        state.spent(line, ScriptProfiler.Category.INPUT, start);
+        if (!flushed) {
+            throw new InterruptedException("Script stopped");
         }
-        if (CLICK_PATTERN.matcher(line).matches()) {
-            library.leftClick();
-            logger.accept("Clicked mouse");
+    }
+
+    private void executeCooldown(ScriptInstruction.IfCooldown cooldown, RunState state) throws InterruptedException {
+        EventLog log = state.log;
+        String lastVar = cooldown.lastVar();
+        String cooldownVar = cooldown.cooldownVar();
+        long last = requireTime(cooldown.lastIndex(), state);
+        long cooldownMs = requireVariable(cooldown.cooldownIndex(), state);
+        long now = clock.nanoTime();
+        if (last - now > 0) {
+            // only an epoch value from outside this process (the store or an older run) can be ahead
+            log.log(EventLog.Level.WARN, COOLDOWN_AHEAD, lastVar);
+            last = now;
+            state.setTime(cooldown.lastIndex(), last);
+            publish(cooldown.lastIndex(), clock.toEpochMillis(last), state);
+        }
+        boolean ready = now - last >= MonotonicClock.millisToNanos(cooldownMs);
+
+        ScriptInstruction thenAction = cooldown.thenAction();
+        ScriptInstruction elseAction = cooldown.elseAction();
+        boolean thenDisabled = isActionDisabled(thenAction, state);
+        boolean elseDisabled = isActionDisabled(elseAction, state);
+        if (thenDisabled && (elseAction == null || elseDisabled)) {
+            log.log(EventLog.Level.DEBUG, COOLDOWN_SKIPPED, lastVar, cooldownVar);
             return;
         }
 
-        Matcher pauseMatcher = BLUE_EYE_PAUSE_PATTERN.matcher(line);
-        if (pauseMatcher.matches()) {
-            long delay = Long.parseLong(pauseMatcher.group(1));
-            library.sleepMs(delay);
-            logger.accept("Waited " + delay + " ms");
-            return;
+        ScriptInstruction action = ready ? thenAction : elseAction;
+        if (action != null) {
+            if (ready ? thenDisabled : elseDisabled) {
+                log.log(EventLog.Level.DEBUG, PRESS_SKIPPED, ((ScriptInstruction.Press) action).key());
+            } else {
+                execute(action, state);
+            }
         }
-        Matcher blueEyePress = BLUE_EYE_PRESS_PATTERN.matcher(line);
-        if (blueEyePress.matches()) {
-            String key = blueEyePress.group(1);
-            library.pressKey(key);
-            logger.accept("Pressed " + key);
-            return;
+        if (log.isEnabled(EventLog.Level.DEBUG)) {
+            log.log(EventLog.Level.DEBUG, ready ? COOLDOWN_READY : COOLDOWN_WAITING, lastVar, cooldownVar,
+                    clock.toEpochMillis(last), cooldownMs, clock.toEpochMillis(now));
         }
-        Matcher blueEyeHold = BLUE_EYE_HOLD_PATTERN.matcher(line);
-        if (blueEyeHold.matches()) {
-            String key = blueEyeHold.group(1);
-            library.holdKey(key);
-            logger.accept("Held " + key);
-            return;
+    }
+
+    private void executeRotation(ScriptInstruction.Rotation rotation, RunState state) throws InterruptedException {
+        EventLog log = state.log;
+        int line = rotation.line();
+        RotationScheduler scheduler = state.rotations[rotation.rotationSite()];
+        if (scheduler == null) {
+            scheduler = new RotationScheduler(rotation, clock.nanoTime(), state.disabledSkills,
+                    skill -> library.matches(skill.precondition()) != skill.negate());
+            state.rotations[rotation.rotationSite()] = scheduler;
+        }
+        long start = state.clock();
+        ScriptInstruction.RotationSkill skill = scheduler.fireNext(clock.nanoTime());
+        state.spent(line, ScriptProfiler.Category.PIXEL, start);
+        if (skill == null && rotation.waitForReady()) {
+            flushInput(line, state);
+            long readyAt = scheduler.nextReadyAt();
+            long waitStart = clock.nanoTime();
+            if (scheduler.hasReady() || readyAt == Long.MIN_VALUE) {
+                // held back by color preconditions, or nothing enabled: a cooldown end may not
+                // be coming, so back off like a missed color check, but not past the next one
+                long maxMs = readyAt == Long.MIN_VALUE ? Long.MAX_VALUE
+                        : Math.max(0, readyAt - waitStart + 999_999) / 1_000_000L;
+                backOff(rotation.backoff(), rotation.backoffSite(), line, watched(rotation, state), maxMs, state);
+            } else {
+                library.sleepUntil(readyAt);
+                state.spent(line, ScriptProfiler.Category.SLEEP, waitStart);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Script stopped");
+            }
+            log.log(EventLog.Level.DEBUG, ROTATION_WAITED, line, (clock.nanoTime() - waitStart) / 1_000_000L);
+            start = state.clock();
+            skill = scheduler.fireNext(clock.nanoTime());
+            state.spent(line, ScriptProfiler.Category.PIXEL, start);
         }
-        Matcher blueEyeRelease = BLUE_EYE_RELEASE_PATTERN.matcher(line);
-        if (blueEyeRelease.matches()) {
-            String key = blueEyeRelease.group(1);
-            library.releaseKey(key);
-            logger.accept("Released " + key);
+        if (skill == null) {
+            log.log(EventLog.Level.DEBUG, ROTATION_IDLE, line);
             return;
         }
-        throw new IllegalArgumentException("Unknown instruction: " + line);
+        state.consecutiveMisses[rotation.backoffSite()] = 0;
+        start = state.clock();
+        library.pressKey(skill.keyCode());
+        state.spent(line, ScriptProfiler.Category.INPUT, start);
+        log.log(EventLog.Level.INFO, CAST, skill.name(), skill.key());
     }
 
-
-    private String normalizeVar(String name) {
-        return name.toLowerCase(Locale.ROOT);
+    /**
+     * Precondition pixels of a rotation's skills, watched by an UNTIL_CHANGE back-off.
+     */
+    private static Point[] watched(ScriptInstruction.Rotation rotation, RunState state) {
+        Point[] points = state.watched[rotation.backoffSite()];
+        if (points == null) {
+            points = rotation.skills().stream()
+                    .map(ScriptInstruction.RotationSkill::precondition)
+                    .filter(Objects::nonNull)
+                    .map(sample -> new Point(sample.x(), sample.y()))
+                    .toArray(Point[]::new);
+            state.watched[rotation.backoffSite()] = points;
+        }
+        return points;
     }
 
-    private String normalizeKey(String raw) {
-        String cleaned = raw.replace("{", "").replace("}", "");
-        return normalizeVar(cleaned);
+    /**
+     * The IF_COOLDOWN of the script that becomes ready first, with its ready time in
+     * {@code state.nextReadyAt}; null when none has an enabled action and known variables.
+     */
+    private ScriptInstruction.IfCooldown nextCooldown(RunState state) {
+        ScriptInstruction.IfCooldown next = null;
+        long nextReadyAt = 0;
+        for (ScriptInstruction.IfCooldown cooldown : state.cooldowns) {
+            if (isActionDisabled(cooldown.thenAction(), state)
+                    || !isKnown(cooldown.lastIndex(), state) || !isKnown(cooldown.cooldownIndex(), state)) {
+                continue;
+            }
+            long readyAt = requireTime(cooldown.lastIndex(), state)
+                    + MonotonicClock.millisToNanos(requireVariable(cooldown.cooldownIndex(), state));
+            if (next == null || readyAt - nextReadyAt < 0) {
+                next = cooldown;
+                nextReadyAt = readyAt;
+            }
+        }
+        state.nextReadyAt = nextReadyAt;
+        return next;
     }
 
-    private void enableSkill(String name) {
-        skillEnabled.put(normalizeVar(name), true);
+    private static boolean isActionDisabled(ScriptInstruction action, RunState state) {
+        if (!(action instanceof ScriptInstruction.Press press)) {
+            return false;
+        }
+        if (state.disabledSkills.get(press.skillIndex())) {
+            return true;
+        }
+        return press.slotSkillIndex() >= 0 && state.disabledSkills.get(press.slotSkillIndex());
     }
 
-    private void disableSkill(String name) {
-        skillEnabled.put(normalizeVar(name), false);
+    private void assign(ScriptInstruction.SetVariable set, RunState state) {
+        switch (set.kind()) {
+            case TIMER -> state.setTime(set.index(), clock.nanoTime());
+            case LITERAL -> state.set(set.index(), set.literal());
+            default -> {
+                int reference = set.referenceIndex();
+                refresh(reference, state);
+                if (state.defined.get(reference)) {
+                    if (state.monotonic.get(reference)) {
+                        state.setTime(set.index(), state.values[reference]);
+                    } else {
+                        state.set(set.index(), state.values[reference]);
+                    }
+                    return;
+                }
+                throw new IllegalArgumentException("Unknown value: " + set.reference());
+            }
+        }
     }
 
-    private boolean isSkillEnabled(String name) {
-        return skillEnabled.getOrDefault(normalizeVar(name), true);
+    /**
+     * Writes a variable's script-visible value to the shared store, through its table slot once
+     * it has one.
+     */
+    private void publish(int index, long value, RunState state) {
+        int slot = state.slots[index];
+        if (slot >= 0) {
+            externalCooldowns.putAt(slot, state.variableNames.get(index), value);
+        } else {
+            String name = state.variableNames.get(index);
+            externalCooldowns.put(name, value);
+            state.slots[index] = externalCooldowns.slot(name);
+        }
+        state.storeValues[index] = value;
     }
 
-    private boolean isActionDisabled(String action) {
-        if (action == null) {
-            return false;
-        }
-        Matcher pressMatcher = PRESS_PATTERN.matcher(action);
-        if (pressMatcher.matches()) {
-            String key = normalizeKey(pressMatcher.group(1));
-            if (isSkillDisabledForKey(key)) {
-                return true;
+    /**
+     * Replaces a frame variable with its store value when another tool, bot instance or file
+     * reload changed the store since this run last read or wrote it; one volatile read. Undefined
+     * variables without a slot are looked up again only after a name was added to the store.
+     */
+    private void refresh(int index, RunState state) {
+        int slot = state.slots[index];
+        if (slot >= 0) {
+            long stored = externalCooldowns.valueAt(slot);
+            if (stored != state.storeValues[index]) {
+                state.storeValues[index] = stored;
+                state.set(index, stored);
             }
-        }
-        Matcher bluePress = BLUE_EYE_PRESS_PATTERN.matcher(action);
-        if (bluePress.matches()) {
-            String key = normalizeKey(bluePress.group(1));
-            if (isSkillDisabledForKey(key)) {
-                return true;
+        } else if (!state.defined.get(index)) {
+            long version = externalCooldowns.namesVersion();
+            if (version != state.namesVersion) {
+                state.namesVersion = version;
+                resolveMissing(state);
             }
         }
-        return false;
     }
 
-    private boolean isSkillDisabledForKey(String key) {
-        if (!isSkillEnabled(key)) {
-            return true;
-        }
-        try {
-            int numeric = Integer.parseInt(key);
-            int slot = numeric - 2; // e.g., key 3 -> skill1, key 4 -> skill2, etc.
-            if (slot >= 1) {
-                String mapped = "skill" + slot;
-                if (!isSkillEnabled(mapped)) {
-                    return true;
-                }
+    private void resolveMissing(RunState state) {
+        for (int i = 0; i < state.slots.length; i++) {
+            if (state.slots[i] >= 0 || state.defined.get(i)) {
+                continue;
+            }
+            String name = state.variableNames.get(i);
+            int slot = externalCooldowns.slot(name);
+            state.slots[i] = slot;
+            if (slot >= 0) {
+                long stored = externalCooldowns.valueAt(slot);
+                state.storeValues[i] = stored;
+                state.set(i, stored);
+            } else {
+                int index = i;
+                externalCooldowns.get(name).ifPresent(stored -> state.set(index, stored));
             }
-        } catch (NumberFormatException ignored) {
-            // non-numeric keys rely on direct names only
         }
-        return false;
     }
 
-    private long resolveValue(String rawValue) {
-        if (rawValue.equalsIgnoreCase("timer")) {
-            return System.currentTimeMillis();
-        }
-        if (rawValue.matches("\\d+")) {
-            return Long.parseLong(rawValue);
-        }
-        String lookup = normalizeVar(rawValue);
-        Long value = variables.get(lookup);
-        if (value != null) {
-            return value;
-        }
-        Optional<Long> external = externalCooldowns.get(lookup);
-        if (external.isPresent()) {
-            return external.get();
-        }
-        throw new IllegalArgumentException("Unknown value: " + rawValue);
+    /**
+     * Script-visible value of a defined frame variable; times read as epoch milliseconds.
+     */
+    private long valueOf(int index, RunState state) {
+        long value = state.values[index];
+        return state.monotonic.get(index) ? clock.toEpochMillis(value) : value;
     }
 
-    private long requireVariable(String name) {
-        Long value = variables.get(name);
-        if (value != null) {
-            return value;
-        }
-        Optional<Long> external = externalCooldowns.get(name);
-        if (external.isPresent()) {
-            return external.get();
+    /**
+     * A timestamp variable as a {@link MonotonicClock} nano time; values set by scripts or the
+     * store as epoch milliseconds are translated.
+     */
+    private long requireTime(int index, RunState state) {
+        refresh(index, state);
+        if (state.monotonic.get(index)) {
+            return state.values[index];
         }
-        throw new IllegalArgumentException("Unknown variable: " + name);
+        return clock.toNanoTime(requireVariable(index, state));
     }
 
+    private boolean isKnown(int index, RunState state) {
+        refresh(index, state);
+        return state.defined.get(index);
+    }
+
+    /**
+     * Frame value of a variable, kept in step with the shared cooldown store by {@link #refresh}.
+     */
+    private long requireVariable(int index, RunState state) {
+        refresh(index, state);
+        if (state.defined.get(index)) {
+            return valueOf(index, state);
+        }
+        throw new IllegalArgumentException("Unknown variable: " + state.variableNames.get(index));
+    }
 }
@@ -0,0 +1,250 @@
+package com.example.colorbot;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans the raw pixels of one {@link ScreenSnapshot} for a color. Large regions are split into
+ * row stripes and searched on the common fork-join pool; a first-match search stops every stripe
+ * below the best hit found so far. {@code step} samples every n-th pixel in both directions.
+ */
+final class ColorSearch {
+    /**
+     * Below this many sampled pixels a single thread is faster than forking.
+     */
+    static final int PARALLEL_THRESHOLD = 128 * 1024;
+    private static final long NOT_FOUND = Long.MAX_VALUE;
+
+    private ColorSearch() {
+    }
+
+    /**
+     * First matching pixel in row-major order, or {@code null}.
+     */
+    static Point findFirst(ScreenSnapshot snapshot, Rectangle region, int rgb, ColorTolerance tolerance, int step) {
+        Scan scan = new Scan(snapshot, region, rgb, tolerance, step);
+        if (scan.rows == 0) {
+            return null;
+        }
+        AtomicLong best = new AtomicLong(NOT_FOUND);
+        if (scan.sampledPixels() < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            scan.findFirst(0, scan.rows, best);
+        } else {
+            ForkJoinPool.commonPool().invoke(new FirstStripe(scan, 0, scan.rows, scan.stripeRows(), best));
+        }
+        long hit = best.get();
+        return hit == NOT_FOUND ? null : scan.toPoint(hit);
+    }
+
+    /**
+     * Every matching pixel in row-major order, at most {@code limit}.
+     */
+    static List<Point> findAll(ScreenSnapshot snapshot, Rectangle region, int rgb, ColorTolerance tolerance,
+                               int step, int limit) {
+        Scan scan = new Scan(snapshot, region, rgb, tolerance, step);
+        if (scan.rows == 0 || limit <= 0) {
+            return List.of();
+        }
+        int[][] stripeHits;
+        if (scan.sampledPixels() < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            stripeHits = new int[][] {scan.findAll(0, scan.rows, limit)};
+        } else {
+            int stripeRows = scan.stripeRows();
+            stripeHits = new int[(scan.rows + stripeRows - 1) / stripeRows][];
+            ForkJoinPool.commonPool().invoke(new AllStripe(scan, 0, scan.rows, stripeRows, limit, stripeHits));
+        }
+        List<Point> points = new ArrayList<>();
+        for (int[] hits : stripeHits) {
+            for (int i = 1; i <= hits[0] && points.size() < limit; i++) {
+                points.add(scan.toPoint(hits[i]));
+            }
+        }
+        return points;
+    }
+
+    /**
+     * One search: the clipped region in snapshot-local coordinates and the sampled row/column grid.
+     */
+    private static final class Scan {
+        final int[] pixels;
+        final int stride;
+        final int originX;
+        final int originY;
+        final int left;
+        final int top;
+        final int columns;
+        final int rows;
+        final int step;
+        final int rgb;
+        final ColorTolerance tolerance;
+
+        Scan(ScreenSnapshot snapshot, Rectangle region, int rgb, ColorTolerance tolerance, int step) {
+            if (step < 1) {
+                throw new IllegalArgumentException("step must be at least 1");
+            }
+            Rectangle bounds = snapshot.bounds();
+            Rectangle clipped = bounds.intersection(region);
+            this.pixels = snapshot.pixels();
+            this.stride = snapshot.scanlineStride();
+            this.originX = bounds.x;
+            this.originY = bounds.y;
+            this.left = clipped.x - bounds.x;
+            this.top = clipped.y - bounds.y;
+            this.step = step;
+            this.columns = clipped.isEmpty() ? 0 : (clipped.width + step - 1) / step;
+            this.rows = clipped.isEmpty() ? 0 : (clipped.height + step - 1) / step;
+            this.rgb = rgb & 0xFFFFFF;
+            this.tolerance = tolerance;
+        }
+
+        long sampledPixels() {
+            return (long) columns * rows;
+        }
+
+        int stripeRows() {
+            int stripes = ForkJoinPool.getCommonPoolParallelism() * 4;
+            return Math.max(1, (rows + stripes - 1) / stripes);
+        }
+
+        /**
+         * Scans sampled rows {@code [fromRow, toRow)}, giving up once {@code best} is above this stripe.
+         */
+        void findFirst(int fromRow, int toRow, AtomicLong best) {
+            boolean exact = tolerance.isExact();
+            for (int row = fromRow; row < toRow; row++) {
+                long rowKey = (long) row * columns;
+                if (rowKey > best.get()) {
+                    return;
+                }
+                int offset = (top + row * step) * stride + left;
+                int column = exact && step == 1 ? indexOfExact(offset) : indexOfSampled(offset, exact);
+                if (column >= 0) {
+                    best.accumulateAndGet(rowKey + column, Math::min);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Dense exact scan of one row; the tight loop the JIT unrolls best.
+         */
+        private int indexOfExact(int offset) {
+            for (int column = 0; column < columns; column++) {
+                if ((pixels[offset + column] & 0xFFFFFF) == rgb) {
+                    return column;
+                }
+            }
+            return -1;
+        }
+
+        private int indexOfSampled(int offset, boolean exact) {
+            for (int column = 0; column < columns; column++) {
+                int pixel = pixels[offset + column * step];
+                if (exact ? (pixel & 0xFFFFFF) == rgb : tolerance.matches(rgb, pixel)) {
+                    return column;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Hits in rows {@code [fromRow, toRow)} as grid indexes; element 0 holds the count.
+         */
+        int[] findAll(int fromRow, int toRow, int limit) {
+            boolean exact = tolerance.isExact();
+            int[] hits = new int[17];
+            int count = 0;
+            for (int row = fromRow; row < toRow && count < limit; row++) {
+                int offset = (top + row * step) * stride + left;
+                for (int column = 0; column < columns && count < limit; column++) {
+                    int pixel = pixels[offset + column * step];
+                    if (exact ? (pixel & 0xFFFFFF) == rgb : tolerance.matches(rgb, pixel)) {
+                        if (++count == hits.length) {
+                            hits = Arrays.copyOf(hits, hits.length * 2);
+                        }
+                        hits[count] = row * columns + column;
+                    }
+                }
+            }
+            hits[0] = count;
+            return hits;
+        }
+
+        Point toPoint(long gridIndex) {
+            int row = (int) (gridIndex / columns);
+            int column = (int) (gridIndex % columns);
+            return new Point(originX + left + column * step, originY + top + row * step);
+        }
+    }
+
+    private static final class FirstStripe extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Scan scan;
+        private final int fromRow;
+        private final int toRow;
+        private final int stripeRows;
+        private final AtomicLong best;
+
+        FirstStripe(Scan scan, int fromRow, int toRow, int stripeRows, AtomicLong best) {
+            this.scan = scan;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.stripeRows = stripeRows;
+            this.best = best;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= stripeRows) {
+                scan.findFirst(fromRow, toRow, best);
+                return;
+            }
+            int middle = fromRow + ((toRow - fromRow) / 2 / stripeRows) * stripeRows;
+            middle = Math.max(middle, fromRow + stripeRows);
+            // the upper half runs on this thread so the earliest rows are scanned first
+            FirstStripe lower = new FirstStripe(scan, middle, toRow, stripeRows, best);
+            lower.fork();
+            new FirstStripe(scan, fromRow, middle, stripeRows, best).compute();
+            lower.join();
+        }
+    }
+
+    private static final class AllStripe extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Scan scan;
+        private final int fromRow;
+        private final int toRow;
+        private final int stripeRows;
+        private final int limit;
+        private final int[][] stripeHits;
+
+        AllStripe(Scan scan, int fromRow, int toRow, int stripeRows, int limit, int[][] stripeHits) {
+            this.scan = scan;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.stripeRows = stripeRows;
+            this.limit = limit;
+            this.stripeHits = stripeHits;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= stripeRows) {
+                stripeHits[fromRow / stripeRows] = scan.findAll(fromRow, toRow, limit);
+                return;
+            }
+            int middle = fromRow + ((toRow - fromRow) / 2 / stripeRows) * stripeRows;
+            middle = Math.max(middle, fromRow + stripeRows);
+            invokeAll(new AllStripe(scan, fromRow, middle, stripeRows, limit, stripeHits),
+                    new AllStripe(scan, middle, toRow, stripeRows, limit, stripeHits));
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.colorbot;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Locale;
+
+/**
+ * How close a captured pixel must be to an expected color to count as a match. Works on packed
+ * {@code 0xRRGGBB} ints without allocating; the divisions and gamma curves needed by the HSV and
+ * CIE modes come from lookup tables built once per JVM.
+ * <ul>
+ *     <li>{@code EXACT} - identical RGB</li>
+ *     <li>{@code CHANNEL d} - every channel within {@code d}</li>
+ *     <li>{@code EUCLIDEAN d} - RGB distance at most {@code d}</li>
+ *     <li>{@code HSV hue sat val} - hue within {@code hue} degrees, saturation and value within
+ *     {@code sat}/{@code val} on a 0-255 scale; hue is ignored for greys</li>
+ *     <li>{@code DELTA_E d} - CIE76 distance in L*a*b* at most {@code d}</li>
+ * </ul>
+ */
+public final class ColorTolerance {
+    public enum Mode {
+        EXACT,
+        CHANNEL,
+        EUCLIDEAN,
+        HSV,
+        DELTA_E
+    }
+
+    public static final ColorTolerance EXACT = new ColorTolerance(Mode.EXACT, 0, 0, 0, 0);
+
+    /**
+     * {@code RECIPROCAL[n] = 2^16 / n}, so {@code x / n} becomes {@code (x * RECIPROCAL[n]) >> 16}.
+     */
+    private static final int[] RECIPROCAL = new int[256];
+    /**
+     * Per-channel contributions to X/Xn, Y/Yn and Z/Zn (sRGB, D65): {@code X = XR[r] + XG[g] + XB[b]}.
+     */
+    private static final float[] XR = new float[256];
+    private static final float[] XG = new float[256];
+    private static final float[] XB = new float[256];
+    private static final float[] YR = new float[256];
+    private static final float[] YG = new float[256];
+    private static final float[] YB = new float[256];
+    private static final float[] ZR = new float[256];
+    private static final float[] ZG = new float[256];
+    private static final float[] ZB = new float[256];
+    private static final int LAB_F_STEPS = 4096;
+    private static final float[] LAB_F = new float[LAB_F_STEPS + 2];
+
+    private static final VarHandle MEMO;
+    private static final long MEMO_VALID = 1L << 49;
+    private static final long MEMO_MATCH = 1L << 48;
+
+    static {
+        try {
+            MEMO = MethodHandles.lookup().findVarHandle(ColorTolerance.class, "memo", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        for (int i = 1; i < RECIPROCAL.length; i++) {
+            RECIPROCAL[i] = (1 << 16) / i;
+        }
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            double linear = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+            XR[i] = (float) (0.4124 * linear / 0.95047);
+            XG[i] = (float) (0.3576 * linear / 0.95047);
+            XB[i] = (float) (0.1805 * linear / 0.95047);
+            YR[i] = (float) (0.2126 * linear);
+            YG[i] = (float) (0.7152 * linear);
+            YB[i] = (float) (0.0722 * linear);
+            ZR[i] = (float) (0.0193 * linear / 1.08883);
+            ZG[i] = (float) (0.1192 * linear / 1.08883);
+            ZB[i] = (float) (0.9505 * linear / 1.08883);
+        }
+        for (int i = 0; i < LAB_F.length; i++) {
+            double t = Math.min(1.0, (double) i / LAB_F_STEPS);
+            LAB_F[i] = (float) (t > 0.008856 ? Math.cbrt(t) : 7.787 * t + 16.0 / 116.0);
+        }
+    }
+
+    private final Mode mode;
+    private final double distance;
+    private final int hueDegrees;
+    private final int saturation;
+    private final int value;
+    private final int channelDelta;
+    private final int squaredDistance;
+    private final float squaredDeltaE;
+    /**
+     * Last (expected, actual, result) of the table-heavy modes; pollers usually see the same pixel
+     * again. Accessed through {@link #MEMO} in opaque mode: atomic, but no fences on the hot path.
+     */
+    @SuppressWarnings("unused")
+    private long memo;
+
+    private ColorTolerance(Mode mode, double distance, int hueDegrees, int saturation, int value) {
+        this.mode = mode;
+        this.distance = distance;
+        this.hueDegrees = hueDegrees;
+        this.saturation = saturation;
+        this.value = value;
+        this.channelDelta = (int) distance;
+        this.squaredDistance = (int) Math.floor(distance * distance);
+        this.squaredDeltaE = (float) (distance * distance);
+    }
+
+    public static ColorTolerance channel(int delta) {
+        requireRange(delta, 0, 255, "Channel delta");
+        return delta == 0 ? EXACT : new ColorTolerance(Mode.CHANNEL, delta, 0, 0, 0);
+    }
+
+    public static ColorTolerance euclidean(double distance) {
+        if (!(distance >= 0 && distance <= 442)) {
+            throw new IllegalArgumentException("Euclidean distance must be between 0 and 442");
+        }
+        return new ColorTolerance(Mode.EUCLIDEAN, distance, 0, 0, 0);
+    }
+
+    public static ColorTolerance hsv(int hueDegrees, int saturation, int value) {
+        requireRange(hueDegrees, 0, 180, "Hue window");
+        requireRange(saturation, 0, 255, "Saturation window");
+        requireRange(value, 0, 255, "Value window");
+        return new ColorTolerance(Mode.HSV, 0, hueDegrees, saturation, value);
+    }
+
+    public static ColorTolerance deltaE(double maxDeltaE) {
+        if (!(maxDeltaE >= 0 && maxDeltaE <= 200)) {
+            throw new IllegalArgumentException("Delta E must be between 0 and 200");
+        }
+        return new ColorTolerance(Mode.DELTA_E, maxDeltaE, 0, 0, 0);
+    }
+
+    /**
+     * Parses the script form, e.g. {@code EXACT}, {@code CHANNEL 8}, {@code EUCLIDEAN 12.5},
+     * {@code HSV 10 40 40} or {@code DELTA_E 3}.
+     */
+    public static ColorTolerance parse(String spec) {
+        String[] parts = spec.trim().split("\\s+");
+        Mode mode;
+        try {
+            mode = Mode.valueOf(parts[0].toUpperCase(Locale.ROOT).replace("DELTAE", "DELTA_E"));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown tolerance mode: " + parts[0]);
+        }
+        int expected = switch (mode) {
+            case EXACT -> 1;
+            case CHANNEL, EUCLIDEAN, DELTA_E -> 2;
+            case HSV -> 4;
+        };
+        if (parts.length != expected) {
+            throw new IllegalArgumentException("TOLERANCE " + mode + " expects " + (expected - 1) + " value(s)");
+        }
+        try {
+            return switch (mode) {
+                case EXACT -> EXACT;
+                case CHANNEL -> channel(Integer.parseInt(parts[1]));
+                case EUCLIDEAN -> euclidean(Double.parseDouble(parts[1]));
+                case DELTA_E -> deltaE(Double.parseDouble(parts[1]));
+                case HSV -> hsv(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid TOLERANCE value in: " + spec.trim());
+        }
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public boolean isExact() {
+        return mode == Mode.EXACT;
+    }
+
+    /**
+     * Whether {@code actualRgb} is close enough to {@code expectedRgb}; alpha bits are ignored.
+     */
+    public boolean matches(int expectedRgb, int actualRgb) {
+        expectedRgb &= 0xFFFFFF;
+        actualRgb &= 0xFFFFFF;
+        if (expectedRgb == actualRgb) {
+            return true;
+        }
+        switch (mode) {
+            case EXACT:
+                return false;
+            case CHANNEL:
+                return Math.abs((expectedRgb >>> 16) - (actualRgb >>> 16)) <= channelDelta
+                        && Math.abs(((expectedRgb >> 8) & 0xFF) - ((actualRgb >> 8) & 0xFF)) <= channelDelta
+                        && Math.abs((expectedRgb & 0xFF) - (actualRgb & 0xFF)) <= channelDelta;
+            case EUCLIDEAN: {
+                int dr = (expectedRgb >>> 16) - (actualRgb >>> 16);
+                int dg = ((expectedRgb >> 8) & 0xFF) - ((actualRgb >> 8) & 0xFF);
+                int db = (expectedRgb & 0xFF) - (actualRgb & 0xFF);
+                return dr * dr + dg * dg + db * db <= squaredDistance;
+            }
+            default:
+                break;
+        }
+        long key = ((long) expectedRgb << 24) | actualRgb;
+        long last = (long) MEMO.getOpaque(this);
+        if ((last & MEMO_VALID) != 0 && (last & 0xFFFF_FFFF_FFFFL) == key) {
+            return (last & MEMO_MATCH) != 0;
+        }
+        boolean match = mode == Mode.HSV ? hsvMatches(expectedRgb, actualRgb) : deltaEMatches(expectedRgb, actualRgb);
+        MEMO.setOpaque(this, key | MEMO_VALID | (match ? MEMO_MATCH : 0));
+        return match;
+    }
+
+    private boolean hsvMatches(int expectedRgb, int actualRgb) {
+        int expectedHsv = toHsv(expectedRgb);
+        int actualHsv = toHsv(actualRgb);
+        if (Math.abs((expectedHsv & 0xFF) - (actualHsv & 0xFF)) > value
+                || Math.abs(((expectedHsv >> 8) & 0xFF) - ((actualHsv >> 8) & 0xFF)) > saturation) {
+            return false;
+        }
+        int expectedHue = expectedHsv >> 16;
+        int actualHue = actualHsv >> 16;
+        if (expectedHue < 0 || actualHue < 0) {
+            return true;
+        }
+        int hueDiff = Math.abs(expectedHue - actualHue);
+        return Math.min(hueDiff, 360 - hueDiff) <= hueDegrees;
+    }
+
+    /**
+     * Packs hue in degrees (or -1 for greys) into the high bits, saturation and value (0-255) below.
+     */
+    private static int toHsv(int rgb) {
+        int r = rgb >>> 16;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        int delta = max - min;
+        if (delta == 0) {
+            return (-1 << 16) | max;
+        }
+        int sat = Math.min(255, (delta * 255 * RECIPROCAL[max]) >> 16);
+        int hue;
+        if (max == r) {
+            hue = (60 * (g - b) * RECIPROCAL[delta]) >> 16;
+        } else if (max == g) {
+            hue = 120 + ((60 * (b - r) * RECIPROCAL[delta]) >> 16);
+        } else {
+            hue = 240 + ((60 * (r - g) * RECIPROCAL[delta]) >> 16);
+        }
+        if (hue < 0) {
+            hue += 360;
+        }
+        return (hue << 16) | (sat << 8) | max;
+    }
+
+    private boolean deltaEMatches(int expectedRgb, int actualRgb) {
+        int er = expectedRgb >>> 16;
+        int eg = (expectedRgb >> 8) & 0xFF;
+        int eb = expectedRgb & 0xFF;
+        int ar = actualRgb >>> 16;
+        int ag = (actualRgb >> 8) & 0xFF;
+        int ab = actualRgb & 0xFF;
+        float expectedFx = labF(XR[er] + XG[eg] + XB[eb]);
+        float expectedFy = labF(YR[er] + YG[eg] + YB[eb]);
+        float expectedFz = labF(ZR[er] + ZG[eg] + ZB[eb]);
+        float actualFx = labF(XR[ar] + XG[ag] + XB[ab]);
+        float actualFy = labF(YR[ar] + YG[ag] + YB[ab]);
+        float actualFz = labF(ZR[ar] + ZG[ag] + ZB[ab]);
+        float dl = 116f * (expectedFy - actualFy);
+        float da = 500f * ((expectedFx - expectedFy) - (actualFx - actualFy));
+        float db = 200f * ((expectedFy - expectedFz) - (actualFy - actualFz));
+        return dl * dl + da * da + db * db <= squaredDeltaE;
+    }
+
+    /**
+     * L*a*b* companding curve, linearly interpolated from {@link #LAB_F}; {@code t} is in [0, ~1].
+     */
+    private static float labF(float t) {
+        float scaled = t * LAB_F_STEPS;
+        int index = (int) scaled;
+        if (index >= LAB_F_STEPS) {
+            return LAB_F[LAB_F_STEPS];
+        }
+        return LAB_F[index] + (LAB_F[index + 1] - LAB_F[index]) * (scaled - index);
+    }
+
+    private static void requireRange(int value, int min, int max, String name) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(name + " must be between " + min + " and " + max);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return switch (mode) {
+            case EXACT -> "EXACT";
+            case CHANNEL -> "CHANNEL " + channelDelta;
+            case EUCLIDEAN, DELTA_E -> mode + " " + (distance == Math.rint(distance) ? String.valueOf((long) distance) : String.valueOf(distance));
+            case HSV -> "HSV " + hueDegrees + " " + saturation + " " + value;
+        };
+    }
+}
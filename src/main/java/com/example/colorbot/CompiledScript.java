@@ -0,0 +1,24 @@
+package com.example.colorbot;
+
+import java.util.List;
+
+/**
+ * Result of compiling script text once; can be executed any number of times by {@link ColorScriptEngine}.
+ * {@code backoffSites} is the number of color checks that can back off after a miss and
+ * {@code imageSites} the number of FIND_IMAGE instructions;
+ * {@code variables} and {@code skills} hold the normalized names behind each frame index and
+ * {@code cooldowns} every IF_COOLDOWN in the script, for WAIT_COOLDOWN and NEXT_COOLDOWN;
+ * {@code rotations} are indexed by {@link ScriptInstruction.Rotation#rotationSite()}.
+ */
+public record CompiledScript(List<ScriptInstruction> instructions, int lineCount, int backoffSites, int imageSites,
+                             List<String> variables, List<String> skills,
+                             List<ScriptInstruction.IfCooldown> cooldowns,
+                             List<ScriptInstruction.Rotation> rotations) {
+    public CompiledScript {
+        instructions = List.copyOf(instructions);
+        rotations = List.copyOf(rotations);
+        cooldowns = List.copyOf(cooldowns);
+        variables = List.copyOf(variables);
+        skills = List.copyOf(skills);
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.colorbot;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-size table of named {@code long} values in a memory-mapped file, shared by every
+ * process that maps the same file. Names hash to slots with linear probing; a slot is claimed
+ * once with a CAS on its state word and never moves, and its value is read and written with
+ * volatile and CAS accesses, so processes see each other's updates immediately and no update
+ * is lost to a file rewrite. Other processes wait on a claim in progress rather than probing
+ * past it, so a name never gets two slots; a claim left by a dead process is taken over.
+ * <p>
+ * The header holds magic, version, slot count and a count of claimed names. Slot layout
+ * (128 bytes): state, value, name hash, name length, then up to {@value #NAME_BYTES} bytes of
+ * UTF-8 name.
+ */
+public final class CooldownTable {
+    public static final int DEFAULT_SLOTS = 1024;
+    static final int NAME_BYTES = 100;
+    private static final int MAGIC = 0x43424354; // "CBCT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int NAMES = 16;
+    private static final int SLOT_BYTES = 128;
+    private static final int STATE = 0;
+    private static final int VALUE = 8;
+    private static final int HASH = 16;
+    private static final int LENGTH = 24;
+    private static final int NAME = 28;
+    private static final long EMPTY = 0;
+    /**
+     * Low bits of a claim in progress; the state word also carries the claiming process id
+     * (bits 2-31) and the claim time in epoch seconds (bits 32-63).
+     */
+    private static final long CLAIMING = 1;
+    private static final long READY = 2;
+    /**
+     * How long to wait on a claim before checking whether its owner is still alive.
+     */
+    private static final long OWNER_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    /**
+     * Age after which a claim is abandoned even if its process id is in use, which covers a
+     * dead owner whose pid has been reused.
+     */
+    private static final long CLAIM_TIMEOUT_SECONDS = 30;
+    private static final long PID = ProcessHandle.current().pid();
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /**
+     * The table has no free slot left for a new name.
+     */
+    public static class TableFullException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        public TableFullException(int slots) {
+            super("Cooldown table is full (" + slots + " names)");
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int slots;
+    private final Path file;
+    /**
+     * Slots resolved by this process; a claimed slot keeps its name for the life of the file.
+     */
+    private final Map<String, Integer> resolved = new ConcurrentHashMap<>();
+
+    private CooldownTable(ByteBuffer buffer, int slots, Path file) {
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+        this.slots = slots;
+        this.file = file;
+    }
+
+    /**
+     * Maps {@code file}, creating it with {@code slots} slots if it does not exist yet. An existing
+     * table keeps the slot count it was created with.
+     */
+    public static CooldownTable open(Path file, int slots) throws IOException {
+        if (slots < 2 || Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("Slot count must be a power of two of at least 2");
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            int tableSlots;
+            // the lock only serializes creation; once mapped, all access is lock-free
+            FileLock lock = channel.lock();
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder());
+                if (channel.size() == 0) {
+                    header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, slots);
+                    channel.write(header, 0);
+                    // extending the file zero-fills it, which marks every slot empty
+                    channel.write(ByteBuffer.allocate(1), HEADER_BYTES + (long) slots * SLOT_BYTES - 1);
+                    channel.force(true);
+                    tableSlots = slots;
+                } else {
+                    channel.read(header, 0);
+                    if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                        throw new IOException("Not a cooldown table: " + file);
+                    }
+                    tableSlots = header.getInt(8);
+                    if (tableSlots < 2 || Integer.bitCount(tableSlots) != 1
+                            || channel.size() < HEADER_BYTES + (long) tableSlots * SLOT_BYTES) {
+                        throw new IOException("Corrupt cooldown table: " + file);
+                    }
+                }
+            } finally {
+                lock.release();
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) tableSlots * SLOT_BYTES);
+            return new CooldownTable(map, tableSlots, file);
+        }
+    }
+
+    /**
+     * A table private to this process, for when the shared file cannot be mapped.
+     */
+    public static CooldownTable inMemory(int slots) {
+        if (slots < 2 || Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("Slot count must be a power of two of at least 2");
+        }
+        // direct, so the same atomic accesses apply as for a mapped file
+        return new CooldownTable(ByteBuffer.allocateDirect(HEADER_BYTES + slots * SLOT_BYTES), slots, null);
+    }
+
+    /**
+     * The mapped file, or null for an in-memory table.
+     */
+    public Path file() {
+        return file;
+    }
+
+    public int slots() {
+        return slots;
+    }
+
+    /**
+     * Grows by one whenever any process adds a name, so a name found missing only needs to be
+     * looked up again once this changed.
+     */
+    public long names() {
+        return (long) LONGS.getVolatile(buffer, NAMES);
+    }
+
+    /**
+     * The value stored under {@code name}, or {@code missing} when there is none. Names are
+     * compared exactly; callers normalize case.
+     */
+    public long get(String name, long missing) {
+        int slot = find(name);
+        return slot < 0 ? missing : valueAt(slot);
+    }
+
+    public boolean contains(String name) {
+        return find(name) >= 0;
+    }
+
+    /**
+     * Slot holding {@code name}, or -1 when it has none. A slot never changes its name, so
+     * callers may keep it and use {@link #valueAt}/{@link #setAt} without hashing the name again.
+     */
+    public int slotOf(String name) {
+        return find(name);
+    }
+
+    public long valueAt(int slot) {
+        return (long) LONGS.getVolatile(buffer, offset(slot) + VALUE);
+    }
+
+    public void setAt(int slot, long value) {
+        LONGS.setVolatile(buffer, offset(slot) + VALUE, value);
+    }
+
+    public void put(String name, long value) {
+        setAt(find(name, true, value, null), value);
+    }
+
+    /**
+     * Stores {@code value} only if {@code name} has no value yet; returns whether it did.
+     */
+    public boolean putIfAbsent(String name, long value) {
+        boolean[] claimed = new boolean[1];
+        find(name, true, value, claimed);
+        return claimed[0];
+    }
+
+    /**
+     * Atomically replaces the value of {@code name} if it is still {@code expected}.
+     */
+    public boolean compareAndSet(String name, long expected, long value) {
+        int slot = find(name);
+        return slot >= 0 && LONGS.compareAndSet(buffer, offset(slot) + VALUE, expected, value);
+    }
+
+    /**
+     * Every name and value currently in the table, in slot order.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> entries = new LinkedHashMap<>();
+        for (int slot = 0; slot < slots; slot++) {
+            int base = offset(slot);
+            if ((long) LONGS.getVolatile(buffer, base + STATE) == READY) {
+                entries.put(readName(base), (long) LONGS.getVolatile(buffer, base + VALUE));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Asks the OS to write the mapped pages to disk; other processes see updates without it.
+     */
+    public void force() {
+        if (buffer instanceof MappedByteBuffer map) {
+            map.force();
+        }
+    }
+
+    private int find(String name) {
+        return find(name, false, 0, null);
+    }
+
+    /**
+     * Slot holding {@code name}, or -1. With {@code create} an empty slot is claimed and given
+     * {@code initial}; {@code claimed[0]} is set when this call did the claiming.
+     */
+    private int find(String name, boolean create, long initial, boolean[] claimed) {
+        Integer known = resolved.get(name);
+        if (known != null) {
+            return known;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > NAME_BYTES) {
+            if (!create) {
+                // no slot can hold it
+                return -1;
+            }
+            throw new IllegalArgumentException("Cooldown name longer than " + NAME_BYTES + " bytes: " + name);
+        }
+        long hash = hash(bytes);
+        int mask = slots - 1;
+        int start = (int) (hash ^ (hash >>> 32)) & mask;
+        for (int probe = 0; probe < slots; probe++) {
+            int slot = (start + probe) & mask;
+            int base = offset(slot);
+            long state = awaitClaim(base);
+            if (state == EMPTY && !create) {
+                return -1;
+            }
+            if (create && (state == EMPTY || isClaim(state))) {
+                // an empty slot, or one whose claimer died: take it over with a new claim
+                long claim = claim();
+                if (!LONGS.compareAndSet(buffer, base + STATE, state, claim)) {
+                    // lost the race for this slot; look at it again
+                    probe--;
+                    continue;
+                }
+                LONGS.set(buffer, base + VALUE, initial);
+                LONGS.set(buffer, base + HASH, hash);
+                buffer.putInt(base + LENGTH, bytes.length);
+                buffer.put(base + NAME, bytes);
+                if (!LONGS.compareAndSet(buffer, base + STATE, claim, READY)) {
+                    // stalled long enough for another process to take the slot over; start again
+                    probe = -1;
+                    continue;
+                }
+                LONGS.getAndAdd(buffer, NAMES, 1L);
+                if (claimed != null) {
+                    claimed[0] = true;
+                }
+                resolved.put(name, slot);
+                return slot;
+            }
+            if (state == READY && matches(base, hash, bytes)) {
+                resolved.put(name, slot);
+                return slot;
+            }
+        }
+        if (create) {
+            throw new TableFullException(slots);
+        }
+        return -1;
+    }
+
+    /**
+     * The slot state once no claim is in progress, or the claim itself once its owner is gone.
+     */
+    private long awaitClaim(int base) {
+        long state = (long) LONGS.getVolatile(buffer, base + STATE);
+        long checkAt = System.nanoTime() + OWNER_CHECK_NANOS;
+        while (isClaim(state)) {
+            if (System.nanoTime() - checkAt >= 0) {
+                if (abandoned(state)) {
+                    return state;
+                }
+                checkAt = System.nanoTime() + OWNER_CHECK_NANOS;
+            }
+            Thread.onSpinWait();
+            state = (long) LONGS.getVolatile(buffer, base + STATE);
+        }
+        return state;
+    }
+
+    private static long claim() {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        return seconds << 32 | (PID & 0x3FFF_FFFFL) << 2 | CLAIMING;
+    }
+
+    private static boolean isClaim(long state) {
+        return (state & 3) == CLAIMING;
+    }
+
+    private static boolean abandoned(long claim) {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        if ((int) (seconds - (claim >>> 32)) > CLAIM_TIMEOUT_SECONDS) {
+            return true;
+        }
+        long owner = (claim >>> 2) & 0x3FFF_FFFFL;
+        return !ProcessHandle.of(owner).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    private boolean matches(int base, long hash, byte[] bytes) {
+        if ((long) LONGS.get(buffer, base + HASH) != hash || buffer.getInt(base + LENGTH) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(base + NAME + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readName(int base) {
+        byte[] bytes = new byte[buffer.getInt(base + LENGTH)];
+        buffer.get(base + NAME, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * 64-bit FNV-1a; never 0.
+     */
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,444 @@
+package com.example.colorbot;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Structured log shared by the script engine, monitor and UI. Writers store a precompiled
+ * {@link Message} and its arguments in a preallocated ring; text is only built when a
+ * {@link Reader} drains the event for display. Events below the {@link #setLevel level} are
+ * dropped before touching the ring, so muted hot-loop chatter costs one volatile read.
+ * <p>
+ * Writing takes no lock. When the ring is full the oldest events are overwritten; readers that
+ * fall behind skip them and count them as {@link Reader#lost() lost}.
+ */
+public final class EventLog {
+    public static final int DEFAULT_CAPACITY = 4096;
+    static final int MAX_ARGS = 6;
+    /**
+     * Marks a numeric argument slot; the value is in the long array.
+     */
+    private static final Object NUMBER = new Object();
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    public enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR
+    }
+
+    /**
+     * A log pattern with {@code {}} placeholders, split once so events only store arguments.
+     */
+    public static final class Message {
+        private final String[] parts;
+
+        private Message(String[] parts) {
+            this.parts = parts;
+        }
+
+        public static Message of(String pattern) {
+            List<String> parts = new ArrayList<>();
+            int from = 0;
+            for (int at = pattern.indexOf("{}"); at >= 0; at = pattern.indexOf("{}", from)) {
+                parts.add(pattern.substring(from, at));
+                from = at + 2;
+            }
+            parts.add(pattern.substring(from));
+            if (parts.size() - 1 > MAX_ARGS) {
+                throw new IllegalArgumentException("At most " + MAX_ARGS + " placeholders are supported: " + pattern);
+            }
+            return new Message(parts.toArray(new String[0]));
+        }
+    }
+
+    private static final Message TEXT = Message.of("{}");
+
+    /**
+     * A formatted event as handed to readers.
+     */
+    public record Event(long sequence, long timeMillis, Level level, String text) {
+    }
+
+    private final int mask;
+    /**
+     * Per slot: the position stored there once published, {@code ~position} while it is written,
+     * or {@link #EMPTY}.
+     */
+    private final AtomicLongArray sequences;
+    private final long[] times;
+    private final Level[] levels;
+    private final Message[] messages;
+    private final Object[] refs;
+    private final long[] numbers;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile Level level = Level.INFO;
+
+    public EventLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EventLog(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two of at least 2");
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, EMPTY);
+        }
+        this.times = new long[capacity];
+        this.levels = new Level[capacity];
+        this.messages = new Message[capacity];
+        this.refs = new Object[capacity * MAX_ARGS];
+        this.numbers = new long[capacity * MAX_ARGS];
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Lowest level stored; lower events are discarded by the writer.
+     */
+    public void setLevel(Level level) {
+        this.level = Objects.requireNonNull(level, "level");
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= this.level.ordinal();
+    }
+
+    public void debug(String text) {
+        log(Level.DEBUG, TEXT, text);
+    }
+
+    public void info(String text) {
+        log(Level.INFO, TEXT, text);
+    }
+
+    public void warn(String text) {
+        log(Level.WARN, TEXT, text);
+    }
+
+    public void error(String text) {
+        log(Level.ERROR, TEXT, text);
+    }
+
+    public void log(Level level, Message message) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, Object a) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                ref(base, 0, a);
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, long a) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                number(base, 0, a);
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, Object a, Object b) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                ref(base, 0, a);
+                ref(base, 1, b);
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, Object a, long b) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                ref(base, 0, a);
+                number(base, 1, b);
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, long a, long b) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                number(base, 0, a);
+                number(base, 1, b);
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, long a, long b, long c) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                number(base, 0, a);
+                number(base, 1, b);
+                number(base, 2, c);
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, Object a, long b, long c) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                ref(base, 0, a);
+                number(base, 1, b);
+                number(base, 2, c);
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, long a, long b, long c, long d) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                number(base, 0, a);
+                number(base, 1, b);
+                number(base, 2, c);
+                number(base, 3, d);
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, Object a, long b, long c, long d, long e) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                ref(base, 0, a);
+                number(base, 1, b);
+                number(base, 2, c);
+                number(base, 3, d);
+                number(base, 4, e);
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, Object a, long b, long c, long d) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                ref(base, 0, a);
+                number(base, 1, b);
+                number(base, 2, c);
+                number(base, 3, d);
+                publish(position);
+            }
+        }
+    }
+
+    public void log(Level level, Message message, Object a, Object b, long c, long d, long e) {
+        if (isEnabled(level)) {
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                ref(base, 0, a);
+                ref(base, 1, b);
+                number(base, 2, c);
+                number(base, 3, d);
+                number(base, 4, e);
+                publish(position);
+            }
+        }
+    }
+
+    /**
+     * Any other argument mix; numbers are boxed, so keep this off hot paths.
+     */
+    public void log(Level level, Message message, Object... args) {
+        if (isEnabled(level)) {
+            if (args.length > MAX_ARGS) {
+                throw new IllegalArgumentException("At most " + MAX_ARGS + " arguments are supported");
+            }
+            long position = claim(level, message);
+            if (position >= 0) {
+                int base = base(position);
+                for (int i = 0; i < args.length; i++) {
+                    ref(base, i, args[i]);
+                }
+                publish(position);
+            }
+        }
+    }
+
+    /**
+     * Takes the next position and marks its slot as being written until {@link #publish(long)}.
+     * Returns -1 when a writer a full ring ahead already took the slot, which drops this event.
+     */
+    private long claim(Level level, Message message) {
+        long position = tail.getAndIncrement();
+        int slot = (int) (position & mask);
+        while (true) {
+            long current = sequences.get(slot);
+            if (current != EMPTY && (current < 0 ? ~current : current) > position) {
+                return -1;
+            }
+            if (sequences.compareAndSet(slot, current, ~position)) {
+                break;
+            }
+        }
+        times[slot] = System.currentTimeMillis();
+        levels[slot] = level;
+        messages[slot] = message;
+        return position;
+    }
+
+    private int base(long position) {
+        return (int) (position & mask) * MAX_ARGS;
+    }
+
+    private void ref(int base, int index, Object value) {
+        refs[base + index] = value;
+    }
+
+    private void number(int base, int index, long value) {
+        refs[base + index] = NUMBER;
+        numbers[base + index] = value;
+    }
+
+    private void publish(long position) {
+        // fails only if we were lapped mid-write; the newer writer then owns the slot
+        sequences.compareAndSet((int) (position & mask), ~position, position);
+    }
+
+    /**
+     * Starts reading at the oldest event still in the ring.
+     */
+    public Reader reader() {
+        return new Reader(Math.max(0, tail.get() - capacity()));
+    }
+
+    /**
+     * Starts reading with the next event written.
+     */
+    public Reader tailReader() {
+        return new Reader(tail.get());
+    }
+
+    /**
+     * An independent cursor over the ring; one thread per reader.
+     */
+    public final class Reader {
+        private long next;
+        private long lost;
+
+        private Reader(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Events overwritten before this reader got to them.
+         */
+        public long lost() {
+            return lost;
+        }
+
+        /**
+         * Formats up to {@code max} published events at or above {@code minimum} into {@code out};
+         * returns how many positions were consumed, including skipped and filtered ones.
+         */
+        public int drain(List<Event> out, Level minimum, int max) {
+            int consumed = 0;
+            StringBuilder text = new StringBuilder();
+            while (consumed < max) {
+                long position = next;
+                int slot = (int) (position & mask);
+                long sequence = sequences.get(slot);
+                if (sequence != position) {
+                    long stored = sequence == EMPTY ? -1 : sequence < 0 ? ~sequence : sequence;
+                    if (stored <= position) {
+                        // not published yet; a stalled writer also holds back later events
+                        break;
+                    }
+                    lost += lapped(position);
+                    continue;
+                }
+                Level eventLevel = levels[slot];
+                long time = times[slot];
+                text.setLength(0);
+                if (eventLevel.ordinal() >= minimum.ordinal()) {
+                    format(slot, text);
+                }
+                VarHandle.loadLoadFence();
+                if (sequences.get(slot) != position) {
+                    // overwritten while we were reading it
+                    lost += lapped(position);
+                    continue;
+                }
+                next++;
+                consumed++;
+                if (eventLevel.ordinal() >= minimum.ordinal()) {
+                    out.add(new Event(position, time, eventLevel, text.toString()));
+                }
+            }
+            return consumed;
+        }
+
+        /**
+         * Moves past events that were overwritten; returns how many were skipped.
+         */
+        private long lapped(long position) {
+            long oldest = Math.max(position + 1, tail.get() - capacity());
+            next = oldest;
+            return oldest - position;
+        }
+    }
+
+    private void format(int slot, StringBuilder out) {
+        String[] parts = messages[slot].parts;
+        int base = slot * MAX_ARGS;
+        out.append(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            Object ref = refs[base + i - 1];
+            if (ref == NUMBER) {
+                out.append(numbers[base + i - 1]);
+            } else {
+                out.append(ref);
+            }
+            out.append(parts[i]);
+        }
+    }
+}
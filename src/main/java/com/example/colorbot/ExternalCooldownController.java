@@ -3,76 +3,448 @@ package com.example.colorbot;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
- * Simple externalized cooldown store backed by a properties file so other tools
- * (or multiple bot instances) can coordinate timestamps.
+ * Externalized cooldown store so other tools (or multiple bot instances) can coordinate
+ * timestamps. Live values are kept in a {@link CooldownTable} mapped from
+ * {@code <name>.table} next to the properties file, so bot instances on the same machine read
+ * and update one shared table instead of overwriting each other's files.
+ * <p>
+ * The properties file is the interchange copy for other tools: it seeds names missing from the
+ * table at startup and is rewritten from the whole table by a background thread at most once
+ * per flush interval, so a burst of {@code SET}s costs one rewrite. Each write goes to a
+ * temporary file that is renamed over the old one. {@link #close()} writes anything still pending.
+ * <p>
+ * Changes other tools make to the properties file are picked up by a {@link WatchService}
+ * thread: bursts of change events are debounced into one reload on the background thread, and
+ * only entries that differ from the last known file contents are applied. A changed entry
+ * replaces a shared value only if the table still holds what it held when the file was last
+ * read or written; otherwise the file is another instance's older snapshot and is rewritten.
+ * A name kept private takes the file's value unless this instance set it after the file was
+ * modified (last writer wins, judged by the file's modification time).
+ * <p>
+ * Names the table cannot take, because it is full or the name is longer than
+ * {@link CooldownTable#NAME_BYTES} bytes, are kept in a map private to this instance and still
+ * written to the properties file. Such names and skipped file entries are reported to the
+ * error consumer.
  */
-public class ExternalCooldownController {
+public class ExternalCooldownController implements AutoCloseable {
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 250;
+    public static final long RELOAD_DEBOUNCE_MS = 100;
+
     private final Path directory;
     private final Path file;
-    private final Map<String, Long> cache = new ConcurrentHashMap<>();
+    private final long flushIntervalMs;
+    private final CooldownTable table;
+    /**
+     * Values the table could not take; not shared with other instances except through the file.
+     */
+    private final Map<String, Long> privateValues = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+    /**
+     * Values as last read from or written to the file; only touched under the instance lock.
+     */
+    private final Map<String, Long> fileValues = new HashMap<>();
+    /**
+     * Shared table values as of the last file read or write; a file entry is only applied when
+     * the table still holds this value, so a file flushed by another instance never rolls back
+     * newer table values. Only touched under the instance lock.
+     */
+    private final Map<String, Long> tableValues = new HashMap<>();
+    /**
+     * Wall-clock time of this instance's last update per name, for last-writer-wins merging of
+     * names kept private.
+     */
+    private final Map<String, Long> localWrites = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+    private final WatchService watcher;
+    private final Consumer<String> errorConsumer;
+    private volatile boolean closed;
 
     public ExternalCooldownController() {
-        this(Path.of("cooldowns"), "cooldowns.properties");
+        this(System.err::println);
+    }
+
+    public ExternalCooldownController(Consumer<String> errorConsumer) {
+        this(Path.of("cooldowns"), "cooldowns.properties", DEFAULT_FLUSH_INTERVAL_MS, errorConsumer);
     }
 
     public ExternalCooldownController(Path directory, String filename) {
+        this(directory, filename, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public ExternalCooldownController(Path directory, String filename, long flushIntervalMs) {
+        this(directory, filename, flushIntervalMs, System.err::println);
+    }
+
+    public ExternalCooldownController(Path directory, String filename, long flushIntervalMs,
+                                      Consumer<String> errorConsumer) {
+        if (flushIntervalMs <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
         this.directory = directory;
         this.file = directory.resolve(filename);
+        this.flushIntervalMs = flushIntervalMs;
+        this.errorConsumer = Objects.requireNonNull(errorConsumer, "errorConsumer");
+        this.table = openTable(directory.resolve(tableName(filename)));
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cooldown-writer");
+            t.setDaemon(true);
+            return t;
+        });
         load();
+        this.watcher = startWatcher();
+    }
+
+    private static String tableName(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return (dot > 0 ? filename.substring(0, dot) : filename) + ".table";
+    }
+
+    private static CooldownTable openTable(Path tableFile) {
+        try {
+            return CooldownTable.open(tableFile, CooldownTable.DEFAULT_SLOTS);
+        } catch (IOException | RuntimeException ignored) {
+            // best effort: keep working with values private to this instance
+            return CooldownTable.inMemory(CooldownTable.DEFAULT_SLOTS);
+        }
+    }
+
+    /**
+     * The shared table file, or null when it could not be mapped.
+     */
+    public Path tableFile() {
+        return table.file();
     }
 
     public Optional<Long> get(String name) {
-        return Optional.ofNullable(cache.get(normalize(name)));
+        String key = normalize(name);
+        if (table.contains(key)) {
+            return Optional.of(table.get(key, 0));
+        }
+        return Optional.ofNullable(privateValues.get(key));
     }
 
     public void put(String name, long value) {
-        cache.put(normalize(name), value);
-        persist();
+        String key = normalize(name);
+        store(key, value);
+        written(key);
+    }
+
+    /**
+     * Shared table slot of {@code name}, or -1 when the name is not in the table (missing, or
+     * kept private to this instance). Lets callers read and write a name repeatedly without
+     * looking it up each time; the value in a slot also changes when other tools or instances
+     * update the name.
+     */
+    public int slot(String name) {
+        return table.slotOf(normalize(name));
+    }
+
+    public long valueAt(int slot) {
+        return table.valueAt(slot);
+    }
+
+    /**
+     * Changes whenever a name is added to the store, by this or another instance.
+     */
+    public long namesVersion() {
+        return table.names() + privateValues.size();
+    }
+
+    /**
+     * Like {@link #put} for a name already resolved with {@link #slot}.
+     */
+    public void putAt(int slot, String name, long value) {
+        table.setAt(slot, value);
+        written(normalize(name));
+    }
+
+    private void written(String key) {
+        localWrites.put(key, System.currentTimeMillis());
+        dirty.set(true);
+        scheduleFlush();
     }
 
     private String normalize(String name) {
         return name.toLowerCase(Locale.ROOT);
     }
 
-    private void load() {
-        if (!Files.exists(file)) {
+    private void store(String key, long value) {
+        if (privateValues.containsKey(key)) {
+            privateValues.put(key, value);
             return;
         }
+        try {
+            table.put(key, value);
+        } catch (CooldownTable.TableFullException | IllegalArgumentException e) {
+            keepPrivate(key, value, e);
+        }
+    }
+
+    private void storeIfAbsent(String key, long value) {
+        if (privateValues.containsKey(key)) {
+            return;
+        }
+        try {
+            table.putIfAbsent(key, value);
+        } catch (CooldownTable.TableFullException | IllegalArgumentException e) {
+            keepPrivate(key, value, e);
+        }
+    }
+
+    private void keepPrivate(String key, long value, RuntimeException reason) {
+        if (privateValues.put(key, value) == null) {
+            errorConsumer.accept("Cooldown " + key + " is not shared with other instances: " + reason.getMessage());
+        }
+    }
+
+    private void scheduleFlush() {
+        if (closed) {
+            flush();
+            return;
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                }, flushIntervalMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // closed concurrently
+                flushScheduled.set(false);
+                flush();
+            }
+        }
+    }
+
+    private synchronized void load() {
+        try {
+            Map<String, Long> values = readFile();
+            for (Map.Entry<String, Long> entry : values.entrySet()) {
+                try {
+                    // values already in the shared table are newer than the file
+                    storeIfAbsent(entry.getKey(), entry.getValue());
+                } catch (RuntimeException e) {
+                    errorConsumer.accept("Skipping cooldown " + entry.getKey() + ": " + e.getMessage());
+                }
+            }
+            fileValues.putAll(values);
+            tableValues.putAll(table.snapshot());
+        } catch (IOException ignored) {
+            // best effort
+        }
+    }
+
+    private Map<String, Long> readFile() throws IOException {
+        Map<String, Long> values = new HashMap<>();
+        if (!Files.exists(file)) {
+            return values;
+        }
         Properties props = new Properties();
         try (InputStream in = Files.newInputStream(file)) {
             props.load(in);
-            for (String key : props.stringPropertyNames()) {
+        }
+        for (String key : props.stringPropertyNames()) {
+            try {
+                values.put(normalize(key), Long.parseLong(props.getProperty(key).trim()));
+            } catch (NumberFormatException ignored) {
+                // skip malformed entry
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Watches the directory for changes to the file; null when the platform cannot watch it.
+     */
+    private WatchService startWatcher() {
+        WatchService service;
+        try {
+            Files.createDirectories(directory);
+            service = directory.getFileSystem().newWatchService();
+            // the atomic rename used by writers shows up as a create
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // best effort: external changes are then only seen on restart
+            return null;
+        }
+        Path name = file.getFileName();
+        Thread thread = new Thread(() -> {
+            while (true) {
+                WatchKey key;
                 try {
-                    cache.put(normalize(key), Long.parseLong(props.getProperty(key)));
-                } catch (NumberFormatException ignored) {
-                    // skip malformed entry
+                    key = service.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context())) {
+                        scheduleReload();
+                    }
+                }
+                if (!key.reset()) {
+                    return;
                 }
             }
+        }, "cooldown-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return service;
+    }
+
+    private void scheduleReload() {
+        if (closed || !reloadScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.schedule(() -> {
+                reloadScheduled.set(false);
+                reload();
+            }, RELOAD_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed concurrently
+            reloadScheduled.set(false);
+        }
+    }
+
+    /**
+     * Applies the entries that changed in the file since it was last read or written.
+     */
+    public synchronized void reload() {
+        Map<String, Long> values;
+        long modified;
+        try {
+            if (!Files.exists(file)) {
+                return;
+            }
+            modified = Files.getLastModifiedTime(file).toMillis();
+            values = readFile();
         } catch (IOException ignored) {
-            // best effort
+            // best effort; a writer without atomic rename may be mid-write, its next event retries
+            return;
+        }
+        boolean stale = false;
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            String key = entry.getKey();
+            long value = entry.getValue();
+            if (Objects.equals(fileValues.get(key), value)) {
+                continue;
+            }
+            try {
+                if (privateValues.containsKey(key)) {
+                    Long localWrite = localWrites.get(key);
+                    if (localWrite != null && modified < localWrite) {
+                        stale = true;
+                    } else {
+                        privateValues.put(key, value);
+                    }
+                } else if (table.contains(key)) {
+                    // only an edit by another tool finds the table where we last saw it; any
+                    // other difference is a bot instance's older snapshot of the table
+                    Long expected = tableValues.get(key);
+                    if (table.get(key, value) != value
+                            && (expected == null || !table.compareAndSet(key, expected, value))) {
+                        stale = true;
+                    }
+                } else {
+                    storeIfAbsent(key, value);
+                }
+            } catch (RuntimeException e) {
+                // one bad entry must not block the rest, nor every later reload
+                errorConsumer.accept("Skipping cooldown " + key + ": " + e.getMessage());
+            }
+        }
+        // recorded even when entries were skipped, so the next event only sees new changes
+        fileValues.clear();
+        fileValues.putAll(values);
+        tableValues.clear();
+        tableValues.putAll(table.snapshot());
+        if (stale) {
+            // write the newer values back over the stale ones
+            dirty.set(true);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Writes the current values now if anything changed since the last write.
+     */
+    public synchronized void flush() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            table.force();
+            persist();
+        } catch (IOException | UncheckedIOException ignored) {
+            // best effort; retried with the next update
+            dirty.set(true);
         }
     }
 
-    private void persist() {
+    private void persist() throws IOException {
+        Files.createDirectories(directory);
+        Map<String, Long> values = table.snapshot();
+        privateValues.forEach(values::putIfAbsent);
+        Properties props = new Properties();
+        values.forEach((k, v) -> props.setProperty(k, Long.toString(v)));
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
         try {
-            Files.createDirectories(directory);
-            Properties props = new Properties();
-            cache.forEach((k, v) -> props.setProperty(k, Long.toString(v)));
-            try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            try (OutputStream out = Files.newOutputStream(temp)) {
                 props.store(out, "Cooldown timestamps (ms since epoch)");
             }
-        } catch (IOException ignored) {
-            // best effort
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // our own write then shows no changed entries when the watcher reloads it
+            fileValues.clear();
+            fileValues.putAll(values);
+            tableValues.clear();
+            tableValues.putAll(values);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Stops watching and the background writer and writes pending updates; later updates are
+     * written immediately.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException ignored) {
+                // the watcher thread exits either way once the service is closed
+            }
         }
+        executor.shutdownNow();
+        flush();
     }
 }
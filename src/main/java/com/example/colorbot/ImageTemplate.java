@@ -0,0 +1,193 @@
+package com.example.colorbot;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small bitmap searched for by {@link TemplateMatcher}, pre-digested once: packed colors of the
+ * pixels that take part in matching (pixels with alpha below 128 are ignored, so sprites can be
+ * masked), a few rare-color anchor pixels checked before the full comparison, and the grey
+ * levels used by normalized cross-correlation, for all pixels and for a sparse prefilter subset.
+ */
+public final class ImageTemplate {
+    /**
+     * Anchors tried at every candidate position before the full comparison.
+     */
+    static final int MAX_ANCHORS = 6;
+    /**
+     * Pixels correlated by the NCC prefilter; templates with fewer active pixels skip the prefilter.
+     */
+    static final int COARSE_SAMPLES = 32;
+
+    private final String name;
+    private final int width;
+    private final int height;
+    private final BufferedImage image;
+    private final int[] activeX;
+    private final int[] activeY;
+    private final int[] activeRgb;
+    private final int[] anchors;
+    private final GreyProfile grey;
+    private final GreyProfile coarseGrey;
+
+    /**
+     * Grey levels of some active pixels ({@code indexes}) with the sums NCC needs;
+     * {@code norm} is {@code sqrt(n * sum(t^2) - sum(t)^2)}.
+     */
+    record GreyProfile(int[] indexes, int[] grey, long sum, double norm) {
+        static GreyProfile of(int[] indexes, int[] activeRgb) {
+            int[] grey = new int[indexes.length];
+            long sum = 0;
+            long squares = 0;
+            for (int i = 0; i < indexes.length; i++) {
+                grey[i] = ImageTemplate.grey(activeRgb[indexes[i]]);
+                sum += grey[i];
+                squares += (long) grey[i] * grey[i];
+            }
+            return new GreyProfile(indexes, grey, sum, Math.sqrt((double) grey.length * squares - (double) sum * sum));
+        }
+    }
+
+    private ImageTemplate(String name, BufferedImage image) {
+        this.name = name;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.image = image;
+        List<int[]> active = new ArrayList<>();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int argb = image.getRGB(x, y);
+                if ((argb >>> 24) >= 128) {
+                    active.add(new int[] {x, y, argb & 0xFFFFFF});
+                }
+            }
+        }
+        if (active.isEmpty()) {
+            throw new IllegalArgumentException("Template " + name + " has no opaque pixels");
+        }
+        int count = active.size();
+        this.activeX = new int[count];
+        this.activeY = new int[count];
+        this.activeRgb = new int[count];
+        for (int i = 0; i < count; i++) {
+            int[] pixel = active.get(i);
+            activeX[i] = pixel[0];
+            activeY[i] = pixel[1];
+            activeRgb[i] = pixel[2];
+        }
+        this.anchors = pickAnchors();
+        int[] all = new int[count];
+        for (int i = 0; i < count; i++) {
+            all[i] = i;
+        }
+        this.grey = GreyProfile.of(all, activeRgb);
+        if (count >= COARSE_SAMPLES * 2) {
+            int[] sparse = new int[COARSE_SAMPLES];
+            for (int i = 0; i < sparse.length; i++) {
+                sparse[i] = (int) ((long) i * count / sparse.length);
+            }
+            this.coarseGrey = GreyProfile.of(sparse, activeRgb);
+        } else {
+            this.coarseGrey = null;
+        }
+    }
+
+    public static ImageTemplate of(String name, BufferedImage image) {
+        if (image.getWidth() < 1 || image.getHeight() < 1) {
+            throw new IllegalArgumentException("Template " + name + " is empty");
+        }
+        return new ImageTemplate(name, image);
+    }
+
+    /**
+     * Least frequent template colors first, spread out so a shifted window fails on an early anchor.
+     */
+    private int[] pickAnchors() {
+        Map<Integer, Integer> histogram = new HashMap<>();
+        for (int rgb : activeRgb) {
+            histogram.merge(rgb, 1, Integer::sum);
+        }
+        Integer[] order = new Integer[activeRgb.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(histogram.get(activeRgb[a]), histogram.get(activeRgb[b])));
+        int minDistance = Math.max(1, Math.min(width, height) / 4);
+        List<Integer> picked = new ArrayList<>();
+        for (int candidate : order) {
+            if (picked.size() == MAX_ANCHORS) {
+                break;
+            }
+            boolean spread = true;
+            for (int chosen : picked) {
+                if (Math.abs(activeX[chosen] - activeX[candidate]) < minDistance
+                        && Math.abs(activeY[chosen] - activeY[candidate]) < minDistance) {
+                    spread = false;
+                    break;
+                }
+            }
+            if (spread) {
+                picked.add(candidate);
+            }
+        }
+        return picked.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static int grey(int rgb) {
+        return (((rgb >>> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public BufferedImage image() {
+        return image;
+    }
+
+    int activeCount() {
+        return activeRgb.length;
+    }
+
+    int activeX(int i) {
+        return activeX[i];
+    }
+
+    int activeY(int i) {
+        return activeY[i];
+    }
+
+    int[] activeRgb() {
+        return activeRgb;
+    }
+
+    /**
+     * Indexes into the active pixels, rarest color first.
+     */
+    int[] anchors() {
+        return anchors;
+    }
+
+    GreyProfile grey() {
+        return grey;
+    }
+
+    /**
+     * Evenly spaced subset for the NCC prefilter, or {@code null} for small templates.
+     */
+    GreyProfile coarseGrey() {
+        return coarseGrey;
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.colorbot;
+
+import java.awt.Robot;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends keyboard and mouse output from one dedicated thread so monitor, script and UI threads
+ * never block on {@link Robot}. Callers submit {@link Batch batches}; every event is timestamped
+ * on submission and delivered in submission order, and the events of one batch stay contiguous
+ * even with several submitting threads.
+ * <p>
+ * The queue is a bounded multi-producer ring (a per-slot sequence number says whether a slot is
+ * free or published), so submitting takes no lock. When the ring is full, submitters wait for
+ * space rather than dropping input. {@link #flush()} blocks until everything submitted before it
+ * has been delivered.
+ */
+public final class InputDispatcher implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int KEY_PRESS = 0;
+    private static final int KEY_RELEASE = 1;
+    private static final int MOUSE_MOVE = 2;
+    private static final int MOUSE_PRESS = 3;
+    private static final int MOUSE_RELEASE = 4;
+    private static final long FULL_WAIT_NANOS = 50_000L;
+    private static final long FLUSH_WAIT_NANOS = 100_000L;
+
+    /**
+     * Where events end up; {@link #of(Robot)} for the desktop, test doubles otherwise.
+     */
+    public interface Sink {
+        void keyPress(int keyCode);
+
+        void keyRelease(int keyCode);
+
+        void mouseMove(int x, int y);
+
+        void mousePress(int buttons);
+
+        void mouseRelease(int buttons);
+
+        void delay(int ms);
+
+        /**
+         * Waits until the events sent so far have been processed by the system.
+         */
+        void sync();
+
+        static Sink of(Robot robot) {
+            Objects.requireNonNull(robot, "robot");
+            return new Sink() {
+                @Override
+                public void keyPress(int keyCode) {
+                    robot.keyPress(keyCode);
+                }
+
+                @Override
+                public void keyRelease(int keyCode) {
+                    robot.keyRelease(keyCode);
+                }
+
+                @Override
+                public void mouseMove(int x, int y) {
+                    robot.mouseMove(x, y);
+                }
+
+                @Override
+                public void mousePress(int buttons) {
+                    robot.mousePress(buttons);
+                }
+
+                @Override
+                public void mouseRelease(int buttons) {
+                    robot.mouseRelease(buttons);
+                }
+
+                @Override
+                public void delay(int ms) {
+                    robot.delay(ms);
+                }
+
+                @Override
+                public void sync() {
+                    robot.waitForIdle();
+                }
+            };
+        }
+    }
+
+    /**
+     * Delivery totals; latency is from submission to the event being handed to the sink, and
+     * {@code fullWaits} counts submissions that had to wait for space.
+     */
+    public record Stats(long delivered, long failed, long fullWaits, long meanLatencyMicros, long maxLatencyMicros) {
+    }
+
+    private final Sink sink;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final int[] kinds;
+    private final int[] firstArgs;
+    private final int[] secondArgs;
+    private final int[] gapsMs;
+    private final boolean[] batchEnds;
+    private final long[] submittedAt;
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Position after the last event delivered at a batch boundary; what {@link #flush()} waits for.
+     */
+    private final AtomicLong completed = new AtomicLong();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder fullWaits = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicReference<RuntimeException> pendingFailure = new AtomicReference<>();
+    private final Thread thread;
+    private volatile boolean consumerParked;
+    private volatile boolean syncBatches = true;
+    private volatile boolean closed;
+
+    public InputDispatcher(Sink sink) {
+        this(sink, DEFAULT_CAPACITY);
+    }
+
+    public InputDispatcher(Sink sink, int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two of at least 2");
+        }
+        this.sink = Objects.requireNonNull(sink, "sink");
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.kinds = new int[capacity];
+        this.firstArgs = new int[capacity];
+        this.secondArgs = new int[capacity];
+        this.gapsMs = new int[capacity];
+        this.batchEnds = new boolean[capacity];
+        this.submittedAt = new long[capacity];
+        this.thread = new Thread(this::dispatchLoop, "input-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Whether the dispatcher waits for the system to process each batch before starting the next.
+     */
+    public void setSyncBatches(boolean syncBatches) {
+        this.syncBatches = syncBatches;
+    }
+
+    public Batch batch(int gapMs) {
+        return new Batch(gapMs);
+    }
+
+    /**
+     * Events collected by one caller and submitted together; {@code gapMs} is slept between them.
+     */
+    public final class Batch {
+        private final int gapMs;
+        private int[] kinds = new int[8];
+        private int[] firstArgs = new int[8];
+        private int[] secondArgs = new int[8];
+        private int size;
+
+        private Batch(int gapMs) {
+            this.gapMs = gapMs;
+        }
+
+        public Batch keyPress(int keyCode) {
+            return add(KEY_PRESS, keyCode, 0);
+        }
+
+        public Batch keyRelease(int keyCode) {
+            return add(KEY_RELEASE, keyCode, 0);
+        }
+
+        public Batch mouseMove(int x, int y) {
+            return add(MOUSE_MOVE, x, y);
+        }
+
+        public Batch mousePress(int buttons) {
+            return add(MOUSE_PRESS, buttons, 0);
+        }
+
+        public Batch mouseRelease(int buttons) {
+            return add(MOUSE_RELEASE, buttons, 0);
+        }
+
+        private Batch add(int kind, int first, int second) {
+            if (size == kinds.length) {
+                kinds = Arrays.copyOf(kinds, size * 2);
+                firstArgs = Arrays.copyOf(firstArgs, size * 2);
+                secondArgs = Arrays.copyOf(secondArgs, size * 2);
+            }
+            kinds[size] = kind;
+            firstArgs[size] = first;
+            secondArgs[size] = second;
+            size++;
+            return this;
+        }
+
+        /**
+         * Queues the events, waiting for space if the ring is full. Returns false, with the
+         * interrupt flag set, when interrupted before everything was queued.
+         */
+        public boolean submit() {
+            int chunk = mask + 1;
+            for (int from = 0; from < size; from += chunk) {
+                if (!publish(this, from, Math.min(size, from + chunk))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private boolean publish(Batch batch, int from, int to) {
+        int count = to - from;
+        long start;
+        boolean waited = false;
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("Input dispatcher is closed");
+            }
+            start = tail.get();
+            long last = start + count - 1;
+            // slots are freed in order, so the last slot being free means the whole range is
+            long sequence = sequences.get((int) (last & mask));
+            if (sequence == last) {
+                if (tail.compareAndSet(start, start + count)) {
+                    break;
+                }
+            } else if (sequence < last) {
+                if (!waited) {
+                    fullWaits.increment();
+                    waited = true;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+            }
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long position = start + i;
+            int slot = (int) (position & mask);
+            kinds[slot] = batch.kinds[from + i];
+            firstArgs[slot] = batch.firstArgs[from + i];
+            secondArgs[slot] = batch.secondArgs[from + i];
+            gapsMs[slot] = from + i == 0 ? 0 : batch.gapMs;
+            batchEnds[slot] = i == count - 1;
+            submittedAt[slot] = now;
+            // a full volatile store, so the parked check below cannot be reordered before it
+            sequences.set(slot, position + 1);
+        }
+        if (consumerParked) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    private void dispatchLoop() {
+        long head = 0;
+        while (!closed) {
+            int slot = (int) (head & mask);
+            if (sequences.get(slot) != head + 1) {
+                consumerParked = true;
+                if (sequences.get(slot) != head + 1 && !closed) {
+                    LockSupport.park(this);
+                }
+                consumerParked = false;
+                continue;
+            }
+            int kind = kinds[slot];
+            int first = firstArgs[slot];
+            int second = secondArgs[slot];
+            int gapMs = gapsMs[slot];
+            boolean batchEnd = batchEnds[slot];
+            long latency = System.nanoTime() - submittedAt[slot];
+            sequences.lazySet(slot, head + mask + 1);
+            head++;
+            deliver(kind, first, second, gapMs, latency);
+            if (batchEnd) {
+                if (syncBatches) {
+                    try {
+                        sink.sync();
+                    } catch (RuntimeException e) {
+                        fail(e);
+                    }
+                }
+                completed.set(head);
+            }
+        }
+    }
+
+    private void deliver(int kind, int first, int second, int gapMs, long latency) {
+        try {
+            if (gapMs > 0) {
+                sink.delay(gapMs);
+            }
+            switch (kind) {
+                case KEY_PRESS -> sink.keyPress(first);
+                case KEY_RELEASE -> sink.keyRelease(first);
+                case MOUSE_MOVE -> sink.mouseMove(first, second);
+                case MOUSE_PRESS -> sink.mousePress(first);
+                default -> sink.mouseRelease(first);
+            }
+            delivered.increment();
+            this.latency.record(latency);
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(RuntimeException e) {
+        failed.increment();
+        pendingFailure.compareAndSet(null, e);
+    }
+
+    /**
+     * Blocks until every event submitted before this call has been delivered (and synced, when
+     * batches are synced). Rethrows the first delivery failure since the previous flush.
+     * Returns false, with the interrupt flag set, when interrupted first.
+     */
+    public boolean flush() {
+        long target = tail.get();
+        while (completed.get() < target) {
+            if (Thread.currentThread().isInterrupted() || closed) {
+                return false;
+            }
+            LockSupport.parkNanos(this, FLUSH_WAIT_NANOS);
+        }
+        RuntimeException failure = pendingFailure.getAndSet(null);
+        if (failure != null) {
+            throw new IllegalStateException("Input event failed: " + failure.getMessage(), failure);
+        }
+        return true;
+    }
+
+    public Stats stats() {
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        return new Stats(delivered.sum(), failed.sum(), fullWaits.sum(),
+                Math.round(snapshot.meanNanos() / 1_000), snapshot.maxNanos() / 1_000);
+    }
+
+    /**
+     * Submission-to-delivery latency of every delivered event.
+     */
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+    }
+}
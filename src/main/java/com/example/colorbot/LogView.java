@@ -0,0 +1,223 @@
+package com.example.colorbot;
+
+import javax.swing.AbstractListModel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import java.awt.CardLayout;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Swing view of an {@link EventLog}. A timer drains pending events at a fixed refresh rate, so
+ * bursts of log lines cost one UI update per tick instead of one per line.
+ * <p>
+ * Every line goes into a {@link LineModel} holding the last {@link #DEFAULT_HISTORY} lines. The
+ * text view shows the newest {@code visibleLines} of them, appended as one document insert and
+ * trimmed with one remove. The virtualized view is a {@link JList} over the whole model, which
+ * only paints visible rows, so a long backlog stays cheap to scroll.
+ */
+public class LogView extends JPanel {
+    private static final long serialVersionUID = 1L;
+    public static final int DEFAULT_REFRESH_MS = 33;
+    public static final int DEFAULT_HISTORY = 100_000;
+    private static final String TEXT_CARD = "text";
+    private static final String LIST_CARD = "list";
+
+    private final EventLog log;
+    private final EventLog.Reader reader;
+    private final int visibleLines;
+    private final LineModel lines = new LineModel(DEFAULT_HISTORY);
+    private final JTextArea textArea = new JTextArea();
+    private final JList<String> list = new JList<>(lines);
+    private final CardLayout cards = new CardLayout();
+    private final Timer timer;
+    private final List<EventLog.Event> pending = new ArrayList<>();
+    private final List<String> batch = new ArrayList<>();
+    private long reportedLost;
+    private boolean virtualized;
+
+    public LogView(EventLog log, int visibleLines) {
+        this.log = Objects.requireNonNull(log, "log");
+        this.reader = log.reader();
+        this.visibleLines = visibleLines;
+        this.timer = new Timer(DEFAULT_REFRESH_MS, e -> drain());
+        setLayout(cards);
+        textArea.setEditable(false);
+        textArea.setLineWrap(true);
+        textArea.setRows(8);
+        // fixed row height lets the list lay out any number of rows without measuring them
+        list.setPrototypeCellValue("Color check at 0000,0000 was visible");
+        list.setFixedCellHeight(list.getFontMetrics(list.getFont()).getHeight() + 2);
+        add(new JScrollPane(textArea), TEXT_CARD);
+        add(new JScrollPane(list), LIST_CARD);
+    }
+
+    public void start() {
+        timer.start();
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    /**
+     * Switches between the text view (last {@code visibleLines}, selectable text) and the list view
+     * (whole history).
+     */
+    public void setVirtualized(boolean virtualized) {
+        if (this.virtualized == virtualized) {
+            return;
+        }
+        this.virtualized = virtualized;
+        if (virtualized) {
+            scrollListToEnd();
+        } else {
+            reloadText();
+        }
+        cards.show(this, virtualized ? LIST_CARD : TEXT_CARD);
+    }
+
+    public boolean isVirtualized() {
+        return virtualized;
+    }
+
+    public void clear() {
+        lines.clear();
+        textArea.setText("");
+    }
+
+    /**
+     * Moves everything written since the last tick into the model and the visible view; runs on the EDT.
+     */
+    private void drain() {
+        pending.clear();
+        batch.clear();
+        reader.drain(pending, EventLog.Level.DEBUG, log.capacity());
+        if (reader.lost() > reportedLost) {
+            batch.add("(" + (reader.lost() - reportedLost) + " log lines dropped)");
+            reportedLost = reader.lost();
+        }
+        for (EventLog.Event event : pending) {
+            batch.add(event.level().compareTo(EventLog.Level.INFO) > 0 ? event.level() + ": " + event.text() : event.text());
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        // the list only follows new lines while its last row is in view, so the backlog can be read
+        boolean following = list.getLastVisibleIndex() >= lines.getSize() - 1;
+        lines.append(batch);
+        if (virtualized) {
+            if (following) {
+                scrollListToEnd();
+            }
+        } else {
+            appendText(batch);
+        }
+    }
+
+    private void appendText(List<String> newLines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = Math.max(0, newLines.size() - visibleLines); i < newLines.size(); i++) {
+            text.append(newLines.get(i)).append('\n');
+        }
+        Document document = textArea.getDocument();
+        try {
+            document.insertString(document.getLength(), text.toString(), null);
+            trimText(document);
+        } catch (BadLocationException ignored) {
+            // offsets come from the document itself
+        }
+        textArea.setCaretPosition(document.getLength());
+    }
+
+    /**
+     * Drops the oldest lines beyond {@code visibleLines} in a single remove.
+     */
+    private void trimText(Document document) throws BadLocationException {
+        Element root = document.getDefaultRootElement();
+        // the text ends with a newline, so the last element is an empty line
+        int excess = root.getElementCount() - 1 - visibleLines;
+        if (excess > 0) {
+            document.remove(0, root.getElement(excess - 1).getEndOffset());
+        }
+    }
+
+    private void reloadText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = Math.max(0, lines.getSize() - visibleLines); i < lines.getSize(); i++) {
+            text.append(lines.getElementAt(i)).append('\n');
+        }
+        textArea.setText(text.toString());
+        textArea.setCaretPosition(textArea.getDocument().getLength());
+    }
+
+    private void scrollListToEnd() {
+        if (lines.getSize() > 0) {
+            list.ensureIndexIsVisible(lines.getSize() - 1);
+        }
+    }
+
+    /**
+     * Fixed-capacity circular list of lines; appending past capacity drops the oldest, and each
+     * append fires at most one removal and one insertion event.
+     */
+    static final class LineModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] lines;
+        private int start;
+        private int size;
+
+        LineModel(int capacity) {
+            this.lines = new String[capacity];
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            return lines[(start + index) % lines.length];
+        }
+
+        void append(List<String> added) {
+            if (added.isEmpty()) {
+                return;
+            }
+            int count = Math.min(added.size(), lines.length);
+            int overflow = size + count - lines.length;
+            if (overflow > 0) {
+                start = (start + overflow) % lines.length;
+                size -= overflow;
+                fireIntervalRemoved(this, 0, overflow - 1);
+            }
+            int first = size;
+            for (int i = added.size() - count; i < added.size(); i++) {
+                lines[(start + size) % lines.length] = added.get(i);
+                size++;
+            }
+            fireIntervalAdded(this, first, size - 1);
+        }
+
+        void clear() {
+            if (size == 0) {
+                return;
+            }
+            int removed = size;
+            Arrays.fill(lines, null);
+            start = 0;
+            size = 0;
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.colorbot;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Publishes a {@link MetricsRegistry} without any external service: Prometheus text at
+ * {@code http://127.0.0.1:<port>/metrics} (JSON at {@code /metrics.json}) and/or a JSON file
+ * rewritten on an interval. The server only binds the loopback interface.
+ */
+public class MetricsExporter implements AutoCloseable {
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+    private final ScheduledExecutorService executor;
+    private HttpServer server;
+    private ScheduledFuture<?> dumpTask;
+
+    public MetricsExporter(MetricsRegistry registry) {
+        this.registry = Objects.requireNonNull(registry, "registry");
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-exporter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts serving on {@code port} ({@code 0} picks a free one), replacing a running server.
+     * Returns the bound port.
+     */
+    public synchronized int startHttp(int port) throws IOException {
+        stopHttp();
+        HttpServer created = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        created.createContext("/metrics", exchange -> respond(exchange, PROMETHEUS_CONTENT_TYPE, registry.toPrometheus()));
+        created.createContext("/metrics.json", exchange -> respond(exchange, "application/json", registry.toJson()));
+        created.setExecutor(executor);
+        created.start();
+        server = created;
+        return created.getAddress().getPort();
+    }
+
+    public synchronized void stopHttp() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    public synchronized boolean isServing() {
+        return server != null;
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Rewrites {@code file} with {@link MetricsRegistry#toJson()} every {@code intervalMs}, replacing
+     * a running dump. Each write goes to a temporary file that is then renamed over {@code file},
+     * so readers never see a partial dump.
+     */
+    public synchronized void startJsonDump(Path file, long intervalMs, Consumer<String> errorConsumer) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("Dump interval must be positive");
+        }
+        stopJsonDump();
+        dumpTask = executor.scheduleAtFixedRate(() -> {
+            try {
+                writeJson(file);
+            } catch (IOException e) {
+                errorConsumer.accept("Failed to write metrics to " + file + ": " + e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopJsonDump() {
+        if (dumpTask != null) {
+            dumpTask.cancel(false);
+            dumpTask = null;
+        }
+    }
+
+    public void writeJson(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, registry.toJson(), StandardCharsets.UTF_8);
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        stopHttp();
+        stopJsonDump();
+        executor.shutdownNow();
+    }
+}
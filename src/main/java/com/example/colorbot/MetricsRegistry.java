@@ -0,0 +1,208 @@
+package com.example.colorbot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Named latency histograms, counters, rate meters and gauges of one bot instance, rendered as
+ * Prometheus text or JSON by {@link MetricsExporter}. Registration is get-or-create, so components
+ * sharing a registry can ask for the same metric; recording never takes a lock.
+ */
+public final class MetricsRegistry {
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+    private sealed interface Metric permits Histogram, Counter, Meter, Gauge {
+        String help();
+    }
+
+    private record Histogram(String help, LatencyHistogram histogram) implements Metric {
+    }
+
+    private record Counter(String help, LongSupplier value) implements Metric {
+    }
+
+    private record Meter(String help, RateMeter meter) implements Metric {
+    }
+
+    private record Gauge(String help, DoubleSupplier value) implements Metric {
+    }
+
+    /**
+     * Counts events and reports their rate over the last completed window of at least one second.
+     */
+    public static final class RateMeter {
+        private static final long WINDOW_NANOS = 1_000_000_000L;
+
+        private final LongAdder count = new LongAdder();
+        private long windowStart = System.nanoTime();
+        private long windowCount;
+        private double ratePerSecond;
+
+        public void mark() {
+            count.increment();
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public synchronized double ratePerSecond() {
+            long now = System.nanoTime();
+            long elapsed = now - windowStart;
+            if (elapsed >= WINDOW_NANOS) {
+                long total = count.sum();
+                ratePerSecond = (total - windowCount) * 1e9 / elapsed;
+                windowStart = now;
+                windowCount = total;
+            }
+            return ratePerSecond;
+        }
+    }
+
+    public synchronized LatencyHistogram histogram(String name, String help) {
+        return existing(name, Histogram.class, () -> new Histogram(help, new LatencyHistogram())).histogram();
+    }
+
+    /**
+     * Publishes a histogram owned by another component, e.g. {@link InputDispatcher#latency()}.
+     */
+    public synchronized void register(String name, String help, LatencyHistogram histogram) {
+        put(name, new Histogram(help, histogram));
+    }
+
+    public synchronized RateMeter meter(String name, String help) {
+        return existing(name, Meter.class, () -> new Meter(help, new RateMeter())).meter();
+    }
+
+    /**
+     * A monotonically increasing total read from {@code value} at export time.
+     */
+    public synchronized void counter(String name, String help, LongSupplier value) {
+        put(name, new Counter(help, value));
+    }
+
+    public synchronized void gauge(String name, String help, DoubleSupplier value) {
+        put(name, new Gauge(help, value));
+    }
+
+    private <T extends Metric> T existing(String name, Class<T> type, Supplier<T> factory) {
+        Metric metric = metrics.get(name);
+        if (metric == null) {
+            T created = factory.get();
+            put(name, created);
+            return created;
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as another type");
+        }
+        return type.cast(metric);
+    }
+
+    private void put(String name, Metric metric) {
+        if (!NAME_PATTERN.matcher(name).matches()) {
+            throw new IllegalArgumentException("Metric names may only use lowercase letters, digits and '_': " + name);
+        }
+        metrics.put(name, metric);
+    }
+
+    private synchronized List<Map.Entry<String, Metric>> entries() {
+        return new ArrayList<>(metrics.entrySet());
+    }
+
+    /**
+     * Prometheus text exposition format (0.0.4). Histograms are summaries in seconds with
+     * 50/90/99/99.9th percentiles; meters are a {@code _total} counter plus a per-second gauge.
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Metric> entry : entries()) {
+            String name = entry.getKey();
+            Metric metric = entry.getValue();
+            if (metric instanceof Histogram histogram) {
+                String base = name + "_seconds";
+                LatencyHistogram.Snapshot snapshot = histogram.histogram().snapshot();
+                header(out, base, metric.help(), "summary");
+                for (double quantile : QUANTILES) {
+                    out.append(base).append("{quantile=\"").append(quantile).append("\"} ")
+                            .append(seconds(snapshot.valueAtPercentile(quantile * 100))).append('\n');
+                }
+                out.append(base).append("_sum ").append(seconds(snapshot.sumNanos())).append('\n');
+                out.append(base).append("_count ").append(snapshot.count()).append('\n');
+                header(out, base + "_max", metric.help() + " (maximum)", "gauge");
+                out.append(base).append("_max ").append(seconds(snapshot.maxNanos())).append('\n');
+            } else if (metric instanceof Counter counter) {
+                header(out, name + "_total", metric.help(), "counter");
+                out.append(name).append("_total ").append(counter.value().getAsLong()).append('\n');
+            } else if (metric instanceof Meter meter) {
+                header(out, name + "_total", metric.help(), "counter");
+                out.append(name).append("_total ").append(meter.meter().count()).append('\n');
+                header(out, name + "_per_second", metric.help() + " per second", "gauge");
+                out.append(name).append("_per_second ").append(number(meter.meter().ratePerSecond())).append('\n');
+            } else if (metric instanceof Gauge gauge) {
+                header(out, name, metric.help(), "gauge");
+                out.append(name).append(' ').append(number(gauge.value().getAsDouble())).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * One JSON object keyed by metric name; histogram values are in microseconds.
+     */
+    public String toJson() {
+        StringBuilder out = new StringBuilder("{\n  \"timestamp\": ").append(System.currentTimeMillis());
+        for (Map.Entry<String, Metric> entry : entries()) {
+            out.append(",\n  \"").append(entry.getKey()).append("\": ");
+            Metric metric = entry.getValue();
+            if (metric instanceof Histogram histogram) {
+                LatencyHistogram.Snapshot snapshot = histogram.histogram().snapshot();
+                out.append("{\"count\": ").append(snapshot.count())
+                        .append(", \"mean_us\": ").append(micros(Math.round(snapshot.meanNanos())))
+                        .append(", \"p50_us\": ").append(micros(snapshot.valueAtPercentile(50)))
+                        .append(", \"p90_us\": ").append(micros(snapshot.valueAtPercentile(90)))
+                        .append(", \"p99_us\": ").append(micros(snapshot.valueAtPercentile(99)))
+                        .append(", \"p999_us\": ").append(micros(snapshot.valueAtPercentile(99.9)))
+                        .append(", \"max_us\": ").append(micros(snapshot.maxNanos())).append('}');
+            } else if (metric instanceof Counter counter) {
+                out.append(counter.value().getAsLong());
+            } else if (metric instanceof Meter meter) {
+                out.append("{\"count\": ").append(meter.meter().count())
+                        .append(", \"per_second\": ").append(number(meter.meter().ratePerSecond())).append('}');
+            } else if (metric instanceof Gauge gauge) {
+                out.append(number(gauge.value().getAsDouble()));
+            }
+        }
+        return out.append("\n}\n").toString();
+    }
+
+    private static String seconds(long nanos) {
+        return number(nanos / 1e9);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e3);
+    }
+
+    private static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "0";
+        }
+        return String.format(Locale.ROOT, "%.9g", value).replaceFirst("\\.?0+(e|$)", "$1");
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.colorbot;
+
+/**
+ * One pixel watched by {@link ColorMonitor}. {@code tolerance} overrides the sample's own
+ * tolerance ({@code null} keeps it); a blank key means no key is pressed for that state.
+ * Rules with a higher {@code priority} are evaluated (and press their keys) first on every tick.
+ */
+public record MonitorRule(ColorSample sample, ColorTolerance tolerance, String visibleKey, String missingKey, int priority) {
+    public MonitorRule {
+        if (sample == null) {
+            throw new IllegalArgumentException("sample cannot be null");
+        }
+        if (tolerance == null) {
+            tolerance = sample.tolerance();
+        }
+    }
+
+    public MonitorRule(ColorSample sample, String visibleKey, String missingKey) {
+        this(sample, null, visibleKey, missingKey, 0);
+    }
+
+    public boolean matches(int actualRgb) {
+        return tolerance.matches(sample.color().getRGB(), actualRgb);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.colorbot;
+
+/**
+ * Cooldown time base. Readings come from {@link System#nanoTime()}, so wall-clock adjustments
+ * never move a deadline; epoch milliseconds only appear when values are exchanged with the
+ * cooldown store or shown to the user, translated through one anchor taken when the clock is
+ * created. Translating there and back is exact to the millisecond.
+ */
+public final class MonotonicClock {
+    /**
+     * Shared by every engine in the process so translated values agree.
+     */
+    public static final MonotonicClock SYSTEM = new MonotonicClock();
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final long anchorEpochMillis;
+    private final long anchorNanos;
+
+    public MonotonicClock() {
+        this.anchorNanos = System.nanoTime();
+        this.anchorEpochMillis = System.currentTimeMillis();
+    }
+
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    public long toEpochMillis(long nanoTime) {
+        return anchorEpochMillis + Math.floorDiv(nanoTime - anchorNanos, NANOS_PER_MILLI);
+    }
+
+    public long toNanoTime(long epochMillis) {
+        return anchorNanos + millisToNanos(epochMillis - anchorEpochMillis);
+    }
+
+    /**
+     * {@code millis} in nanoseconds, saturating instead of overflowing for out-of-range values.
+     */
+    public static long millisToNanos(long millis) {
+        if (millis > Long.MAX_VALUE / NANOS_PER_MILLI) {
+            return Long.MAX_VALUE / 2;
+        }
+        if (millis < Long.MIN_VALUE / NANOS_PER_MILLI) {
+            return Long.MIN_VALUE / 2;
+        }
+        return millis * NANOS_PER_MILLI;
+    }
+}
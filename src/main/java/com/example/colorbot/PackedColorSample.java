@@ -0,0 +1,38 @@
+package com.example.colorbot;
+
+import java.awt.Color;
+import java.awt.Point;
+
+/**
+ * {@link ColorSample} stored as plain ints ({@code rgb} is packed {@code 0xRRGGBB}) so hot loops
+ * can check it without touching {@link Point} or {@link Color}.
+ */
+public record PackedColorSample(int x, int y, int rgb, ColorTolerance tolerance) {
+    public PackedColorSample {
+        if (tolerance == null) {
+            throw new IllegalArgumentException("tolerance cannot be null");
+        }
+        rgb &= 0xFFFFFF;
+    }
+
+    public PackedColorSample(int x, int y, int rgb) {
+        this(x, y, rgb, ColorTolerance.EXACT);
+    }
+
+    public static PackedColorSample of(ColorSample sample) {
+        return new PackedColorSample(sample.location().x, sample.location().y,
+                sample.color().getRGB(), sample.tolerance());
+    }
+
+    public boolean matches(int actualRgb) {
+        return tolerance.matches(rgb, actualRgb);
+    }
+
+    public ColorSample toColorSample() {
+        return new ColorSample(new Point(x, y), new Color(rgb), tolerance);
+    }
+
+    public String toHex() {
+        return String.format("#%06X", rgb);
+    }
+}
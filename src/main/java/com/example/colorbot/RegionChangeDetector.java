@@ -0,0 +1,113 @@
+package com.example.colorbot;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Watches a handful of pixels or one screen region and wakes the caller as soon as its content
+ * changes or a condition flips. Reads only the watched area, fingerprints it, and re-checks every
+ * {@code pollNanos} (sub-frame by default) instead of sleeping for a fixed script interval.
+ */
+public final class RegionChangeDetector {
+    /**
+     * One millisecond: well under a 60 Hz frame without spinning a core.
+     */
+    public static final long DEFAULT_POLL_NANOS = 1_000_000L;
+
+    private final ScreenSource screen;
+    private final Point[] points;
+    private final Rectangle region;
+    private final long pollNanos;
+
+    private RegionChangeDetector(ScreenSource screen, Point[] points, Rectangle region, long pollNanos) {
+        this.screen = Objects.requireNonNull(screen, "screen");
+        this.points = points;
+        this.region = region;
+        this.pollNanos = Math.max(0, pollNanos);
+    }
+
+    public static RegionChangeDetector forPoints(ScreenSource screen, Point... points) {
+        if (points.length == 0) {
+            throw new IllegalArgumentException("At least one point is required");
+        }
+        return new RegionChangeDetector(screen, points.clone(), null, DEFAULT_POLL_NANOS);
+    }
+
+    public static RegionChangeDetector forRegion(ScreenSource screen, Rectangle region) {
+        if (region.isEmpty()) {
+            throw new IllegalArgumentException("Region cannot be empty");
+        }
+        return new RegionChangeDetector(screen, null, new Rectangle(region), DEFAULT_POLL_NANOS);
+    }
+
+    /**
+     * Same watched area with a different re-check interval; {@code 0} busy-spins.
+     */
+    public RegionChangeDetector withPollNanos(long pollNanos) {
+        return new RegionChangeDetector(screen, points, region, pollNanos);
+    }
+
+    /**
+     * Hash of the current content of the watched pixels or region.
+     */
+    public long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        if (points != null) {
+            for (Point point : points) {
+                hash = mix(hash, screen.pixel(point.x, point.y));
+            }
+            return hash;
+        }
+        ScreenSnapshot snapshot = screen.snapshot(region);
+        Rectangle bounds = snapshot.bounds();
+        int[] pixels = snapshot.pixels();
+        int stride = snapshot.scanlineStride();
+        for (int y = region.y - bounds.y, endY = y + region.height; y < endY; y++) {
+            for (int index = y * stride + region.x - bounds.x, end = index + region.width; index < end; index++) {
+                hash = mix(hash, pixels[index] & 0xFFFFFF);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Waits until the watched content differs from what it is now. A negative timeout waits
+     * until interrupted. Returns whether a change was seen.
+     */
+    public boolean awaitChange(long timeoutMs) {
+        long baseline = fingerprint();
+        return awaitCondition(() -> fingerprint() != baseline, timeoutMs);
+    }
+
+    /**
+     * Re-evaluates {@code condition} every poll until it holds, the timeout passes (negative means
+     * no timeout) or the thread is interrupted. Returns whether the condition was met.
+     */
+    public boolean awaitCondition(BooleanSupplier condition, long timeoutMs) {
+        boolean hasDeadline = timeoutMs >= 0;
+        long timeoutNanos = MonotonicClock.millisToNanos(timeoutMs);
+        // compare elapsed time rather than a precomputed deadline, which could overflow
+        long start = System.nanoTime();
+        while (true) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            if (Thread.currentThread().isInterrupted() || hasDeadline && System.nanoTime() - start >= timeoutNanos) {
+                return false;
+            }
+            if (pollNanos == 0) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(pollNanos);
+            }
+        }
+    }
+
+    private static long mix(long hash, int value) {
+        hash ^= value;
+        return hash * 0x100000001b3L;
+    }
+}
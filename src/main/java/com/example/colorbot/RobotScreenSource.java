@@ -0,0 +1,33 @@
+package com.example.colorbot;
+
+import java.awt.Rectangle;
+import java.awt.Robot;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+
+/**
+ * {@link ScreenSource} that reads the live desktop through {@link Robot}.
+ */
+public class RobotScreenSource implements ScreenSource {
+    private final Robot robot;
+
+    public RobotScreenSource(Robot robot) {
+        this.robot = Objects.requireNonNull(robot, "robot");
+    }
+
+    @Override
+    public int pixel(int x, int y) {
+        return robot.getPixelColor(x, y).getRGB() & 0xFFFFFF;
+    }
+
+    @Override
+    public BufferedImage region(Rectangle region) {
+        return robot.createScreenCapture(region);
+    }
+
+    @Override
+    public BufferedImage frame() {
+        return robot.createScreenCapture(new Rectangle(Toolkit.getDefaultToolkit().getScreenSize()));
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.colorbot;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Per-run state of one ROTATION block. Enabled skills on cooldown wait in a heap ordered by ready
+ * time; once ready they move to a set ordered by priority. Each step walks that set from the top
+ * and fires the first skill whose color precondition holds, so only ready skills of higher
+ * priority that are held back by their precondition are tested before it; moving a skill between
+ * the two costs O(log n). Disabled skills are in neither until ENABLE brings them back.
+ * Times are {@link MonotonicClock} nano times.
+ * <p>
+ * Tracks, per skill, how often it fired, the share of the run it spent on cooldown (uptime)
+ * and the cooldown it wasted: time it was ready and enabled but not fired, for instance while
+ * higher-priority skills were firing or the script was busy elsewhere.
+ */
+public final class RotationScheduler {
+    /**
+     * Totals for one skill; {@code uptime} is between 0 and 1.
+     */
+    public record SkillStats(int line, String skill, String key, long casts, double uptime, long wastedMs) {
+    }
+
+    private static final class Skill {
+        final int index;
+        final ScriptInstruction.RotationSkill declaration;
+        final long cooldownNanos;
+        long readyAt;
+        /**
+         * Start of the current stretch of unused readiness; moved forward while the skill cannot fire.
+         */
+        long wasteFrom;
+        long lastFired;
+        long casts;
+        long wastedNanos;
+        boolean enabled;
+
+        Skill(int index, ScriptInstruction.RotationSkill declaration) {
+            this.index = index;
+            this.declaration = declaration;
+            this.cooldownNanos = MonotonicClock.millisToNanos(declaration.cooldownMs());
+        }
+    }
+
+    private final ScriptInstruction.Rotation rotation;
+    private final Skill[] skills;
+    private final Predicate<ScriptInstruction.RotationSkill> precondition;
+    private final PriorityQueue<Skill> cooling;
+    /**
+     * Ready and enabled skills; a skill's readyAt only changes while it is outside this set.
+     */
+    private final TreeSet<Skill> ready;
+    private final long startedAt;
+
+    /**
+     * Starts with every skill ready at {@code now}; skills set in {@code disabledSkills} start
+     * disabled. Later ENABLE/DISABLE arrive through {@link #setEnabled}.
+     */
+    public RotationScheduler(ScriptInstruction.Rotation rotation, long now, BitSet disabledSkills,
+                             Predicate<ScriptInstruction.RotationSkill> precondition) {
+        this.rotation = rotation;
+        this.precondition = precondition;
+        List<ScriptInstruction.RotationSkill> declared = rotation.skills();
+        this.skills = new Skill[declared.size()];
+        this.cooling = new PriorityQueue<>(skills.length, (a, b) -> Long.compare(a.readyAt - b.readyAt, 0));
+        this.ready = new TreeSet<>(Comparator.<Skill>comparingInt(s -> -s.declaration.priority())
+                .thenComparing((a, b) -> Long.compare(a.readyAt - b.readyAt, 0))
+                .thenComparingInt(s -> s.index));
+        this.startedAt = now;
+        for (int i = 0; i < skills.length; i++) {
+            Skill skill = new Skill(i, declared.get(i));
+            skill.readyAt = now;
+            skill.wasteFrom = now;
+            skill.lastFired = now;
+            skill.enabled = !disabledSkills.get(skill.declaration.skillIndex());
+            skills[i] = skill;
+            if (skill.enabled) {
+                ready.add(skill);
+            }
+        }
+    }
+
+    public ScriptInstruction.Rotation rotation() {
+        return rotation;
+    }
+
+    /**
+     * Fires the highest-priority ready skill whose precondition holds, putting it back on cooldown
+     * from {@code now}; returns it, or null when none can fire.
+     */
+    public ScriptInstruction.RotationSkill fireNext(long now) {
+        while (!cooling.isEmpty() && cooling.peek().readyAt - now <= 0) {
+            Skill skill = cooling.poll();
+            skill.wasteFrom = skill.readyAt;
+            ready.add(skill);
+        }
+        Skill fired = null;
+        for (Skill skill = ready.isEmpty() ? null : ready.first(); skill != null; skill = ready.higher(skill)) {
+            if (skill.declaration.precondition() == null || precondition.test(skill.declaration)) {
+                fired = skill;
+                break;
+            }
+            // held back by its color condition, which is not waste
+            skill.wasteFrom = now;
+        }
+        if (fired == null) {
+            return null;
+        }
+        ready.remove(fired);
+        fired.wastedNanos += Math.max(0, now - fired.wasteFrom);
+        fired.casts++;
+        fired.lastFired = now;
+        fired.readyAt = now + fired.cooldownNanos;
+        cooling.add(fired);
+        return fired.declaration;
+    }
+
+    /**
+     * When the next enabled skill comes off cooldown, or {@code Long.MIN_VALUE} when no enabled
+     * skill is cooling down.
+     */
+    public long nextReadyAt() {
+        Skill next = cooling.peek();
+        return next == null ? Long.MIN_VALUE : next.readyAt;
+    }
+
+    /**
+     * Whether some enabled skill is off cooldown; after {@link #fireNext} returned null, that
+     * means its precondition held it back.
+     */
+    public boolean hasReady() {
+        return !ready.isEmpty();
+    }
+
+    /**
+     * Applies ENABLE/DISABLE of the skill with script-wide {@code skillIndex}; time a skill spends
+     * disabled is not counted as waste.
+     */
+    public void setEnabled(int skillIndex, boolean enabled, long now) {
+        for (Skill skill : skills) {
+            if (skill.declaration.skillIndex() != skillIndex || skill.enabled == enabled) {
+                continue;
+            }
+            skill.enabled = enabled;
+            if (!enabled) {
+                if (ready.remove(skill)) {
+                    skill.wastedNanos += Math.max(0, now - skill.wasteFrom);
+                } else {
+                    cooling.remove(skill);
+                }
+            } else if (skill.readyAt - now <= 0) {
+                skill.wasteFrom = now;
+                ready.add(skill);
+            } else {
+                cooling.add(skill);
+            }
+        }
+    }
+
+    public List<SkillStats> stats(long now) {
+        long elapsed = now - startedAt;
+        List<SkillStats> stats = new ArrayList<>(skills.length);
+        for (Skill skill : skills) {
+            long busy = skill.casts == 0 ? 0
+                    : (skill.casts - 1) * skill.cooldownNanos + Math.min(skill.cooldownNanos, now - skill.lastFired);
+            // an enabled skill outside the ready set is cooling, possibly past its ready time
+            long pending = !skill.enabled ? 0 : ready.contains(skill) ? now - skill.wasteFrom : now - skill.readyAt;
+            long wasted = skill.wastedNanos + Math.max(0, pending);
+            ScriptInstruction.RotationSkill declaration = skill.declaration;
+            stats.add(new SkillStats(declaration.line(), declaration.name(), declaration.key(), skill.casts,
+                    elapsed > 0 ? Math.min(1.0, (double) busy / elapsed) : 0, wasted / 1_000_000L));
+        }
+        return stats;
+    }
+}
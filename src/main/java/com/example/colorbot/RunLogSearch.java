@@ -0,0 +1,194 @@
+package com.example.colorbot;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Grep over the segments written by {@link RunLogWriter}. Plain segments are memory-mapped and
+ * scanned as bytes, so only matching lines are ever decoded; compressed segments are streamed
+ * through {@link GZIPInputStream} with the same matcher. Matching is a literal substring test,
+ * optionally ignoring ASCII case.
+ */
+public final class RunLogSearch {
+    /**
+     * One matching line; {@code lineNumber} starts at 1 within its segment.
+     */
+    public record Hit(Path file, long lineNumber, String line) {
+    }
+
+    private final byte[] needle;
+    private final boolean ignoreCase;
+
+    public RunLogSearch(String text, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        this.needle = text.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < needle.length; i++) {
+            needle[i] = fold(needle[i]);
+        }
+    }
+
+    /**
+     * Segment files in {@code directory}, newest session first and segments in order within it.
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(RunLogSearch::isSegment)
+                    .sorted(Comparator.comparing(RunLogSearch::sessionOf).reversed()
+                            .thenComparingInt(RunLogSearch::segmentOf))
+                    .toList();
+        }
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith("run-") && (name.endsWith(".log") || name.endsWith(".log.gz"));
+    }
+
+    private static String sessionOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static int segmentOf(Path file) {
+        String[] parts = file.getFileName().toString().split("\\.");
+        try {
+            return parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Up to {@code limit} matching lines across {@code files}, in file order.
+     */
+    public List<Hit> search(List<Path> files, int limit) throws IOException {
+        List<Hit> hits = new ArrayList<>();
+        for (Path file : files) {
+            if (hits.size() >= limit || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (file.getFileName().toString().endsWith(".gz")) {
+                searchCompressed(file, hits, limit);
+            } else {
+                searchMapped(file, hits, limit);
+            }
+        }
+        return hits;
+    }
+
+    private void searchMapped(Path file, List<Hit> hits, int limit) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long lineNumber = 1;
+            // map in windows below 2 GB, starting each one at a line boundary
+            long windowStart = 0;
+            while (windowStart < size && hits.size() < limit) {
+                long windowSize = Math.min(size - windowStart, Integer.MAX_VALUE);
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+                int limitIndex = (int) windowSize;
+                int lineStart = 0;
+                for (int i = 0; i < limitIndex && hits.size() < limit; i++) {
+                    if (map.get(i) == '\n') {
+                        if (matches(map, lineStart, i)) {
+                            hits.add(new Hit(file, lineNumber, decode(map, lineStart, i)));
+                        }
+                        lineNumber++;
+                        lineStart = i + 1;
+                    }
+                }
+                if (windowStart + windowSize >= size) {
+                    // a last line without newline, e.g. a segment still being written
+                    if (lineStart < limitIndex && hits.size() < limit && matches(map, lineStart, limitIndex)) {
+                        hits.add(new Hit(file, lineNumber, decode(map, lineStart, limitIndex)));
+                    }
+                    break;
+                }
+                if (lineStart == 0) {
+                    throw new IOException("Line longer than 2 GB in " + file);
+                }
+                windowStart += lineStart;
+            }
+        }
+    }
+
+    private void searchCompressed(Path file, List<Hit> hits, int limit) throws IOException {
+        try (InputStream in = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file)))) {
+            byte[] line = new byte[1024];
+            int length = 0;
+            long lineNumber = 1;
+            int b;
+            while ((b = in.read()) >= 0 && hits.size() < limit) {
+                if (b == '\n') {
+                    if (matches(line, length)) {
+                        hits.add(new Hit(file, lineNumber, new String(line, 0, length, StandardCharsets.UTF_8)));
+                    }
+                    lineNumber++;
+                    length = 0;
+                } else {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+                    line[length++] = (byte) b;
+                }
+            }
+            if (length > 0 && hits.size() < limit && matches(line, length)) {
+                hits.add(new Hit(file, lineNumber, new String(line, 0, length, StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    private boolean matches(MappedByteBuffer map, int from, int to) {
+        int last = to - needle.length;
+        for (int start = from; start <= last; start++) {
+            int i = 0;
+            while (i < needle.length && fold(map.get(start + i)) == needle[i]) {
+                i++;
+            }
+            if (i == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matches(byte[] line, int length) {
+        int last = length - needle.length;
+        for (int start = 0; start <= last; start++) {
+            int i = 0;
+            while (i < needle.length && fold(line[start + i]) == needle[i]) {
+                i++;
+            }
+            if (i == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte fold(byte b) {
+        return ignoreCase && b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static String decode(MappedByteBuffer map, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        map.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.colorbot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only on-disk log of one script session. A background thread reads the session's events
+ * from an {@link EventLog} and writes them through a {@link FileChannel}; script and monitor
+ * threads only ever write the in-memory ring, so a slow disk never blocks them.
+ * <p>
+ * Each wake-up drains everything pending and commits it as one write followed by one
+ * {@link FileChannel#force(boolean) force}. Files are named {@code run-<start>.<segment>.log};
+ * when a segment outgrows its size limit the writer moves to the next one and compresses the
+ * full segment to {@code .log.gz}.
+ */
+public final class RunLogWriter implements AutoCloseable {
+    public static final long DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024;
+    public static final long DEFAULT_COMMIT_INTERVAL_MS = 200;
+    private static final int BUFFER_BYTES = 256 * 1024;
+    private static final DateTimeFormatter FILE_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final DateTimeFormatter LINE_STAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private final Path directory;
+    private final String session;
+    private final long segmentBytes;
+    private final long commitIntervalNanos;
+    private final EventLog log;
+    private final EventLog.Reader reader;
+    private final Consumer<String> errorConsumer;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder line = new StringBuilder();
+    private final List<EventLog.Event> pending = new ArrayList<>();
+    private final Thread thread;
+    private FileChannel channel;
+    private int segment;
+    private long reportedLost;
+    private volatile boolean closed;
+
+    /**
+     * Starts writing events logged from now on to a new session in {@code directory}.
+     */
+    public RunLogWriter(Path directory, EventLog log, Consumer<String> errorConsumer) throws IOException {
+        this(directory, log, DEFAULT_SEGMENT_BYTES, DEFAULT_COMMIT_INTERVAL_MS, errorConsumer);
+    }
+
+    public RunLogWriter(Path directory, EventLog log, long segmentBytes, long commitIntervalMs,
+                        Consumer<String> errorConsumer) throws IOException {
+        if (segmentBytes <= 0 || commitIntervalMs <= 0) {
+            throw new IllegalArgumentException("Segment size and commit interval must be positive");
+        }
+        this.directory = Objects.requireNonNull(directory, "directory");
+        this.log = Objects.requireNonNull(log, "log");
+        this.segmentBytes = segmentBytes;
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(commitIntervalMs);
+        this.errorConsumer = Objects.requireNonNull(errorConsumer, "errorConsumer");
+        this.reader = log.tailReader();
+        Files.createDirectories(directory);
+        this.session = "run-" + LocalDateTime.now().format(FILE_STAMP);
+        this.channel = openSegment();
+        this.thread = new Thread(this::writeLoop, "run-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * The segment currently written to.
+     */
+    public Path currentFile() {
+        return segmentFile(segment);
+    }
+
+    private Path segmentFile(int index) {
+        return directory.resolve(session + "." + index + ".log");
+    }
+
+    private FileChannel openSegment() throws IOException {
+        // a second session started within the same second continues after the existing segments
+        while (Files.exists(segmentFile(segment)) || Files.exists(gzipFile(segmentFile(segment)))) {
+            segment++;
+        }
+        return FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void writeLoop() {
+        boolean failed = false;
+        while (true) {
+            boolean last = closed;
+            try {
+                if (!failed) {
+                    commit();
+                }
+            } catch (IOException e) {
+                failed = true;
+                errorConsumer.accept("Run log stopped: " + e.getMessage());
+            }
+            if (last) {
+                break;
+            }
+            LockSupport.parkNanos(this, commitIntervalNanos);
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            errorConsumer.accept("Failed to close run log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes every pending event with one channel write per full buffer and one force at the end.
+     */
+    private void commit() throws IOException {
+        boolean wrote = false;
+        while (true) {
+            pending.clear();
+            reader.drain(pending, EventLog.Level.DEBUG, log.capacity());
+            if (reader.lost() > reportedLost) {
+                line.setLength(0);
+                stamp(System.currentTimeMillis()).append(" WARN  (").append(reader.lost() - reportedLost)
+                        .append(" events overwritten before they were written)\n");
+                encode();
+                reportedLost = reader.lost();
+                wrote = true;
+            }
+            if (pending.isEmpty()) {
+                break;
+            }
+            for (EventLog.Event event : pending) {
+                line.setLength(0);
+                stamp(event.timeMillis()).append(' ');
+                String level = event.level().name();
+                line.append(level).append(" ".repeat(Math.max(1, 6 - level.length()))).append(event.text()).append('\n');
+                encode();
+            }
+            wrote = true;
+        }
+        if (wrote) {
+            writeBuffer();
+            channel.force(false);
+            if (channel.size() >= segmentBytes) {
+                rotate();
+            }
+        }
+    }
+
+    private StringBuilder stamp(long timeMillis) {
+        return line.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.systemDefault()).format(LINE_STAMP));
+    }
+
+    private void encode() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                writeBuffer();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void rotate() throws IOException {
+        Path full = segmentFile(segment);
+        channel.close();
+        segment++;
+        channel = openSegment();
+        try {
+            compress(full);
+        } catch (IOException e) {
+            // the uncompressed segment is still there and searchable
+            errorConsumer.accept("Failed to compress " + full.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    static Path gzipFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".gz");
+    }
+
+    private static void compress(Path file) throws IOException {
+        Path target = gzipFile(file);
+        Path temp = file.resolveSibling(target.getFileName() + ".tmp");
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_BYTES)) {
+            in.transferTo(out);
+        }
+        Files.move(temp, target);
+        Files.delete(file);
+    }
+
+    /**
+     * Writes what is still pending and stops the writer thread; waits for it to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
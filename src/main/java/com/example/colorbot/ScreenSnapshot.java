@@ -0,0 +1,116 @@
+package com.example.colorbot;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Objects;
+
+/**
+ * One captured screen region. Every read against the same snapshot sees the same frame, so
+ * several color conditions can be evaluated consistently from a single capture.
+ */
+public final class ScreenSnapshot {
+    private final Rectangle bounds;
+    private final BufferedImage image;
+    /**
+     * Backing array of the INT_RGB/INT_ARGB capture, read directly instead of through
+     * {@link BufferedImage#getRGB}; other image types are converted once on construction.
+     */
+    private final int[] pixels;
+    private final int scanlineStride;
+
+    public ScreenSnapshot(Rectangle bounds, BufferedImage image) {
+        this.bounds = new Rectangle(Objects.requireNonNull(bounds, "bounds"));
+        BufferedImage source = Objects.requireNonNull(image, "image");
+        if (!isPlainIntRaster(source)) {
+            BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = converted.createGraphics();
+            g.drawImage(source, 0, 0, null);
+            g.dispose();
+            source = converted;
+        }
+        this.image = source;
+        WritableRaster raster = source.getRaster();
+        this.pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+        this.scanlineStride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+    }
+
+    private static boolean isPlainIntRaster(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        int type = image.getType();
+        return (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && raster.getDataBuffer() instanceof DataBufferInt buffer
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && buffer.getNumBanks() == 1 && buffer.getOffset() == 0
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+    }
+
+    /**
+     * Raw {@code 0x??RRGGBB} pixels, row-major with {@link #scanlineStride()} ints per row; for scanners.
+     */
+    int[] pixels() {
+        return pixels;
+    }
+
+    int scanlineStride() {
+        return scanlineStride;
+    }
+
+    public Rectangle bounds() {
+        return new Rectangle(bounds);
+    }
+
+    /**
+     * The shared capture itself; callers must not draw on it. Outside code gets {@link #copy}.
+     */
+    BufferedImage image() {
+        return image;
+    }
+
+    /**
+     * A new INT_RGB image holding {@code region}, which must lie within {@link #bounds()}.
+     */
+    public BufferedImage copy(Rectangle region) {
+        if (!bounds.contains(region)) {
+            throw new IllegalArgumentException("Region " + region + " is outside snapshot " + bounds);
+        }
+        BufferedImage copy = new BufferedImage(region.width, region.height, BufferedImage.TYPE_INT_RGB);
+        int[] target = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+        for (int row = 0; row < region.height; row++) {
+            int from = (region.y - bounds.y + row) * scanlineStride + region.x - bounds.x;
+            System.arraycopy(pixels, from, target, row * region.width, region.width);
+        }
+        return copy;
+    }
+
+    public boolean contains(int x, int y) {
+        return bounds.contains(x, y);
+    }
+
+    /**
+     * Returns the pixel at absolute screen coordinates as packed {@code 0xRRGGBB}.
+     */
+    public int rgbAt(int x, int y) {
+        if (!bounds.contains(x, y)) {
+            throw new IllegalArgumentException("Point " + x + "," + y + " is outside snapshot " + bounds);
+        }
+        return pixels[(y - bounds.y) * scanlineStride + (x - bounds.x)] & 0xFFFFFF;
+    }
+
+    public boolean isColorAt(Point location, Color color) {
+        return rgbAt(location.x, location.y) == (color.getRGB() & 0xFFFFFF);
+    }
+
+    public boolean isColorAt(Point location, Color color, ColorTolerance tolerance) {
+        return tolerance.matches(color.getRGB(), rgbAt(location.x, location.y));
+    }
+
+    public boolean matches(PackedColorSample sample) {
+        return sample.matches(rgbAt(sample.x(), sample.y()));
+    }
+}
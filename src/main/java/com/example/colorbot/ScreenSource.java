@@ -0,0 +1,35 @@
+package com.example.colorbot;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Where {@link ColorLibrary} reads pixels from. The default implementation is backed by
+ * {@link java.awt.Robot}; {@link SyntheticScreenSource} replays in-memory frames so the engine
+ * can run and be measured without a display.
+ */
+public interface ScreenSource {
+
+    /**
+     * Returns the pixel at screen coordinates as packed {@code 0xRRGGBB}.
+     */
+    int pixel(int x, int y);
+
+    /**
+     * Captures the given screen region.
+     */
+    BufferedImage region(Rectangle region);
+
+    /**
+     * Captures the whole screen.
+     */
+    BufferedImage frame();
+
+    /**
+     * Captures {@code region} for repeated reads; implementations may return a snapshot covering
+     * more than {@code region}.
+     */
+    default ScreenSnapshot snapshot(Rectangle region) {
+        return new ScreenSnapshot(region, region(region));
+    }
+}
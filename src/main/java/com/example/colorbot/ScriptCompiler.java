@@ -0,0 +1,594 @@
+package com.example.colorbot;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns script text into a {@link CompiledScript}. All regex matching happens here, once per
+ * source line, and every syntax error in the script is collected before anything runs.
+ */
+public final class ScriptCompiler {
+    private static final Pattern WAIT_PATTERN = Pattern.compile("WAIT\\s+(\\d+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PRESS_PATTERN = Pattern.compile("PRESS\\s+([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HOLD_PATTERN = Pattern.compile("HOLD\\s+(.+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RELEASE_PATTERN = Pattern.compile("RELEASE\\s+(.+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TYPE_PATTERN = Pattern.compile("TYPE\\s+\"?(.*?)\"?$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern MOVE_PATTERN = Pattern.compile("MOVE\\s+(-?\\d+|[A-Z_][A-Z0-9_]*)\\s+(-?\\d+|[A-Z_][A-Z0-9_]*)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern IF_TARGET_PATTERN = Pattern.compile(
+            "IF_TARGET_VISIBLE\\s+THEN\\s+(.+?)(?:\\s+ELSE\\s+(.+))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern IF_COLOR_PATTERN = Pattern.compile(
+            "IF_COLOR\\s+(-?\\d+)\\s+(-?\\d+)\\s+(?:(\\d{1,3})\\s+(\\d{1,3})\\s+(\\d{1,3})|(#?[A-F0-9]{6}))"
+                    + "\\s+THEN\\s+(.+?)(?:\\s+ELSE\\s+(.+))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern WAIT_UNTIL_COLOR_PATTERN = Pattern.compile(
+            "WAIT_UNTIL\\s+(NOT\\s+)?COLOR\\s+(-?\\d+)\\s+(-?\\d+)\\s+(?:(\\d{1,3})\\s+(\\d{1,3})\\s+(\\d{1,3})|(#?[A-F0-9]{6}))"
+                    + "(?:\\s+TIMEOUT\\s+(\\d+))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern FIND_COLOR_PATTERN = Pattern.compile(
+            "FIND_COLOR\\s+(-?\\d+)\\s+(-?\\d+)\\s+(-?\\d+)\\s+(-?\\d+)\\s+(?:(\\d{1,3})\\s+(\\d{1,3})\\s+(\\d{1,3})|(#?[A-F0-9]{6}))"
+                    + "\\s+INTO\\s+([A-Z0-9_]+)\\s+([A-Z0-9_]+)(?:\\s+STEP\\s+(\\d+))?"
+                    + "(?:\\s+THEN\\s+(.+?))?(?:\\s+ELSE\\s+(.+))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern FIND_IMAGE_PATTERN = Pattern.compile(
+            "FIND_IMAGE\\s+([A-Z0-9_-]+)\\s+(-?\\d+)\\s+(-?\\d+)\\s+(-?\\d+)\\s+(-?\\d+)"
+                    + "\\s+INTO\\s+([A-Z0-9_]+)\\s+([A-Z0-9_]+)(?:\\s+(NCC)(?:\\s+(\\d*\\.?\\d+))?)?"
+                    + "(?:\\s+THEN\\s+(.+?))?(?:\\s+ELSE\\s+(.+))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern CAPTURE_PATTERN = Pattern.compile("CAPTURE_TARGET", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FLUSH_INPUT_PATTERN = Pattern.compile("FLUSH_INPUT", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LOG_PATTERN = Pattern.compile("LOG\\s+(.+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CLICK_PATTERN = Pattern.compile("CLICK", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LOOP_PATTERN = Pattern.compile("LOOP\\s+(\\d+|FOREVER)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern END_LOOP_PATTERN = Pattern.compile("END_LOOP", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BLUE_EYE_PAUSE_PATTERN = Pattern.compile("MACRO\\.PAUSE\\('?(\\d+)'?\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BLUE_EYE_PRESS_PATTERN = Pattern.compile("KEYBOARD\\.PRESS\\s+KEYS?\\('?(.*?)'?\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BLUE_EYE_HOLD_PATTERN = Pattern.compile("KEYBOARD\\.HOLD\\s+KEYS?\\('?(.*?)'?\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BLUE_EYE_RELEASE_PATTERN = Pattern.compile("KEYBOARD\\.RELEASE\\s+KEYS?\\('?(.*?)'?\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BLUE_EYE_IF_COLOR_PATTERN = Pattern.compile(
+            "IF\\s+COLOR\\.AT\\s+COORDINATE\\s+IS\\s+(NOT\\s+)?\\(RGB\\s+'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\)\\s*BEGIN",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern BLUE_EYE_IF_COLOR_CONDITION_PATTERN = Pattern.compile(
+            "IF\\s+COLOR\\.AT\\s+COORDINATE\\s+IS\\s+(NOT\\s+)?\\(RGB\\s+'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\s*,?\\s*'?(\\d+)'?\\)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern BLUE_EYE_LOOP_PATTERN = Pattern.compile("MACRO\\.LOOP\\('?(\\d+|FOREVER)'?\\)\\s*BEGIN", Pattern.CASE_INSENSITIVE);
+    private static final Pattern END_PATTERN = Pattern.compile("END", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SET_PATTERN = Pattern.compile("SET\\s+([A-Z0-9_]+)\\s*=\\s*([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern IF_COOLDOWN_PATTERN = Pattern.compile(
+            "IF_COOLDOWN\\s+([A-Z0-9_]+)\\s+([A-Z0-9_]+)\\s+THEN\\s+(.+?)(?:\\s+ELSE\\s+(.+))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern WAIT_COOLDOWN_PATTERN = Pattern.compile("WAIT_COOLDOWN(?:\\s+MAX\\s+(\\d+))?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NEXT_COOLDOWN_PATTERN = Pattern.compile("NEXT_COOLDOWN\\s+INTO\\s+([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ROTATION_PATTERN = Pattern.compile("ROTATION(\\s+WAIT)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern END_ROTATION_PATTERN = Pattern.compile("END_ROTATION", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SKILL_PATTERN = Pattern.compile(
+            "SKILL\\s+([A-Z0-9_]+)\\s+KEY\\s+(\\S+)\\s+CD\\s+(\\d+)(?:\\s+PRIORITY\\s+(-?\\d+))?(\\s+DISABLED)?"
+                    + "(?:\\s+WHEN\\s+(NOT\\s+)?COLOR\\s+(-?\\d+)\\s+(-?\\d+)\\s+(?:(\\d{1,3})\\s+(\\d{1,3})\\s+(\\d{1,3})|(#?[A-F0-9]{6})))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ENABLE_PATTERN = Pattern.compile("ENABLE\\s+([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DISABLE_PATTERN = Pattern.compile("DISABLE\\s+([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BACKOFF_PATTERN = Pattern.compile("BACKOFF\\s+(.+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TOLERANCE_PATTERN = Pattern.compile("TOLERANCE\\s+(.+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DIGITS_PATTERN = Pattern.compile("\\d+");
+
+    private enum Closer {
+        NONE,
+        END,
+        END_LOOP
+    }
+
+    private final String[] lines;
+    private final List<String> errors = new ArrayList<>();
+    private int index;
+    private BackoffPolicy currentBackoff;
+    private ColorTolerance currentTolerance = ColorTolerance.EXACT;
+    private int backoffSites;
+    private int imageSites;
+    private final List<String> variables = new ArrayList<>();
+    private final Map<String, Integer> variableIndexes = new HashMap<>();
+    private final List<String> skills = new ArrayList<>();
+    private final Map<String, Integer> skillIndexes = new HashMap<>();
+    private final List<ScriptInstruction.IfCooldown> cooldowns = new ArrayList<>();
+    private final List<ScriptInstruction.Rotation> rotations = new ArrayList<>();
+
+    private ScriptCompiler(String scriptText) {
+        this.lines = scriptText.split("\\R");
+    }
+
+    /**
+     * Compiles the whole script, throwing with every syntax error found if any line is invalid.
+     */
+    public static CompiledScript compile(String scriptText) throws ColorScriptEngine.ScriptCompileException {
+        ScriptCompiler compiler = new ScriptCompiler(scriptText == null ? "" : scriptText);
+        List<ScriptInstruction> instructions = compiler.parseBlock(Closer.NONE, 0);
+        if (!compiler.errors.isEmpty()) {
+            throw new ColorScriptEngine.ScriptCompileException(compiler.errors);
+        }
+        return new CompiledScript(instructions, compiler.lines.length, compiler.backoffSites, compiler.imageSites,
+                compiler.variables, compiler.skills, compiler.cooldowns, compiler.rotations);
+    }
+
+    private List<ScriptInstruction> parseBlock(Closer closer, int openerLine) {
+        List<ScriptInstruction> block = new ArrayList<>();
+        while (index < lines.length) {
+            int lineNumber = index + 1;
+            String line = lines[index++].trim();
+            if (isSkippable(line)) {
+                continue;
+            }
+            if (END_ROTATION_PATTERN.matcher(line).matches()) {
+                errors.add("Line " + lineNumber + ": END_ROTATION without matching ROTATION");
+                continue;
+            }
+            if (END_LOOP_PATTERN.matcher(line).matches()) {
+                if (closer == Closer.END_LOOP) {
+                    return block;
+                }
+                errors.add("Line " + lineNumber + ": END_LOOP without matching LOOP");
+                continue;
+            }
+            if (END_PATTERN.matcher(line).matches()) {
+                if (closer == Closer.END) {
+                    return block;
+                }
+                errors.add("Line " + lineNumber + ": END without matching BEGIN");
+                continue;
+            }
+            try {
+                ScriptInstruction instruction = parseStatement(line, lineNumber);
+                if (instruction != null) {
+                    block.add(instruction);
+                }
+            } catch (IllegalArgumentException e) {
+                errors.add("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        if (closer == Closer.END) {
+            errors.add("Line " + openerLine + ": block missing END");
+        } else if (closer == Closer.END_LOOP) {
+            errors.add("Line " + openerLine + ": LOOP missing END_LOOP");
+        }
+        return block;
+    }
+
+    /**
+     * Parses one statement; returns {@code null} for compile-time directives such as BACKOFF and TOLERANCE.
+     */
+    private ScriptInstruction parseStatement(String line, int lineNumber) {
+        String label = label(lineNumber, line);
+        Matcher backoffMatcher = BACKOFF_PATTERN.matcher(line);
+        if (backoffMatcher.matches()) {
+            String spec = backoffMatcher.group(1).trim();
+            // applies to every color check that follows in the script text
+            currentBackoff = spec.equalsIgnoreCase("default") ? null : BackoffPolicy.parse(spec);
+            return null;
+        }
+        Matcher toleranceMatcher = TOLERANCE_PATTERN.matcher(line);
+        if (toleranceMatcher.matches()) {
+            // like BACKOFF, applies to every color check that follows
+            currentTolerance = ColorTolerance.parse(toleranceMatcher.group(1));
+            return null;
+        }
+        Matcher blueEyeLoop = BLUE_EYE_LOOP_PATTERN.matcher(line);
+        if (blueEyeLoop.matches()) {
+            int count = parseLoopCount(blueEyeLoop.group(1));
+            return new ScriptInstruction.Loop(lineNumber, label, count, parseBlock(Closer.END, lineNumber));
+        }
+        Matcher blueEyeIf = BLUE_EYE_IF_COLOR_PATTERN.matcher(line);
+        if (blueEyeIf.matches()) {
+            List<ScriptInstruction.ColorCondition> conditions = List.of(toCondition(blueEyeIf));
+            BackoffPolicy backoff = currentBackoff;
+            int site = backoffSites++;
+            return new ScriptInstruction.ColorBlock(lineNumber, label, conditions, boundsOf(conditions),
+                    parseBlock(Closer.END, lineNumber), backoff, site);
+        }
+        if (line.contains("&&")) {
+            return parseAndBlock(line, lineNumber, label);
+        }
+        Matcher rotationMatcher = ROTATION_PATTERN.matcher(line);
+        if (rotationMatcher.matches()) {
+            return parseRotation(rotationMatcher.group(1) != null, lineNumber, label);
+        }
+        Matcher loopMatcher = LOOP_PATTERN.matcher(line);
+        if (loopMatcher.matches()) {
+            int count = parseLoopCount(loopMatcher.group(1));
+            return new ScriptInstruction.Loop(lineNumber, label, count, parseBlock(Closer.END_LOOP, lineNumber));
+        }
+        return parseAction(line, lineNumber);
+    }
+
+    /**
+     * Reads SKILL lines up to END_ROTATION; errors in single skills are collected like any other line's.
+     */
+    private ScriptInstruction parseRotation(boolean waitForReady, int lineNumber, String label) {
+        List<ScriptInstruction.RotationSkill> skills = new ArrayList<>();
+        while (index < lines.length) {
+            int skillLine = index + 1;
+            String line = lines[index++].trim();
+            if (isSkippable(line)) {
+                continue;
+            }
+            if (END_ROTATION_PATTERN.matcher(line).matches()) {
+                if (skills.isEmpty()) {
+                    throw new IllegalArgumentException("ROTATION needs at least one SKILL");
+                }
+                ScriptInstruction.Rotation rotation = new ScriptInstruction.Rotation(lineNumber, label,
+                        List.copyOf(skills), waitForReady, rotations.size(), currentBackoff, backoffSites++);
+                rotations.add(rotation);
+                return rotation;
+            }
+            try {
+                ScriptInstruction.RotationSkill skill = parseSkill(line, skillLine);
+                for (ScriptInstruction.RotationSkill other : skills) {
+                    if (other.name().equals(skill.name())) {
+                        throw new IllegalArgumentException("Skill " + skill.name() + " is already declared at line " + other.line());
+                    }
+                }
+                skills.add(skill);
+            } catch (IllegalArgumentException e) {
+                errors.add("Line " + skillLine + ": " + e.getMessage());
+            }
+        }
+        throw new IllegalArgumentException("ROTATION missing END_ROTATION");
+    }
+
+    private ScriptInstruction.RotationSkill parseSkill(String line, int lineNumber) {
+        Matcher matcher = SKILL_PATTERN.matcher(line);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Expected SKILL <name> KEY <key> CD <ms> [PRIORITY <n>] [DISABLED]"
+                    + " [WHEN [NOT] COLOR x y <color>] or END_ROTATION");
+        }
+        String name = normalizeVar(matcher.group(1));
+        String key = matcher.group(2);
+        int priority = matcher.group(4) != null ? Integer.parseInt(matcher.group(4)) : 0;
+        PackedColorSample precondition = null;
+        if (matcher.group(7) != null) {
+            precondition = new PackedColorSample(Integer.parseInt(matcher.group(7)), Integer.parseInt(matcher.group(8)),
+                    parseColorOperand(matcher, 9, 12), currentTolerance);
+        }
+        return new ScriptInstruction.RotationSkill(lineNumber, name, skillIndex(name), key, KeyName.toKeyCode(key),
+                Long.parseLong(matcher.group(3)), priority, matcher.group(5) == null, precondition,
+                matcher.group(6) != null);
+    }
+
+    private ScriptInstruction parseAndBlock(String line, int lineNumber, String label) {
+        StringBuilder combined = new StringBuilder(line);
+        while (index < lines.length && !endsWithBegin(combined)) {
+            String next = lines[index].trim();
+            if (isSkippable(next)) {
+                break;
+            }
+            combined.append(' ').append(next);
+            index++;
+        }
+        if (!endsWithBegin(combined)) {
+            throw new IllegalArgumentException("AND conditions must end with BEGIN");
+        }
+        String withoutBegin = combined.substring(0, combined.length() - "begin".length()).trim();
+        List<ScriptInstruction.ColorCondition> conditions = new ArrayList<>();
+        for (String part : withoutBegin.split("\\s*&&\\s*")) {
+            Matcher conditionMatcher = BLUE_EYE_IF_COLOR_CONDITION_PATTERN.matcher(part.trim());
+            if (!conditionMatcher.matches()) {
+                throw new IllegalArgumentException("Invalid AND color condition: " + part.trim());
+            }
+            conditions.add(toCondition(conditionMatcher));
+        }
+        BackoffPolicy backoff = currentBackoff;
+        int site = backoffSites++;
+        return new ScriptInstruction.ColorBlock(lineNumber, label, List.copyOf(conditions), boundsOf(conditions),
+                parseBlock(Closer.END, lineNumber), backoff, site);
+    }
+
+    private ScriptInstruction parseAction(String line, int lineNumber) {
+        String label = label(lineNumber, line);
+        Matcher setMatcher = SET_PATTERN.matcher(line);
+        if (setMatcher.matches()) {
+            return parseSet(setMatcher, lineNumber, label);
+        }
+        Matcher enableMatcher = ENABLE_PATTERN.matcher(line);
+        if (enableMatcher.matches()) {
+            String skill = normalizeVar(enableMatcher.group(1));
+            return new ScriptInstruction.SkillToggle(lineNumber, label, skill, skillIndex(skill), true);
+        }
+        Matcher disableMatcher = DISABLE_PATTERN.matcher(line);
+        if (disableMatcher.matches()) {
+            String skill = normalizeVar(disableMatcher.group(1));
+            return new ScriptInstruction.SkillToggle(lineNumber, label, skill, skillIndex(skill), false);
+        }
+        Matcher waitMatcher = WAIT_PATTERN.matcher(line);
+        if (waitMatcher.matches()) {
+            return new ScriptInstruction.Wait(lineNumber, label, Long.parseLong(waitMatcher.group(1)));
+        }
+        Matcher waitUntilMatcher = WAIT_UNTIL_COLOR_PATTERN.matcher(line);
+        if (waitUntilMatcher.matches()) {
+            PackedColorSample sample = new PackedColorSample(Integer.parseInt(waitUntilMatcher.group(2)),
+                    Integer.parseInt(waitUntilMatcher.group(3)), parseColorOperand(waitUntilMatcher, 4, 7), currentTolerance);
+            long timeoutMs = waitUntilMatcher.group(8) != null ? Long.parseLong(waitUntilMatcher.group(8)) : -1;
+            return new ScriptInstruction.WaitUntilColor(lineNumber, label, sample,
+                    waitUntilMatcher.group(1) == null, timeoutMs);
+        }
+        Matcher pauseMatcher = BLUE_EYE_PAUSE_PATTERN.matcher(line);
+        if (pauseMatcher.matches()) {
+            return new ScriptInstruction.Wait(lineNumber, label, Long.parseLong(pauseMatcher.group(1)));
+        }
+        Matcher pressMatcher = PRESS_PATTERN.matcher(line);
+        if (pressMatcher.matches()) {
+            return toPress(pressMatcher.group(1), lineNumber, label);
+        }
+        Matcher blueEyePress = BLUE_EYE_PRESS_PATTERN.matcher(line);
+        if (blueEyePress.matches()) {
+            return toPress(blueEyePress.group(1), lineNumber, label);
+        }
+        Matcher holdMatcher = HOLD_PATTERN.matcher(line);
+        if (holdMatcher.matches()) {
+            String key = holdMatcher.group(1).trim();
+            return new ScriptInstruction.Hold(lineNumber, label, key, KeyName.toKeyCode(key));
+        }
+        Matcher blueEyeHold = BLUE_EYE_HOLD_PATTERN.matcher(line);
+        if (blueEyeHold.matches()) {
+            String key = blueEyeHold.group(1);
+            return new ScriptInstruction.Hold(lineNumber, label, key, KeyName.toKeyCode(key));
+        }
+        Matcher releaseMatcher = RELEASE_PATTERN.matcher(line);
+        if (releaseMatcher.matches()) {
+            String key = releaseMatcher.group(1).trim();
+            return new ScriptInstruction.Release(lineNumber, label, key, KeyName.toKeyCode(key));
+        }
+        Matcher blueEyeRelease = BLUE_EYE_RELEASE_PATTERN.matcher(line);
+        if (blueEyeRelease.matches()) {
+            String key = blueEyeRelease.group(1);
+            return new ScriptInstruction.Release(lineNumber, label, key, KeyName.toKeyCode(key));
+        }
+        Matcher typeMatcher = TYPE_PATTERN.matcher(line);
+        if (typeMatcher.matches()) {
+            return new ScriptInstruction.Type(lineNumber, label, typeMatcher.group(1));
+        }
+        Matcher moveMatcher = MOVE_PATTERN.matcher(line);
+        if (moveMatcher.matches()) {
+            String xToken = moveMatcher.group(1);
+            String yToken = moveMatcher.group(2);
+            String xVar = isInteger(xToken) ? null : normalizeVar(xToken);
+            String yVar = isInteger(yToken) ? null : normalizeVar(yToken);
+            return new ScriptInstruction.Move(lineNumber, label,
+                    xVar == null ? Integer.parseInt(xToken) : 0, yVar == null ? Integer.parseInt(yToken) : 0,
+                    xVar, yVar, xVar == null ? -1 : variableIndex(xVar), yVar == null ? -1 : variableIndex(yVar));
+        }
+        Matcher findMatcher = FIND_COLOR_PATTERN.matcher(line);
+        if (findMatcher.matches()) {
+            return parseFindColor(findMatcher, lineNumber, label);
+        }
+        Matcher findImageMatcher = FIND_IMAGE_PATTERN.matcher(line);
+        if (findImageMatcher.matches()) {
+            return parseFindImage(findImageMatcher, lineNumber, label);
+        }
+        if (CAPTURE_PATTERN.matcher(line).matches()) {
+            return new ScriptInstruction.CaptureTarget(lineNumber, label);
+        }
+        if (FLUSH_INPUT_PATTERN.matcher(line).matches()) {
+            return new ScriptInstruction.FlushInput(lineNumber, label);
+        }
+        Matcher targetMatcher = IF_TARGET_PATTERN.matcher(line);
+        if (targetMatcher.matches()) {
+            return new ScriptInstruction.IfTarget(lineNumber, label,
+                    parseNestedAction(targetMatcher.group(1), lineNumber),
+                    parseNestedAction(targetMatcher.group(2), lineNumber));
+        }
+        Matcher colorMatcher = IF_COLOR_PATTERN.matcher(line);
+        if (colorMatcher.matches()) {
+            int x = Integer.parseInt(colorMatcher.group(1));
+            int y = Integer.parseInt(colorMatcher.group(2));
+            PackedColorSample sample = new PackedColorSample(x, y, parseColorOperand(colorMatcher, 3, 6), currentTolerance);
+            return new ScriptInstruction.IfColor(lineNumber, label, sample,
+                    parseNestedAction(colorMatcher.group(7), lineNumber),
+                    parseNestedAction(colorMatcher.group(8), lineNumber),
+                    currentBackoff, backoffSites++);
+        }
+        Matcher cooldownMatcher = IF_COOLDOWN_PATTERN.matcher(line);
+        if (cooldownMatcher.matches()) {
+            String lastVar = normalizeVar(cooldownMatcher.group(1));
+            String cooldownVar = normalizeVar(cooldownMatcher.group(2));
+            ScriptInstruction.IfCooldown cooldown = new ScriptInstruction.IfCooldown(lineNumber, label, lastVar, cooldownVar,
+                    variableIndex(lastVar), variableIndex(cooldownVar),
+                    parseNestedAction(cooldownMatcher.group(3), lineNumber),
+                    parseNestedAction(cooldownMatcher.group(4), lineNumber));
+            cooldowns.add(cooldown);
+            return cooldown;
+        }
+        Matcher waitCooldownMatcher = WAIT_COOLDOWN_PATTERN.matcher(line);
+        if (waitCooldownMatcher.matches()) {
+            long maxMs = waitCooldownMatcher.group(1) != null ? Long.parseLong(waitCooldownMatcher.group(1)) : -1;
+            return new ScriptInstruction.WaitCooldown(lineNumber, label, maxMs);
+        }
+        Matcher nextCooldownMatcher = NEXT_COOLDOWN_PATTERN.matcher(line);
+        if (nextCooldownMatcher.matches()) {
+            String var = normalizeVar(nextCooldownMatcher.group(1));
+            return new ScriptInstruction.NextCooldown(lineNumber, label, var, variableIndex(var));
+        }
+        Matcher logMatcher = LOG_PATTERN.matcher(line);
+        if (logMatcher.matches()) {
+            return new ScriptInstruction.Log(lineNumber, label, logMatcher.group(1));
+        }
+        if (CLICK_PATTERN.matcher(line).matches()) {
+            return new ScriptInstruction.Click(lineNumber, label);
+        }
+        throw new IllegalArgumentException("Unknown instruction: " + line);
+    }
+
+    private ScriptInstruction parseNestedAction(String action, int lineNumber) {
+        if (action == null) {
+            return null;
+        }
+        return parseAction(action.trim(), lineNumber);
+    }
+
+    private ScriptInstruction parseFindColor(Matcher matcher, int lineNumber, String label) {
+        Rectangle region = corners(matcher, 1);
+        int step = matcher.group(11) != null ? Integer.parseInt(matcher.group(11)) : 1;
+        if (step < 1) {
+            throw new IllegalArgumentException("FIND_COLOR STEP must be at least 1");
+        }
+        String xVar = normalizeVar(matcher.group(9));
+        String yVar = normalizeVar(matcher.group(10));
+        return new ScriptInstruction.FindColor(lineNumber, label, region, parseColorOperand(matcher, 5, 8),
+                currentTolerance, step, xVar, yVar, variableIndex(xVar), variableIndex(yVar),
+                parseNestedAction(matcher.group(12), lineNumber),
+                parseNestedAction(matcher.group(13), lineNumber));
+    }
+
+    private ScriptInstruction parseFindImage(Matcher matcher, int lineNumber, String label) {
+        Rectangle region = corners(matcher, 2);
+        TemplateMatcher.Mode mode;
+        double threshold = 1;
+        if (matcher.group(8) != null) {
+            mode = TemplateMatcher.Mode.NCC;
+            threshold = matcher.group(9) != null
+                    ? Double.parseDouble(matcher.group(9))
+                    : TemplateMatcher.DEFAULT_NCC_THRESHOLD;
+            if (threshold <= 0 || threshold > 1) {
+                throw new IllegalArgumentException("FIND_IMAGE NCC threshold must be above 0 and at most 1");
+            }
+        } else {
+            mode = currentTolerance.isExact() ? TemplateMatcher.Mode.EXACT : TemplateMatcher.Mode.TOLERANCE;
+        }
+        String xVar = normalizeVar(matcher.group(6));
+        String yVar = normalizeVar(matcher.group(7));
+        return new ScriptInstruction.FindImage(lineNumber, label, matcher.group(1), region, mode,
+                currentTolerance, threshold, xVar, yVar, variableIndex(xVar), variableIndex(yVar),
+                parseNestedAction(matcher.group(10), lineNumber),
+                parseNestedAction(matcher.group(11), lineNumber), imageSites++);
+    }
+
+    /**
+     * Four coordinate groups starting at {@code firstGroup}; corners are inclusive and may be given in either order.
+     */
+    private static Rectangle corners(Matcher matcher, int firstGroup) {
+        int x1 = Integer.parseInt(matcher.group(firstGroup));
+        int y1 = Integer.parseInt(matcher.group(firstGroup + 1));
+        int x2 = Integer.parseInt(matcher.group(firstGroup + 2));
+        int y2 = Integer.parseInt(matcher.group(firstGroup + 3));
+        return new Rectangle(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1) + 1, Math.abs(y2 - y1) + 1);
+    }
+
+    private static boolean isInteger(String token) {
+        return token.matches("-?\\d+");
+    }
+
+    private ScriptInstruction parseSet(Matcher setMatcher, int lineNumber, String label) {
+        String name = normalizeVar(setMatcher.group(1));
+        int index = variableIndex(name);
+        String rawValue = setMatcher.group(2);
+        if (rawValue.equalsIgnoreCase("timer")) {
+            return new ScriptInstruction.SetVariable(lineNumber, label, name, index, ScriptInstruction.ValueKind.TIMER,
+                    0, null, -1);
+        }
+        if (DIGITS_PATTERN.matcher(rawValue).matches()) {
+            return new ScriptInstruction.SetVariable(lineNumber, label, name, index, ScriptInstruction.ValueKind.LITERAL,
+                    Long.parseLong(rawValue), null, -1);
+        }
+        String reference = normalizeVar(rawValue);
+        return new ScriptInstruction.SetVariable(lineNumber, label, name, index, ScriptInstruction.ValueKind.VARIABLE,
+                0, reference, variableIndex(reference));
+    }
+
+    private ScriptInstruction.Press toPress(String key, int lineNumber, String label) {
+        int keyCode = KeyName.toKeyCode(key);
+        String skillKey = normalizeVar(key.replace("{", "").replace("}", ""));
+        String slotSkill = null;
+        try {
+            int slot = Integer.parseInt(skillKey) - 2; // e.g., key 3 -> skill1, key 4 -> skill2, etc.
+            if (slot >= 1) {
+                slotSkill = "skill" + slot;
+            }
+        } catch (NumberFormatException ignored) {
+            // non-numeric keys rely on direct names only
+        }
+        return new ScriptInstruction.Press(lineNumber, label, key, keyCode, skillKey, slotSkill,
+                skillIndex(skillKey), slotSkill == null ? -1 : skillIndex(slotSkill));
+    }
+
+    /**
+     * Frame index of a normalized variable name, assigned in order of first use.
+     */
+    private int variableIndex(String name) {
+        return indexOf(name, variables, variableIndexes);
+    }
+
+    private int skillIndex(String name) {
+        return indexOf(name, skills, skillIndexes);
+    }
+
+    private static int indexOf(String name, List<String> names, Map<String, Integer> indexes) {
+        Integer index = indexes.get(name);
+        if (index == null) {
+            index = names.size();
+            names.add(name);
+            indexes.put(name, index);
+        }
+        return index;
+    }
+
+    /**
+     * Reads either the {@code r g b} groups starting at {@code rgbGroup} or the hex group as packed {@code 0xRRGGBB}.
+     */
+    private static int parseColorOperand(Matcher matcher, int rgbGroup, int hexGroup) {
+        if (matcher.group(hexGroup) != null) {
+            return ColorLibrary.parseColor(matcher.group(hexGroup)).getRGB() & 0xFFFFFF;
+        }
+        return packRgb(Integer.parseInt(matcher.group(rgbGroup)),
+                Integer.parseInt(matcher.group(rgbGroup + 1)),
+                Integer.parseInt(matcher.group(rgbGroup + 2)));
+    }
+
+    private static int packRgb(int r, int g, int b) {
+        if (r > 255 || g > 255 || b > 255) {
+            throw new IllegalArgumentException("Color components must be between 0 and 255");
+        }
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private ScriptInstruction.ColorCondition toCondition(Matcher matcher) {
+        boolean negate = matcher.group(1) != null && !matcher.group(1).isBlank();
+        int r = Integer.parseInt(matcher.group(2));
+        int g = Integer.parseInt(matcher.group(3));
+        int b = Integer.parseInt(matcher.group(4));
+        int x = Integer.parseInt(matcher.group(5));
+        int y = Integer.parseInt(matcher.group(6));
+        return new ScriptInstruction.ColorCondition(new PackedColorSample(x, y, packRgb(r, g, b), currentTolerance), negate);
+    }
+
+    private static Rectangle boundsOf(List<ScriptInstruction.ColorCondition> conditions) {
+        Rectangle bounds = null;
+        for (ScriptInstruction.ColorCondition condition : conditions) {
+            Rectangle pixel = new Rectangle(condition.sample().x(), condition.sample().y(), 1, 1);
+            bounds = bounds == null ? pixel : bounds.union(pixel);
+        }
+        return bounds;
+    }
+
+    private int parseLoopCount(String countToken) {
+        return countToken.equalsIgnoreCase("forever") ? -1 : Integer.parseInt(countToken);
+    }
+
+    private static boolean endsWithBegin(CharSequence text) {
+        int length = text.length();
+        return length >= 5 && text.subSequence(length - 5, length).toString().equalsIgnoreCase("begin");
+    }
+
+    private static boolean isSkippable(String line) {
+        return line.isEmpty() || line.startsWith("#") || line.startsWith("//");
+    }
+
+    private static String label(int lineNumber, String line) {
+        return "Line " + lineNumber + ": " + line;
+    }
+
+    static String normalizeVar(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.colorbot;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+/**
+ * Typed instruction tree produced by {@link ScriptCompiler}. Every operand is resolved at
+ * compile time (key codes, packed colors, normalized variable names) so {@link ColorScriptEngine}
+ * can walk the tree without any regex, string parsing or allocation.
+ * <p>
+ * Variables and skills are also resolved to indexes into {@link CompiledScript#variables()} and
+ * {@link CompiledScript#skills()}, the slots of the engine's per-run frame; names are kept for
+ * logging and the shared cooldown store. An unused index is {@code -1}.
+ */
+public sealed interface ScriptInstruction {
+
+    /**
+     * 1-based source line the instruction was compiled from.
+     */
+    int line();
+
+    /**
+     * Precomputed "Line N: text" label reported in the executed-lines list.
+     */
+    String label();
+
+    record Wait(int line, String label, long delayMs) implements ScriptInstruction {
+    }
+
+    /**
+     * Key tap. {@code skillKey} and {@code slotSkill} are the skill names checked by
+     * ENABLE/DISABLE when the press is the action of an IF_COOLDOWN.
+     */
+    record Press(int line, String label, String key, int keyCode, String skillKey, String slotSkill,
+                 int skillIndex, int slotSkillIndex) implements ScriptInstruction {
+    }
+
+    record Hold(int line, String label, String key, int keyCode) implements ScriptInstruction {
+    }
+
+    record Release(int line, String label, String key, int keyCode) implements ScriptInstruction {
+    }
+
+    record Type(int line, String label, String text) implements ScriptInstruction {
+    }
+
+    /**
+     * Mouse move; {@code xVar}/{@code yVar}, when set, name variables (e.g. filled by FIND_COLOR)
+     * read at run time instead of the literal coordinate.
+     */
+    record Move(int line, String label, int x, int y, String xVar, String yVar, int xIndex, int yIndex)
+            implements ScriptInstruction {
+    }
+
+    record Click(int line, String label) implements ScriptInstruction {
+    }
+
+    record CaptureTarget(int line, String label) implements ScriptInstruction {
+    }
+
+    /**
+     * Waits until all input queued so far has been delivered.
+     */
+    record FlushInput(int line, String label) implements ScriptInstruction {
+    }
+
+    record Log(int line, String label, String message) implements ScriptInstruction {
+    }
+
+    record IfTarget(int line, String label, ScriptInstruction thenAction, ScriptInstruction elseAction)
+            implements ScriptInstruction {
+    }
+
+    /**
+     * Single pixel check. {@code backoff} is the policy applied on a miss ({@code null} uses the
+     * engine default) and {@code backoffSite} indexes the per-run back-off counters.
+     */
+    record IfColor(int line, String label, PackedColorSample sample,
+                   ScriptInstruction thenAction, ScriptInstruction elseAction,
+                   BackoffPolicy backoff, int backoffSite) implements ScriptInstruction {
+    }
+
+    /**
+     * {@code WAIT_UNTIL [NOT] COLOR}: blocks until the pixel matches ({@code present}) or stops
+     * matching the color. A negative {@code timeoutMs} waits until the script is stopped.
+     */
+    record WaitUntilColor(int line, String label, PackedColorSample sample, boolean present, long timeoutMs)
+            implements ScriptInstruction {
+    }
+
+    /**
+     * {@code FIND_COLOR}: searches {@code region} of one capture and stores the first hit in
+     * {@code xVar}/{@code yVar} ({@code -1} when not found) before running the matching action.
+     */
+    record FindColor(int line, String label, Rectangle region, int rgb, ColorTolerance tolerance, int step,
+                     String xVar, String yVar, int xIndex, int yIndex,
+                     ScriptInstruction thenAction, ScriptInstruction elseAction)
+            implements ScriptInstruction {
+    }
+
+    /**
+     * {@code template} is a {@link TemplateStore} name, loaded when the instruction first runs; the
+     * variables receive the center of the match.
+     */
+    record FindImage(int line, String label, String template, Rectangle region, TemplateMatcher.Mode mode,
+                     ColorTolerance tolerance, double threshold, String xVar, String yVar, int xIndex, int yIndex,
+                     ScriptInstruction thenAction, ScriptInstruction elseAction, int imageSite)
+            implements ScriptInstruction {
+    }
+
+    /**
+     * Blue Eye style {@code If Color.At ... begin ... end} block; several conditions are AND-ed.
+     * {@code bounds} is the smallest rectangle holding every condition's pixel.
+     */
+    record ColorBlock(int line, String label, List<ColorCondition> conditions, Rectangle bounds,
+                      List<ScriptInstruction> body, BackoffPolicy backoff, int backoffSite)
+            implements ScriptInstruction {
+    }
+
+    record ColorCondition(PackedColorSample sample, boolean negate) {
+    }
+
+    /**
+     * {@code LOOP}/{@code Macro.Loop} block; a negative count repeats forever.
+     */
+    record Loop(int line, String label, int count, List<ScriptInstruction> body) implements ScriptInstruction {
+        public boolean infinite() {
+            return count < 0;
+        }
+    }
+
+    enum ValueKind {
+        LITERAL,
+        TIMER,
+        VARIABLE
+    }
+
+    record SetVariable(int line, String label, String name, int index, ValueKind kind, long literal,
+                       String reference, int referenceIndex) implements ScriptInstruction {
+    }
+
+    record IfCooldown(int line, String label, String lastVar, String cooldownVar, int lastIndex, int cooldownIndex,
+                      ScriptInstruction thenAction, ScriptInstruction elseAction) implements ScriptInstruction {
+    }
+
+    /**
+     * {@code WAIT_COOLDOWN [MAX ms]}: sleeps until the next IF_COOLDOWN of the script with an
+     * enabled action becomes ready, at most {@code maxMs} when that is not negative.
+     */
+    record WaitCooldown(int line, String label, long maxMs) implements ScriptInstruction {
+    }
+
+    /**
+     * {@code NEXT_COOLDOWN INTO var}: stores the milliseconds until the next IF_COOLDOWN becomes
+     * ready, {@code 0} if one is ready now and {@code -1} if none is pending.
+     */
+    record NextCooldown(int line, String label, String var, int index) implements ScriptInstruction {
+    }
+
+    /**
+     * {@code ROTATION [WAIT] ... END_ROTATION}: each run of the block fires the highest-priority
+     * ready skill whose color precondition holds. With {@code waitForReady}, a run that finds no
+     * ready skill sleeps until the next one comes off cooldown and tries again; when ready skills
+     * are only held back by their preconditions, or every skill is disabled, it applies
+     * {@code backoff} like a missed color check instead.
+     * {@code rotationSite} indexes {@link CompiledScript#rotations()} and the per-run schedulers.
+     */
+    record Rotation(int line, String label, List<RotationSkill> skills, boolean waitForReady, int rotationSite,
+                    BackoffPolicy backoff, int backoffSite)
+            implements ScriptInstruction {
+    }
+
+    /**
+     * {@code SKILL name KEY key CD ms [PRIORITY n] [DISABLED] [WHEN [NOT] COLOR x y color]}; higher
+     * priorities fire first. {@code skillIndex} is shared with ENABLE/DISABLE of the same name and
+     * {@code precondition} is null when the skill has none.
+     */
+    record RotationSkill(int line, String name, int skillIndex, String key, int keyCode, long cooldownMs,
+                         int priority, boolean enabled, PackedColorSample precondition, boolean negate) {
+    }
+
+    record SkillToggle(int line, String label, String skill, int index, boolean enabled) implements ScriptInstruction {
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.colorbot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-source-line timings of one script run, written by the script thread and readable live from
+ * any other thread. Each line records how often it ran, its total and longest wall time, and how
+ * much of that went to pixel reads, sleeping (WAIT and miss back-off) and input.
+ * <p>
+ * LOOP lines record one execution per iteration but no time; a color block line times its checks
+ * and back-off without its body, so every nanosecond is counted on exactly one line.
+ */
+public final class ScriptProfiler {
+    public enum Category {
+        PIXEL,
+        SLEEP,
+        INPUT
+    }
+
+    public record LineStats(int line, String source, long count, long totalNanos, long maxNanos,
+                            long pixelNanos, long sleepNanos, long inputNanos) {
+        public double totalMs() {
+            return totalNanos / 1e6;
+        }
+    }
+
+    private final String[] sources;
+    private final LongAdder[] counts;
+    private final LongAdder[] totals;
+    private final LongAccumulator[] maxima;
+    private final LongAdder[][] categories;
+
+    public ScriptProfiler(CompiledScript script) {
+        int lines = script.lineCount() + 1;
+        this.sources = new String[lines];
+        this.counts = new LongAdder[lines];
+        this.totals = new LongAdder[lines];
+        this.maxima = new LongAccumulator[lines];
+        this.categories = new LongAdder[Category.values().length][lines];
+        for (int line = 0; line < lines; line++) {
+            counts[line] = new LongAdder();
+            totals[line] = new LongAdder();
+            maxima[line] = new LongAccumulator(Math::max, 0);
+            for (LongAdder[] category : categories) {
+                category[line] = new LongAdder();
+            }
+        }
+        collectSources(script.instructions());
+    }
+
+    private void collectSources(List<ScriptInstruction> block) {
+        for (ScriptInstruction instruction : block) {
+            if (instruction.line() < sources.length && sources[instruction.line()] == null) {
+                String label = instruction.label();
+                int colon = label.indexOf(": ");
+                sources[instruction.line()] = colon >= 0 ? label.substring(colon + 2) : label;
+            }
+            if (instruction instanceof ScriptInstruction.Loop loop) {
+                collectSources(loop.body());
+            } else if (instruction instanceof ScriptInstruction.ColorBlock colorBlock) {
+                collectSources(colorBlock.body());
+            }
+        }
+    }
+
+    /**
+     * One execution of {@code line} that took {@code nanos} of wall time.
+     */
+    void record(int line, long nanos) {
+        if (line <= 0 || line >= counts.length) {
+            return;
+        }
+        counts[line].increment();
+        totals[line].add(nanos);
+        maxima[line].accumulate(nanos);
+    }
+
+    /**
+     * Counts an execution without timing it, for LOOP iterations.
+     */
+    void count(int line) {
+        if (line > 0 && line < counts.length) {
+            counts[line].increment();
+        }
+    }
+
+    /**
+     * Time spent by {@code line} inside one category; part of, not in addition to, its wall time.
+     */
+    void add(int line, Category category, long nanos) {
+        if (line > 0 && line < counts.length) {
+            categories[category.ordinal()][line].add(nanos);
+        }
+    }
+
+    /**
+     * Lines that ran at least once, hottest (most total time) first.
+     */
+    public List<LineStats> snapshot() {
+        List<LineStats> stats = new ArrayList<>();
+        for (int line = 1; line < counts.length; line++) {
+            long count = counts[line].sum();
+            if (count == 0) {
+                continue;
+            }
+            stats.add(new LineStats(line, sources[line] == null ? "" : sources[line], count, totals[line].sum(),
+                    maxima[line].get(), categories[Category.PIXEL.ordinal()][line].sum(),
+                    categories[Category.SLEEP.ordinal()][line].sum(), categories[Category.INPUT.ordinal()][line].sum()));
+        }
+        stats.sort(Comparator.comparingLong(LineStats::totalNanos).reversed().thenComparingInt(LineStats::line));
+        return stats;
+    }
+
+    /**
+     * The snapshot as CSV with a header row; times in milliseconds.
+     */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder("line,count,total_ms,max_ms,mean_ms,pixel_ms,sleep_ms,input_ms,source\n");
+        for (LineStats stats : snapshot()) {
+            csv.append(stats.line()).append(',')
+                    .append(stats.count()).append(',')
+                    .append(ms(stats.totalNanos())).append(',')
+                    .append(ms(stats.maxNanos())).append(',')
+                    .append(ms(stats.totalNanos() / stats.count())).append(',')
+                    .append(ms(stats.pixelNanos())).append(',')
+                    .append(ms(stats.sleepNanos())).append(',')
+                    .append(ms(stats.inputNanos())).append(',')
+                    .append('"').append(stats.source().replace("\"", "\"\"")).append('"')
+                    .append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.colorbot;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Headless {@link ScreenSource} that plays back a fixed sequence of frames, e.g. PNG screenshots
+ * recorded on a bot machine. Pixels outside a frame read as black, like an off-screen capture.
+ * Frames only change when {@link #advance()} or {@link #setFrameIndex(int)} is called, so runs
+ * are deterministic.
+ */
+public class SyntheticScreenSource implements ScreenSource {
+    private final List<BufferedImage> frames;
+    /**
+     * INT_RGB backing arrays of {@link #frames}, read directly by {@link #pixel(int, int)}.
+     */
+    private final int[][] framePixels;
+    private volatile int frameIndex;
+
+    public SyntheticScreenSource(List<BufferedImage> frames) {
+        if (frames == null || frames.isEmpty()) {
+            throw new IllegalArgumentException("At least one frame is required");
+        }
+        List<BufferedImage> copies = new ArrayList<>(frames.size());
+        for (BufferedImage frame : frames) {
+            copies.add(toIntRgb(frame));
+        }
+        this.frames = List.copyOf(copies);
+        this.framePixels = new int[copies.size()][];
+        for (int i = 0; i < copies.size(); i++) {
+            framePixels[i] = ((DataBufferInt) copies.get(i).getRaster().getDataBuffer()).getData();
+        }
+    }
+
+    /**
+     * Single frame of the given size filled with {@code rgb}.
+     */
+    public static SyntheticScreenSource solid(int width, int height, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return new SyntheticScreenSource(List.of(image));
+    }
+
+    /**
+     * Loads every {@code .png} in {@code directory}, in file name order, as one frame each.
+     */
+    public static SyntheticScreenSource fromDirectory(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> path.getFileName().toString().toLowerCase().endsWith(".png"))
+                    .sorted()
+                    .toList();
+        }
+        List<BufferedImage> frames = new ArrayList<>(files.size());
+        for (Path file : files) {
+            BufferedImage image = ImageIO.read(file.toFile());
+            if (image == null) {
+                throw new IOException("Unreadable image: " + file);
+            }
+            frames.add(image);
+        }
+        if (frames.isEmpty()) {
+            throw new IOException("No PNG frames found in " + directory);
+        }
+        return new SyntheticScreenSource(frames);
+    }
+
+    public int frameCount() {
+        return frames.size();
+    }
+
+    public int getFrameIndex() {
+        return frameIndex;
+    }
+
+    public void setFrameIndex(int index) {
+        if (index < 0 || index >= frames.size()) {
+            throw new IllegalArgumentException("Frame index out of range: " + index);
+        }
+        this.frameIndex = index;
+    }
+
+    /**
+     * Moves to the next frame, wrapping back to the first after the last one.
+     */
+    public void advance() {
+        frameIndex = (frameIndex + 1) % frames.size();
+    }
+
+    @Override
+    public int pixel(int x, int y) {
+        int index = frameIndex;
+        BufferedImage current = frames.get(index);
+        int width = current.getWidth();
+        if (x < 0 || y < 0 || x >= width || y >= current.getHeight()) {
+            return 0;
+        }
+        return framePixels[index][y * width + x] & 0xFFFFFF;
+    }
+
+    @Override
+    public BufferedImage region(Rectangle region) {
+        BufferedImage current = frames.get(frameIndex);
+        BufferedImage copy = new BufferedImage(region.width, region.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(current, -region.x, -region.y, null);
+        g.dispose();
+        return copy;
+    }
+
+    @Override
+    public BufferedImage frame() {
+        BufferedImage current = frames.get(frameIndex);
+        return region(new Rectangle(0, 0, current.getWidth(), current.getHeight()));
+    }
+
+    private static BufferedImage toIntRgb(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_RGB && source.getRaster().getSampleModelTranslateX() == 0
+                && source.getRaster().getSampleModelTranslateY() == 0
+                && ((DataBufferInt) source.getRaster().getDataBuffer()).getOffset() == 0
+                && source.getRaster().getSampleModel().getWidth() == source.getWidth()) {
+            return source;
+        }
+        BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(source, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+}
@@ -0,0 +1,396 @@
+package com.example.colorbot;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Locates an {@link ImageTemplate} inside one captured {@link ScreenSnapshot}.
+ * <ul>
+ *     <li>{@code EXACT} - every opaque template pixel identical</li>
+ *     <li>{@code TOLERANCE} - every opaque template pixel within a {@link ColorTolerance}</li>
+ *     <li>{@code NCC} - grey-level normalized cross-correlation of at least {@code threshold}</li>
+ * </ul>
+ * EXACT and TOLERANCE test the template's rare-color anchors before comparing the whole window;
+ * NCC first correlates a sparse subset of template pixels and only scores windows that come within
+ * {@link #COARSE_SLACK} of the threshold on that subset.
+ * Candidate rows are split into stripes on the common fork-join pool like {@link ColorSearch}.
+ */
+public final class TemplateMatcher {
+    public enum Mode {
+        EXACT,
+        TOLERANCE,
+        NCC
+    }
+
+    /**
+     * Top-left corner of a hit; {@code score} is 1 for EXACT/TOLERANCE and the correlation for NCC.
+     */
+    public record Match(int x, int y, int width, int height, double score) {
+        public int centerX() {
+            return x + width / 2;
+        }
+
+        public int centerY() {
+            return y + height / 2;
+        }
+    }
+
+    public static final double DEFAULT_NCC_THRESHOLD = 0.9;
+    /**
+     * Below this many candidate positions times template pixels, a single thread is faster than forking.
+     */
+    static final long PARALLEL_THRESHOLD = 4L * 1024 * 1024;
+    /**
+     * How far below the threshold a window's sparse-subset correlation may be and still get a full score.
+     */
+    static final double COARSE_SLACK = 0.15;
+    private static final long NOT_FOUND = Long.MAX_VALUE;
+
+    private final ImageTemplate template;
+    private final Mode mode;
+    private final ColorTolerance tolerance;
+    private final double threshold;
+    /**
+     * NCC grey buffer kept between finds; taken while a scan runs so concurrent finds never share it.
+     */
+    private final AtomicReference<int[]> greyBuffer = new AtomicReference<>();
+
+    private TemplateMatcher(ImageTemplate template, Mode mode, ColorTolerance tolerance, double threshold) {
+        this.template = template;
+        this.mode = mode;
+        this.tolerance = tolerance;
+        this.threshold = threshold;
+    }
+
+    public static TemplateMatcher exact(ImageTemplate template) {
+        return new TemplateMatcher(template, Mode.EXACT, ColorTolerance.EXACT, 1);
+    }
+
+    public static TemplateMatcher tolerance(ImageTemplate template, ColorTolerance tolerance) {
+        return tolerance.isExact() ? exact(template) : new TemplateMatcher(template, Mode.TOLERANCE, tolerance, 1);
+    }
+
+    public static TemplateMatcher ncc(ImageTemplate template, double threshold) {
+        if (!(threshold > 0 && threshold <= 1)) {
+            throw new IllegalArgumentException("NCC threshold must be in (0, 1]");
+        }
+        return new TemplateMatcher(template, Mode.NCC, ColorTolerance.EXACT, threshold);
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * EXACT/TOLERANCE: the first hit in row-major order. NCC: the best-scoring hit.
+     */
+    public Optional<Match> find(ScreenSnapshot snapshot, Rectangle region) {
+        Scan scan = new Scan(snapshot, region);
+        if (scan.rows <= 0 || scan.columns <= 0) {
+            return Optional.empty();
+        }
+        if (mode == Mode.NCC) {
+            try {
+                return collect(scan).stream().max(Comparator.comparingDouble(Match::score));
+            } finally {
+                scan.release();
+            }
+        }
+        AtomicLong best = new AtomicLong(NOT_FOUND);
+        if (!scan.parallel()) {
+            scan.findFirst(0, scan.rows, best);
+        } else {
+            ForkJoinPool.commonPool().invoke(new Stripe(scan, 0, scan.rows, scan.stripeRows(), best, null));
+        }
+        long hit = best.get();
+        if (hit == NOT_FOUND) {
+            return Optional.empty();
+        }
+        return Optional.of(scan.toMatch((int) (hit / scan.columns), (int) (hit % scan.columns), 1));
+    }
+
+    /**
+     * Up to {@code limit} non-overlapping hits, best score first (row-major among equal scores).
+     */
+    public List<Match> findAll(ScreenSnapshot snapshot, Rectangle region, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        Scan scan = new Scan(snapshot, region);
+        if (scan.rows <= 0 || scan.columns <= 0) {
+            return List.of();
+        }
+        List<Match> hits;
+        try {
+            hits = collect(scan);
+        } finally {
+            scan.release();
+        }
+        hits.sort(Comparator.comparingDouble(Match::score).reversed());
+        List<Match> accepted = new ArrayList<>();
+        for (Match hit : hits) {
+            if (accepted.size() == limit) {
+                break;
+            }
+            boolean overlaps = false;
+            for (Match kept : accepted) {
+                if (Math.abs(kept.x() - hit.x()) < template.width() && Math.abs(kept.y() - hit.y()) < template.height()) {
+                    overlaps = true;
+                    break;
+                }
+            }
+            if (!overlaps) {
+                accepted.add(hit);
+            }
+        }
+        return accepted;
+    }
+
+    private List<Match> collect(Scan scan) {
+        List<List<Match>> stripeHits;
+        if (!scan.parallel()) {
+            stripeHits = List.of(scan.collect(0, scan.rows));
+        } else {
+            int stripeRows = scan.stripeRows();
+            List<Match>[] slots = newSlots((scan.rows + stripeRows - 1) / stripeRows);
+            ForkJoinPool.commonPool().invoke(new Stripe(scan, 0, scan.rows, stripeRows, null, slots));
+            stripeHits = List.of(slots);
+        }
+        List<Match> hits = new ArrayList<>();
+        stripeHits.forEach(hits::addAll);
+        return hits;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Match>[] newSlots(int count) {
+        return (List<Match>[]) new List<?>[count];
+    }
+
+    /**
+     * One search over the snapshot's raw pixels: candidate top-left positions form a
+     * {@code columns x rows} grid starting at ({@code left}, {@code top}) in snapshot coordinates.
+     */
+    private final class Scan {
+        final int[] pixels;
+        final int stride;
+        final int originX;
+        final int originY;
+        final int left;
+        final int top;
+        final int columns;
+        final int rows;
+        final int[] offsets;
+        final int[] anchorOffsets;
+        final int[] anchorRgb;
+        /**
+         * NCC only: grey copy of the clipped region, {@code greyStride} wide, and the template
+         * pixel offsets within it; null otherwise.
+         */
+        final int[] grey;
+        final int greyStride;
+        final int[] greyOffsets;
+        final int[] coarseOffsets;
+
+        Scan(ScreenSnapshot snapshot, Rectangle region) {
+            Rectangle bounds = snapshot.bounds();
+            Rectangle clipped = bounds.intersection(region);
+            this.pixels = snapshot.pixels();
+            this.stride = snapshot.scanlineStride();
+            this.originX = bounds.x;
+            this.originY = bounds.y;
+            this.left = clipped.x - bounds.x;
+            this.top = clipped.y - bounds.y;
+            this.columns = clipped.isEmpty() ? 0 : clipped.width - template.width() + 1;
+            this.rows = clipped.isEmpty() ? 0 : clipped.height - template.height() + 1;
+            int count = template.activeCount();
+            this.offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = template.activeY(i) * stride + template.activeX(i);
+            }
+            int[] anchors = template.anchors();
+            this.anchorOffsets = new int[anchors.length];
+            this.anchorRgb = new int[anchors.length];
+            for (int i = 0; i < anchors.length; i++) {
+                anchorOffsets[i] = offsets[anchors[i]];
+                anchorRgb[i] = template.activeRgb()[anchors[i]];
+            }
+            if (mode == Mode.NCC && rows > 0 && columns > 0) {
+                this.greyStride = clipped.width;
+                this.grey = takeGreyBuffer(clipped.width * clipped.height);
+                for (int y = 0, greyIndex = 0; y < clipped.height; y++) {
+                    for (int index = (top + y) * stride + left, end = index + clipped.width; index < end; index++) {
+                        grey[greyIndex++] = ImageTemplate.grey(pixels[index]);
+                    }
+                }
+                this.greyOffsets = new int[count];
+                for (int i = 0; i < count; i++) {
+                    greyOffsets[i] = template.activeY(i) * greyStride + template.activeX(i);
+                }
+                ImageTemplate.GreyProfile coarse = template.coarseGrey();
+                this.coarseOffsets = new int[coarse == null ? 0 : coarse.indexes().length];
+                for (int i = 0; i < coarseOffsets.length; i++) {
+                    coarseOffsets[i] = greyOffsets[coarse.indexes()[i]];
+                }
+            } else {
+                this.greyStride = 0;
+                this.grey = null;
+                this.greyOffsets = null;
+                this.coarseOffsets = null;
+            }
+        }
+
+        /**
+         * Hands the grey buffer back for the next find.
+         */
+        void release() {
+            if (grey != null) {
+                greyBuffer.set(grey);
+            }
+        }
+
+        boolean parallel() {
+            return (long) rows * columns * template.activeCount() >= PARALLEL_THRESHOLD
+                    && ForkJoinPool.getCommonPoolParallelism() >= 2;
+        }
+
+        int stripeRows() {
+            int stripes = ForkJoinPool.getCommonPoolParallelism() * 4;
+            return Math.max(1, (rows + stripes - 1) / stripes);
+        }
+
+        void findFirst(int fromRow, int toRow, AtomicLong best) {
+            for (int row = fromRow; row < toRow; row++) {
+                long rowKey = (long) row * columns;
+                if (rowKey > best.get()) {
+                    return;
+                }
+                int base = (top + row) * stride + left;
+                for (int column = 0; column < columns; column++) {
+                    if (matchesAt(base + column)) {
+                        best.accumulateAndGet(rowKey + column, Math::min);
+                        return;
+                    }
+                }
+            }
+        }
+
+        List<Match> collect(int fromRow, int toRow) {
+            List<Match> hits = new ArrayList<>();
+            for (int row = fromRow; row < toRow; row++) {
+                int base = (top + row) * stride + left;
+                for (int column = 0; column < columns; column++) {
+                    if (mode == Mode.NCC) {
+                        int greyBase = row * greyStride + column;
+                        if (coarseOffsets.length > 0 && correlation(greyBase, coarseOffsets,
+                                template.coarseGrey()) < threshold - COARSE_SLACK) {
+                            continue;
+                        }
+                        double score = correlation(greyBase, greyOffsets, template.grey());
+                        if (score >= threshold) {
+                            hits.add(toMatch(row, column, score));
+                        }
+                    } else if (matchesAt(base + column)) {
+                        hits.add(toMatch(row, column, 1));
+                    }
+                }
+            }
+            return hits;
+        }
+
+        private boolean matchesAt(int base) {
+            boolean exact = mode == Mode.EXACT;
+            for (int i = 0; i < anchorOffsets.length; i++) {
+                int pixel = pixels[base + anchorOffsets[i]];
+                if (exact ? (pixel & 0xFFFFFF) != anchorRgb[i] : !tolerance.matches(anchorRgb[i], pixel)) {
+                    return false;
+                }
+            }
+            int[] expected = template.activeRgb();
+            for (int i = 0; i < offsets.length; i++) {
+                int pixel = pixels[base + offsets[i]];
+                if (exact ? (pixel & 0xFFFFFF) != expected[i] : !tolerance.matches(expected[i], pixel)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Pearson correlation of the window's grey levels at {@code offsets} with {@code profile},
+         * in integer sums: {@code (n*sum(tw) - sum(t)*sum(w)) / (norm(t) * norm(w))}.
+         */
+        private double correlation(int base, int[] offsets, ImageTemplate.GreyProfile profile) {
+            int[] expected = profile.grey();
+            long sum = 0;
+            long squares = 0;
+            long dot = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                int value = grey[base + offsets[i]];
+                sum += value;
+                squares += value * value;
+                dot += expected[i] * value;
+            }
+            int n = offsets.length;
+            double windowNorm = Math.sqrt((double) n * squares - (double) sum * sum);
+            if (windowNorm == 0 || profile.norm() == 0) {
+                // a flat window or flat template only correlates with a flat partner of the same level
+                return windowNorm == profile.norm() && sum == profile.sum() ? 1 : 0;
+            }
+            return ((double) n * dot - (double) sum * profile.sum()) / (profile.norm() * windowNorm);
+        }
+
+        Match toMatch(int row, int column, double score) {
+            return new Match(originX + left + column, originY + top + row, template.width(), template.height(), score);
+        }
+    }
+
+    private int[] takeGreyBuffer(int size) {
+        int[] buffer = greyBuffer.getAndSet(null);
+        return buffer != null && buffer.length >= size ? buffer : new int[size];
+    }
+
+    private final class Stripe extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Scan scan;
+        private final int fromRow;
+        private final int toRow;
+        private final int stripeRows;
+        private final AtomicLong best;
+        private final List<Match>[] slots;
+
+        Stripe(Scan scan, int fromRow, int toRow, int stripeRows, AtomicLong best, List<Match>[] slots) {
+            this.scan = scan;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.stripeRows = stripeRows;
+            this.best = best;
+            this.slots = slots;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= stripeRows) {
+                if (best != null) {
+                    scan.findFirst(fromRow, toRow, best);
+                } else {
+                    slots[fromRow / stripeRows] = scan.collect(fromRow, toRow);
+                }
+                return;
+            }
+            int middle = Math.max(fromRow + ((toRow - fromRow) / 2 / stripeRows) * stripeRows, fromRow + stripeRows);
+            // the upper half runs on this thread so a first-match search reaches the earliest rows first
+            Stripe lower = new Stripe(scan, middle, toRow, stripeRows, best, slots);
+            lower.fork();
+            new Stripe(scan, fromRow, middle, stripeRows, best, slots).compute();
+            lower.join();
+        }
+    }
+}
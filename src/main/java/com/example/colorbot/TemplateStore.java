@@ -0,0 +1,77 @@
+package com.example.colorbot;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * PNG templates for FIND_IMAGE kept in a directory, one {@code <name>.png} per template.
+ * Decoded templates are cached and re-read when the file's modification time changes.
+ */
+public class TemplateStore {
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Path directory;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    private record Cached(long lastModified, ImageTemplate template) {
+    }
+
+    public TemplateStore() {
+        this(Path.of("templates"));
+    }
+
+    public TemplateStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && NAME_PATTERN.matcher(name).matches();
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public ImageTemplate get(String name) {
+        Path file = fileFor(name);
+        try {
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            Cached cached = cache.get(name);
+            if (cached != null && cached.lastModified() == lastModified) {
+                return cached.template();
+            }
+            BufferedImage image = ImageIO.read(file.toFile());
+            if (image == null) {
+                throw new IllegalArgumentException("Template " + name + " is not a readable image");
+            }
+            ImageTemplate template = ImageTemplate.of(name, image);
+            cache.put(name, new Cached(lastModified, template));
+            return template;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unknown template: " + name + " (" + file + ")", e);
+        }
+    }
+
+    public Path save(String name, BufferedImage image) throws IOException {
+        Path file = fileFor(name);
+        Files.createDirectories(directory);
+        if (!ImageIO.write(image, "png", file.toFile())) {
+            throw new IOException("No PNG writer available");
+        }
+        cache.remove(name);
+        return file;
+    }
+
+    private Path fileFor(String name) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Template names may only use letters, digits, '_' and '-': " + name);
+        }
+        return directory.resolve(name + ".png");
+    }
+}